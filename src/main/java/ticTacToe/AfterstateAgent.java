@@ -0,0 +1,179 @@
+package ticTacToe;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A temporal difference learning agent that learns the values of afterstates instead of q-states: an afterstate is the
+ * board right after X has moved, with O to move. Many q-states (state, move) lead to the same afterstate - e.g. X in
+ * the centre and O in a corner, reached in either order - and they are all worth the same, since what happens next
+ * only depends on the board. Learning one value per afterstate therefore shares experience between them, and the
+ * table has one entry per board instead of {@link ArrayQTable#NUM_MOVES} per state.
+ *
+ * The agent chooses its moves by one-step lookahead: the value of a move is the value of the afterstate it leads to.
+ * Like {@link QLearningAgent} it plays X against the opponent in a {@link TTTEnvironment}, and ends up with a standard
+ * {@link Policy}.
+ *
+ * @author ae187
+ *
+ */
+public class AfterstateAgent extends Agent {
+
+	/**
+	 * The learning rate, between 0 and 1.
+	 */
+	double alpha = 0.1;
+
+	/**
+	 * The number of episodes to train for
+	 */
+	int numEpisodes = 30000;
+
+	/**
+	 * The discount factor (gamma)
+	 */
+	double discount = 0.9;
+
+	/**
+	 * The epsilon in the epsilon greedy policy used during training.
+	 */
+	double epsilon = 0.1;
+
+	/**
+	 * The value of each afterstate, indexed by its {@link Game#hashCode}, i.e. with O to move.
+	 */
+	final double[] values = new double[ArrayQTable.NUM_STATES];
+
+	/**
+	 * This is the Reinforcement Learning environment that this agent will interact with when it is training.
+	 */
+	TTTEnvironment env = new TTTEnvironment();
+
+	/**
+	 * This agent's random number stream
+	 */
+	SplittableRandom random = RandomStreams.newStream();
+
+	/**
+	 *
+	 * @param opponent     the opponent agent that this agent will interact with in the environment
+	 * @param learningRate the rate at which the agent learns. Alpha from your lectures.
+	 * @param numEpisodes  the number of episodes (games) to train for
+	 * @param discount     the discount factor
+	 */
+	public AfterstateAgent(Agent opponent, double learningRate, int numEpisodes, double discount) {
+		super();
+		env = new TTTEnvironment(opponent);
+		this.alpha = learningRate;
+		this.numEpisodes = numEpisodes;
+		this.discount = discount;
+		train();
+	}
+
+	/**
+	 * Trains against a {@link RandomAgent} with the default parameters.
+	 */
+	public AfterstateAgent() {
+		this(new RandomAgent(), 0.1, 30000, 0.9);
+	}
+
+	/**
+	 *
+	 * @param state the {@link Game#hashCode} of a game with X to move
+	 * @param cell  an empty cell, {@code 3*x+y}
+	 * @return the {@link Game#hashCode} of the afterstate reached when X plays {@code cell} in {@code state}
+	 */
+	static int afterstate(int state, int cell) {
+		// X's digit is 1, and the turn digit goes from 1 (X) to 2 (O)
+		return state + BitBoard.PLACE[cell] + 1;
+	}
+
+	/**
+	 *
+	 * @param state the {@link Game#hashCode} of a game with X to move
+	 * @param cells a non-empty mask of the available cells
+	 * @return the cell in {@code cells} leading to the afterstate with the highest value
+	 */
+	int bestCell(int state, int cells) {
+		int best = -1;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int cell = 0; cell < ArrayQTable.NUM_MOVES; cell++) {
+			if ((cells & (1 << cell)) != 0 && values[afterstate(state, cell)] > max) {
+				max = values[afterstate(state, cell)];
+				best = cell;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Plays {@code this.numEpisodes} epsilon-greedy episodes in the environment. After every move the value of the
+	 * afterstate the move led to is updated towards the reward received plus the discounted value of the best
+	 * afterstate reachable from the next state, i.e. the Q-Learning update with every q-state replaced by its
+	 * afterstate. The policy is then extracted from the afterstate values.
+	 */
+	public void train() {
+		StepResult step = new StepResult();
+		for (int episode = 0; episode < numEpisodes; episode++) {
+			env.reset();
+			Game game = env.getCurrentGameState();
+			int state = game.hashCode();
+
+			while (!env.isTerminal()) {
+				int moves = BitBoard.empty(game);
+				int cell = random.nextDouble() < epsilon
+						? BitBoard.nthCell(moves, random.nextInt(Integer.bitCount(moves)))
+						: bestCell(state, moves);
+
+				try {
+					env.step(cell, step);
+				} catch (IllegalMoveException e) {
+					System.out.print("Illegal Move!!!!!!!!");
+					break;
+				}
+
+				double sample = step.reward;
+				if (!step.done) {
+					int next = step.nextState;
+					sample += discount * values[afterstate(next, bestCell(next, BitBoard.empty(game)))];
+				}
+
+				int after = afterstate(state, cell);
+				values[after] += alpha * (sample - values[after]);
+				state = step.nextState;
+			}
+		}
+
+		setPolicy(extractPolicy());
+	}
+
+	/**
+	 *
+	 * @return a policy for every non-terminal game with X to move, that plays the move leading to the afterstate with
+	 *         the highest value.
+	 */
+	public Policy extractPolicy() {
+		Policy p = new Policy();
+		List<Game> games = Game.generateAllValidGames('X');
+		for (Game g : games) {
+			if (g.isTerminal())
+				continue;
+
+			int cell = bestCell(g.hashCode(), BitBoard.empty(g));
+			p.policy.put(g, new Move(g.whoseTurn, cell / 3, cell % 3));
+		}
+
+		return p;
+	}
+
+	public static void main(String a[]) throws IllegalMoveException {
+		// Test method to play the agent against a human agent.
+		AfterstateAgent agent = new AfterstateAgent();
+		HumanAgent d = new HumanAgent();
+		Game g = new Game(agent, d, d);
+		g.playOut();
+
+	}
+
+}
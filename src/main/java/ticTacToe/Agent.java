@@ -1,5 +1,11 @@
 package ticTacToe;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 
 public class Agent {
 	
@@ -10,6 +16,11 @@ public class Agent {
 	
 	protected char name; //'X' or 'O'
 	
+	/**
+	 * The training started by {@link #trainInBackground}, or null
+	 */
+	Future<Policy> training;
+	
 	/**
 	 * Name of the agent ('X' or 'O') is set when the agent joins the game
 	 * @param p
@@ -36,6 +47,78 @@ public class Agent {
 		return policy.getMove(g);
 	}
 	
+	/**
+	 * Starts {@code train} on a background thread and returns straight away. Until it has finished, this agent plays
+	 * {@code fallback}, then every policy that training publishes with {@link #setPolicy} (see {@link HotSwapPolicy}),
+	 * so games can be played while the agent trains and never wait for it. Training must not read this agent's
+	 * policy, and the agent's other state, e.g. its values, must not be used until {@link #awaitTraining} returns.
+	 * @param fallback the policy to play until training publishes one, e.g. an {@link AggressivePolicy} or a stale
+	 *        policy loaded from a file
+	 * @param train trains this agent, calling {@link #setPolicy} with the intermediate and final policies
+	 */
+	protected void trainInBackground(Policy fallback, final Runnable train)
+	{
+		final HotSwapPolicy live=new HotSwapPolicy(fallback);
+		this.policy=live;
+		this.training=BackgroundTraining.submit(new Callable<Policy>() {
+			public Policy call() {
+				train.run();
+				return live.current();
+			}
+		});
+	}
+	
+	/**
+	 * Makes {@code p} this agent's policy. While the agent trains in the background, {@code p} is published to its
+	 * {@link HotSwapPolicy} instead of replacing it, so games in progress play {@code p} from their next move.
+	 * @param p
+	 */
+	protected void setPolicy(Policy p)
+	{
+		if (policy instanceof HotSwapPolicy)
+			((HotSwapPolicy) policy).publish(p);
+		else
+			policy=p;
+	}
+	
+	/**
+	 * 
+	 * @return whether this agent has finished training, true if it never trained in the background
+	 */
+	public boolean isTrained()
+	{
+		return training==null || training.isDone();
+	}
+	
+	/**
+	 * Waits for this agent to finish training in the background, if it is.
+	 * @return the final policy, or this agent's policy if it never trained in the background
+	 * @throws IllegalStateException if training failed
+	 */
+	public Policy awaitTraining()
+	{
+		if (training==null)
+			return policy;
+		
+		try {
+			return training.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Background training failed", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for background training", e);
+		}
+	}
+	
+	/**
+	 * Called by {@link Game#playOut} on both agents once the game is over, e.g. to learn from it. Does nothing by
+	 * default.
+	 * @param g the finished game
+	 */
+	public void gameOver(Game g)
+	{
+	}
+	
 	public char getName()
 	{
 		return name;
@@ -58,9 +141,47 @@ public class Agent {
 	}
 	
 	
-	public Policy loadPolicyFromFile()
+	/**
+	 * Loads this agent's policy from its default policy file, see {@link #policyFile()}.
+	 * @return the policy loaded
+	 * @throws IOException if the file can't be read, or isn't a valid policy file
+	 */
+	public Policy loadPolicyFromFile() throws IOException
+	{
+		return loadPolicyFromFile(policyFile());
+	}
+	
+	/**
+	 * Replaces this agent's policy with the one stored in {@code file}, in the format of {@link PolicyFile}. The file
+	 * is mapped into memory rather than loaded, see {@link MappedPolicy}.
+	 * @param file
+	 * @return the policy loaded
+	 * @throws IOException if the file can't be read, or isn't a valid policy file
+	 */
+	public Policy loadPolicyFromFile(String file) throws IOException
+	{
+		this.policy=new MappedPolicy(new File(file));
+		return policy;
+	}
+	
+	/**
+	 * Stores this agent's policy in {@code file}, in the format of {@link PolicyFile}.
+	 * @param file
+	 * @throws IOException
+	 */
+	public void savePolicyToFile(String file) throws IOException
+	{
+		PolicyFile.write(policy, new File(file));
+	}
+	
+	/**
+	 * 
+	 * @return the default policy file of this agent: the name of its class followed by {@code .policy}, e.g.
+	 *         {@code ValueIterationAgent.policy}, in the working directory
+	 */
+	public String policyFile()
 	{
-		return null;
+		return getClass().getSimpleName()+".policy";
 	}
 	
 	
@@ -2,7 +2,7 @@ package ticTacToe;
 
 
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 /**
  * An agrgessive policy: if there is a winning move given a game state (Game object) then this policy finds it. Otherwise returns a
  * random available move.
@@ -12,6 +12,17 @@ import java.util.Random;
  */
 public class AggressivePolicy extends Policy {
 	
+	SplittableRandom r;
+	
+	public AggressivePolicy()
+	{
+		this(RandomStreams.newStream());
+	}
+	
+	public AggressivePolicy(SplittableRandom r)
+	{
+		this.r=r;
+	}
 	
 	public Move getMove(Game g) {
 		
@@ -34,8 +45,6 @@ public class AggressivePolicy extends Policy {
 				return m;
 		}
 		
-		Random r=new Random();
-		
 		return moves.get(r.nextInt(moves.size()));
 		
 	}
@@ -0,0 +1,78 @@
+package ticTacToe;
+
+import java.time.Duration;
+
+/**
+ * An agent that searches the game from each position it plays in, with {@link AlphaBetaSearch}, instead of planning
+ * every state in advance as the value and policy iteration agents do, so it needs no training. The search is given a
+ * time budget per move, and the agent keeps one {@link TranspositionTable} for all its searches, so positions searched
+ * for earlier moves, or in earlier games, aren't searched again. On 3x3 the whole game is searched well within the
+ * default budget, so the agent plays perfectly, as either X or O.
+ *
+ * The agent's policy can be used from several threads at once: each move is searched with a search of its own, and
+ * only the table, which is lock-free, is shared.
+ *
+ * @author ae187
+ *
+ */
+public class AlphaBetaAgent extends Agent {
+
+	/**
+	 * The number of entries of the table is 2 to this
+	 */
+	static final int TABLE_BITS = 16;
+
+	/**
+	 * The time budget of each move
+	 */
+	Duration budget = Duration.ofMillis(500);
+
+	final TranspositionTable table = new TranspositionTable(TABLE_BITS);
+
+	/**
+	 * The depth of the last search, and whether it reached the end of the game
+	 */
+	volatile int depth;
+	volatile boolean solved;
+
+	public AlphaBetaAgent() {
+		policy = new Policy() {
+			@Override
+			public Move getMove(Game g) {
+				AlphaBetaSearch search = AlphaBetaSearch.of(g, table);
+				int cell = search.bestMove(budget);
+				depth = search.getDepth();
+				solved = search.isSolved();
+				if (cell < 0)
+					return null;
+
+				return new Move(g.whoseTurn, cell / 3, cell % 3);
+			}
+		};
+	}
+
+	/**
+	 * @param budget the time budget of each move
+	 */
+	public AlphaBetaAgent(Duration budget) {
+		this();
+		this.budget = budget;
+	}
+
+	/**
+	 *
+	 * @return the depth searched for the last move
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 *
+	 * @return whether the search for the last move reached the end of the game, so the move is perfect
+	 */
+	public boolean isSolved() {
+		return solved;
+	}
+
+}
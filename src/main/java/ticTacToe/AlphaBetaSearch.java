@@ -0,0 +1,463 @@
+package ticTacToe;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An alpha-beta search, in negamax form, of the m,n,k-game: two players take turns to place their pieces on a board of
+ * {@code rows} by {@code columns} cells, and the first to get {@code k} in a row, horizontally, vertically or
+ * diagonally, wins. Tic Tac Toe is the 3,3,3-game. Cells are numbered {@code columns*row+column}.
+ *
+ * The search keeps its own board and updates it in place as it goes, making each move before searching it and
+ * unmaking it afterwards, rather than copying the game at every node as {@link Game#simulateMove} does. The base-3
+ * code of the position (see {@link #key()}) is updated along with the board, and keys a {@link TranspositionTable},
+ * so positions reached by different orders of moves are only searched once.
+ *
+ * {@link #bestMove} deepens the search one move at a time until the game is solved or its time budget runs out, and
+ * returns the best move of the last depth searched completely. Positions at the depth limit are scored by a heuristic,
+ * see {@link #evaluate()}. Moves are searched best first: the move stored in the table, then moves that win, moves
+ * that block the opponent's win, then the cells on the most lines, i.e. the centre, then the corners on 3x3. A board
+ * of 3x3 is solved in a few milliseconds, so the search plays perfectly there without any training.
+ *
+ * A search isn't thread-safe, but several searches can share a table, see {@link TranspositionTable}.
+ *
+ * @author ae187
+ *
+ */
+public final class AlphaBetaSearch {
+
+	/**
+	 * The largest board whose codes fit in a long
+	 */
+	public static final int MAX_CELLS = 38;
+
+	/**
+	 * The score of a won position, less the number of moves to the win, so that faster wins score higher
+	 */
+	static final int WIN = 30000;
+
+	/**
+	 * The heuristic scores stay within this, well clear of the scores of wins
+	 */
+	static final int MAX_EVALUATION = 10000;
+
+	/**
+	 * The deadline is checked once every this many nodes
+	 */
+	static final int CHECK_INTERVAL = 1024;
+
+	final int rows;
+	final int columns;
+	final int k;
+	final int numCells;
+
+	/**
+	 * The pieces on the board, 0 for an empty cell, 1 for X and 2 for O
+	 */
+	final byte[] cells;
+
+	/**
+	 * The player to move, 1 for X and 2 for O
+	 */
+	int side = 1;
+
+	/**
+	 * The number of pieces on the board, and whether the last move won
+	 */
+	int filled = 0;
+	boolean won = false;
+
+	/**
+	 * The code of the pieces on the board, see {@link #key()}, and the value of each cell's digit
+	 */
+	long code = 0;
+	final long[] digit;
+
+	/**
+	 * The lines of k cells, and the number of lines through each cell
+	 */
+	final int[][] lines;
+	final int[] linesThrough;
+
+	final TranspositionTable table;
+
+	/**
+	 * The moves and their ordering scores at each ply of the search
+	 */
+	final int[][] moves;
+	final int[][] orders;
+
+	long deadline;
+	boolean aborted;
+	long nodes;
+
+	/**
+	 * The number of positions scored by the heuristic or taken from the table at a depth limit, during the current
+	 * depth
+	 */
+	long unsolved;
+
+	/**
+	 * The depth and score of the last search completed, and whether it searched to the end of the game
+	 */
+	int depth;
+	int score;
+	boolean solved;
+
+	public AlphaBetaSearch(int rows, int columns, int k, TranspositionTable table) {
+		if (rows < 1 || columns < 1 || rows * columns > MAX_CELLS)
+			throw new IllegalArgumentException("Can't search a board of " + rows + "x" + columns);
+		if (k < 1 || k > Math.max(rows, columns))
+			throw new IllegalArgumentException("Can't get " + k + " in a row on a board of " + rows + "x" + columns);
+
+		this.rows = rows;
+		this.columns = columns;
+		this.k = k;
+		this.numCells = rows * columns;
+		this.table = table;
+		cells = new byte[numCells];
+		digit = new long[numCells];
+		digit[numCells - 1] = 1;
+		for (int c = numCells - 2; c >= 0; c--)
+			digit[c] = 3 * digit[c + 1];
+
+		List<int[]> found = new ArrayList<int[]>();
+		linesThrough = new int[numCells];
+		int[][] directions = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				for (int[] d : directions) {
+					int endRow = r + (k - 1) * d[0];
+					int endColumn = c + (k - 1) * d[1];
+					if (endRow >= rows || endColumn < 0 || endColumn >= columns)
+						continue;
+
+					int[] line = new int[k];
+					for (int i = 0; i < k; i++) {
+						line[i] = columns * (r + i * d[0]) + c + i * d[1];
+						linesThrough[line[i]]++;
+					}
+					found.add(line);
+				}
+			}
+		}
+		lines = found.toArray(new int[found.size()][]);
+
+		moves = new int[numCells + 1][numCells];
+		orders = new int[numCells + 1][numCells];
+	}
+
+	/**
+	 * A search of the 3x3 board of {@code g}, in its current position
+	 */
+	static AlphaBetaSearch of(Game g, TranspositionTable table) {
+		AlphaBetaSearch search = new AlphaBetaSearch(3, 3, 3, table);
+		for (int x = 0; x < 3; x++)
+			for (int y = 0; y < 3; y++)
+				if (g.board[x][y] != ' ')
+					search.place(3 * x + y, g.board[x][y] == 'X' ? 1 : 2);
+
+		search.side = g.whoseTurn.getName() == 'X' ? 1 : 2;
+		search.won = g.isTerminal() && g.getState() != Game.DRAW;
+		return search;
+	}
+
+	private void place(int cell, int piece) {
+		cells[cell] = (byte) piece;
+		code += piece * digit[cell];
+		filled++;
+	}
+
+	/**
+	 * Plays {@code cell} for the player to move, and passes the move to the other player.
+	 *
+	 * @return whether the move won
+	 */
+	public boolean make(int cell) {
+		place(cell, side);
+		won = wins(cell, side);
+		side = 3 - side;
+		return won;
+	}
+
+	/**
+	 * Takes back the move in {@code cell}, which must have been the last move made.
+	 */
+	public void unmake(int cell) {
+		side = 3 - side;
+		code -= side * digit[cell];
+		cells[cell] = 0;
+		filled--;
+		won = false;
+	}
+
+	/**
+	 *
+	 * @return the base-3 code of the position: a digit per cell, from the first cell down, 0 for empty, 1 for X and 2
+	 *         for O, followed by a digit for the player to move, 1 for X and 2 for O. On 3x3, this is
+	 *         {@link Game#hashCode}.
+	 */
+	public long key() {
+		return code * 3 + side;
+	}
+
+	/**
+	 *
+	 * @return whether {@code piece} in {@code cell} makes k in a row
+	 */
+	boolean wins(int cell, int piece) {
+		int r = cell / columns;
+		int c = cell % columns;
+		return run(r, c, 0, 1, piece) >= k || run(r, c, 1, 0, piece) >= k || run(r, c, 1, 1, piece) >= k
+				|| run(r, c, 1, -1, piece) >= k;
+	}
+
+	/**
+	 *
+	 * @return the length of the run of {@code piece} through {@code (r, c)} along {@code (dr, dc)}, counting the cell
+	 *         itself whatever is in it
+	 */
+	private int run(int r, int c, int dr, int dc, int piece) {
+		int n = 1;
+		for (int i = r + dr, j = c + dc; i >= 0 && i < rows && j >= 0 && j < columns
+				&& cells[columns * i + j] == piece; i += dr, j += dc)
+			n++;
+		for (int i = r - dr, j = c - dc; i >= 0 && i < rows && j >= 0 && j < columns
+				&& cells[columns * i + j] == piece; i -= dr, j -= dc)
+			n++;
+		return n;
+	}
+
+	/**
+	 *
+	 * @return whether the game is over
+	 */
+	public boolean isOver() {
+		return won || filled == numCells;
+	}
+
+	/**
+	 * Searches the current position, deepening one move at a time until the game is solved or {@code budget} runs out.
+	 * The first depth is always searched, however small the budget.
+	 *
+	 * @return the cell of the best move, or -1 if the game is over
+	 */
+	public int bestMove(Duration budget) {
+		if (isOver())
+			return -1;
+
+		deadline = System.nanoTime() + budget.toNanos();
+		aborted = false;
+		nodes = 0;
+		int best = -1;
+		solved = false;
+		for (int d = 1; d <= numCells - filled && !solved; d++) {
+			unsolved = 0;
+			int move = searchRoot(d, best);
+			if (aborted)
+				break;
+
+			best = move;
+			depth = d;
+			solved = unsolved == 0;
+		}
+		return best;
+	}
+
+	private int searchRoot(int d, int previous) {
+		int n = orderMoves(0, previous);
+		int alpha = -WIN - 1;
+		int best = moves[0][0];
+		for (int i = 0; i < n; i++) {
+			int cell = moves[0][i];
+			int s = make(cell) ? WIN - 1 : -negamax(d - 1, 1, -WIN - 1, -alpha);
+			unmake(cell);
+			if (aborted)
+				return best;
+
+			if (s > alpha) {
+				alpha = s;
+				best = cell;
+			}
+		}
+		score = alpha;
+		table.store(key(), alpha, TranspositionTable.EXACT, unsolved == 0 ? TranspositionTable.SOLVED : d, best);
+		return best;
+	}
+
+	/**
+	 *
+	 * @return the score of the current position to the player to move, searched to {@code d} moves, and within
+	 *         {@code alpha} and {@code beta} if it is within them
+	 */
+	private int negamax(int d, int ply, int alpha, int beta) {
+		if (++nodes % CHECK_INTERVAL == 0 && System.nanoTime() > deadline)
+			aborted = true;
+		if (aborted)
+			return 0;
+		if (filled == numCells)
+			return 0;
+
+		long key = key();
+		long entry = table.probe(key);
+		int ttMove = -1;
+		if (entry != 0) {
+			ttMove = TranspositionTable.move(entry);
+			int stored = TranspositionTable.depth(entry);
+			if (stored >= d) {
+				int s = fromTable(TranspositionTable.score(entry), ply);
+				int bound = TranspositionTable.bound(entry);
+				if (bound == TranspositionTable.EXACT || bound == TranspositionTable.LOWER && s >= beta
+						|| bound == TranspositionTable.UPPER && s <= alpha) {
+					if (stored != TranspositionTable.SOLVED)
+						unsolved++;
+					return s;
+				}
+			}
+		}
+
+		if (d == 0) {
+			unsolved++;
+			return evaluate();
+		}
+
+		long unsolvedBefore = unsolved;
+		int originalAlpha = alpha;
+		int n = orderMoves(ply, ttMove);
+		int best = Integer.MIN_VALUE;
+		int bestMove = -1;
+		for (int i = 0; i < n; i++) {
+			int cell = moves[ply][i];
+			int s = make(cell) ? WIN - ply - 1 : -negamax(d - 1, ply + 1, -beta, -alpha);
+			unmake(cell);
+			if (aborted)
+				return 0;
+
+			if (s > best) {
+				best = s;
+				bestMove = cell;
+			}
+			if (s > alpha)
+				alpha = s;
+			if (alpha >= beta)
+				break;
+		}
+
+		int bound = best <= originalAlpha ? TranspositionTable.UPPER
+				: best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+		table.store(key, toTable(best, ply), bound, unsolved == unsolvedBefore ? TranspositionTable.SOLVED : d,
+				bestMove);
+		return best;
+	}
+
+	/**
+	 * Scores of wins are stored relative to the position rather than to the root, as the position can be reached at
+	 * other plies.
+	 */
+	private static int toTable(int s, int ply) {
+		return s > MAX_EVALUATION ? s + ply : s < -MAX_EVALUATION ? s - ply : s;
+	}
+
+	private static int fromTable(int s, int ply) {
+		return s > MAX_EVALUATION ? s - ply : s < -MAX_EVALUATION ? s + ply : s;
+	}
+
+	/**
+	 * Puts the empty cells in {@code moves[ply]}, best first.
+	 *
+	 * @return the number of moves
+	 */
+	private int orderMoves(int ply, int first) {
+		int[] m = moves[ply];
+		int[] o = orders[ply];
+		int n = 0;
+		for (int cell = 0; cell < numCells; cell++) {
+			if (cells[cell] != 0)
+				continue;
+
+			int order = linesThrough[cell];
+			if (cell == first)
+				order += 1 << 20;
+			else if (wins(cell, side))
+				order += 1 << 19;
+			else if (wins(cell, 3 - side))
+				order += 1 << 18;
+
+			// insertion sort, by decreasing order
+			int i = n++;
+			while (i > 0 && o[i - 1] < order) {
+				m[i] = m[i - 1];
+				o[i] = o[i - 1];
+				i--;
+			}
+			m[i] = cell;
+			o[i] = order;
+		}
+		return n;
+	}
+
+	/**
+	 * Scores a position at the depth limit, to the player to move: for each line still open to one player only, the
+	 * square of the number of that player's pieces on it, added for the player to move and subtracted for the other.
+	 */
+	int evaluate() {
+		int s = 0;
+		for (int[] line : lines) {
+			int mine = 0;
+			int theirs = 0;
+			for (int cell : line) {
+				if (cells[cell] == side)
+					mine++;
+				else if (cells[cell] != 0)
+					theirs++;
+			}
+			if (theirs == 0)
+				s += mine * mine;
+			else if (mine == 0)
+				s -= theirs * theirs;
+		}
+		return Math.max(-MAX_EVALUATION, Math.min(MAX_EVALUATION, s));
+	}
+
+	/**
+	 *
+	 * @return the depth of the last search completed
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 *
+	 * @return the score of the best move of the last search completed, to the player to move
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 *
+	 * @return whether the last search completed went to the end of the game, so its score is exact
+	 */
+	public boolean isSolved() {
+		return solved;
+	}
+
+	/**
+	 *
+	 * @return whether the last call of {@link #bestMove} ran out of its budget, abandoning the depth it was searching
+	 */
+	public boolean isAborted() {
+		return aborted;
+	}
+
+	/**
+	 *
+	 * @return the number of positions searched by the last call of {@link #bestMove}
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+}
@@ -0,0 +1,60 @@
+package ticTacToe;
+
+/**
+ * The outcome of solving with a deadline, e.g. with {@link ValueIterationAgent#train(java.time.Duration)}: the best
+ * policy found in the time given, and how far from converged the solve was when it stopped, so that callers can see
+ * what the time budget bought them.
+ *
+ * @author ae187
+ *
+ */
+public class AnytimeResult {
+
+	/**
+	 * The policy found
+	 */
+	public final Policy policy;
+
+	/**
+	 * The number of iterations performed: value iteration steps, or policy improvement steps
+	 */
+	public final int iterations;
+
+	/**
+	 * The Bellman residual of the last value update, i.e. the largest change of a value
+	 */
+	public final double residual;
+
+	/**
+	 * The number of states whose move changed at the last policy improvement step, or -1 if not measured
+	 */
+	public final int policyChanges;
+
+	/**
+	 * Whether the solve converged before the deadline
+	 */
+	public final boolean converged;
+
+	/**
+	 * The time spent solving
+	 */
+	public final long nanos;
+
+	public AnytimeResult(Policy policy, int iterations, double residual, int policyChanges, boolean converged,
+			long nanos) {
+		this.policy = policy;
+		this.iterations = iterations;
+		this.residual = residual;
+		this.policyChanges = policyChanges;
+		this.converged = converged;
+		this.nanos = nanos;
+	}
+
+	@Override
+	public String toString() {
+		return iterations + " iterations in " + String.format("%.3f", nanos / 1e9) + "s, residual "
+				+ String.format("%.2e", residual) + (policyChanges >= 0 ? ", policy changes " + policyChanges : "")
+				+ (converged ? ", converged" : ", stopped at the deadline");
+	}
+
+}
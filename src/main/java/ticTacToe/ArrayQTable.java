@@ -0,0 +1,143 @@
+package ticTacToe;
+
+/**
+ * A Q-Table stored in one flat array of doubles instead of the nested hash maps of {@link QTable}. The q-value of the
+ * q-state (g,m) lives at index {@code g.hashCode()*9 + 3*m.x + m.y}, using the base 3 encoding of {@link Game#hashCode}
+ * for the game, and the cell number of the move.
+ *
+ * Reads and writes are plain, unsynchronised array accesses. This means several training threads can update the same
+ * table at the same time without locking (Hogwild-style): an update may occasionally be lost when two threads write the
+ * same q-state at once, which Q-learning tolerates.
+ *
+ * @author ae187
+ *
+ */
+public class ArrayQTable {
+
+	/**
+	 * The number of possible game hashes, 3^10. Not all of them are valid games.
+	 */
+	public static final int NUM_STATES = 59049;
+
+	/**
+	 * The number of cells on the board, i.e. the maximum number of moves in a state.
+	 */
+	public static final int NUM_MOVES = 9;
+
+	final double[] values;
+
+	/**
+	 * A table with all q-values set to 0.
+	 */
+	public ArrayQTable() {
+		this(new double[NUM_STATES * NUM_MOVES]);
+	}
+
+	/**
+	 * A table over {@code values}, which may be null for subclasses keeping their q-values elsewhere, e.g.
+	 * {@link MappedQTable}. These must override {@link #getQValue(int, int)}, {@link #setQValue(int, int, double)} and
+	 * {@link #copyFrom(QTable)}.
+	 */
+	ArrayQTable(double[] values) {
+		this.values = values;
+	}
+
+	/**
+	 *
+	 * @param state the {@link Game#hashCode} of the game
+	 * @param cell  the cell of the move, {@code 3*x+y}
+	 * @return the q-value of the q-state (state, cell)
+	 */
+	public double getQValue(int state, int cell) {
+		return values[state * NUM_MOVES + cell];
+	}
+
+	public void setQValue(int state, int cell, double v) {
+		values[state * NUM_MOVES + cell] = v;
+	}
+
+	public double getQValue(Game g, Move m) {
+		return getQValue(g.hashCode(), 3 * m.x + m.y);
+	}
+
+	/**
+	 *
+	 * @param g
+	 * @return the highest q-value over the available moves in {@code g}, or 0 if {@code g} is terminal.
+	 */
+	public double maxQValue(Game g) {
+		if (g.isTerminal())
+			return 0.0;
+
+		return maxQValue(g.hashCode(), BitBoard.empty(g));
+	}
+
+	/**
+	 *
+	 * @param state the {@link Game#hashCode} of the game
+	 * @param cells a non-empty mask of the available cells, bit {@code 3*x+y} for cell (x,y)
+	 * @return the highest q-value over {@code cells}
+	 */
+	public double maxQValue(int state, int cells) {
+		double max = Double.NEGATIVE_INFINITY;
+		for (int cell = 0; cell < NUM_MOVES; cell++) {
+			if ((cells & (1 << cell)) != 0)
+				max = Math.max(max, getQValue(state, cell));
+		}
+
+		return max;
+	}
+
+	/**
+	 *
+	 * @param g
+	 * @return the cell ({@code 3*x+y}) of the available move with the highest q-value in {@code g}, or -1 if there is
+	 *         none. Ties go to the first such cell.
+	 */
+	public int bestCell(Game g) {
+		return bestCell(g.hashCode(), BitBoard.empty(g));
+	}
+
+	/**
+	 *
+	 * @param state the {@link Game#hashCode} of the game
+	 * @param cells a mask of the available cells, bit {@code 3*x+y} for cell (x,y)
+	 * @return the cell in {@code cells} with the highest q-value, or -1 if {@code cells} is empty. Ties go to the first
+	 *         such cell.
+	 */
+	public int bestCell(int state, int cells) {
+		int best = -1;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int cell = 0; cell < NUM_MOVES; cell++) {
+			if ((cells & (1 << cell)) != 0 && getQValue(state, cell) > max) {
+				max = getQValue(state, cell);
+				best = cell;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Copies the q-values of every q-state in {@code q} into this table.
+	 *
+	 * @param q
+	 */
+	public void copyFrom(QTable q) {
+		for (Game g : q.keySet())
+			for (Move m : q.get(g).keySet())
+				values[g.hashCode() * NUM_MOVES + 3 * m.x + m.y] = q.getQValue(g, m);
+	}
+
+	/**
+	 * Writes the q-values of this table back into every q-state already present in {@code q}.
+	 *
+	 * @param q
+	 */
+	public void copyTo(QTable q) {
+		for (Game g : q.keySet())
+			for (Move m : q.get(g).keySet())
+				q.addQValue(g, m, getQValue(g, m));
+	}
+
+}
@@ -0,0 +1,37 @@
+package ticTacToe;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executor that agents train on in the background, see {@link Agent#trainInBackground}. Its threads are daemons,
+ * so training left unfinished doesn't keep the JVM alive, and are created as needed, so agents training at the same
+ * time don't queue behind each other.
+ *
+ * @author ae187
+ *
+ */
+final class BackgroundTraining {
+
+	private static final AtomicInteger threads = new AtomicInteger();
+
+	private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "background-training-" + threads.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private BackgroundTraining() {
+	}
+
+	static <T> Future<T> submit(Callable<T> task) {
+		return executor.submit(task);
+	}
+
+}
@@ -0,0 +1,166 @@
+package ticTacToe;
+
+import java.util.SplittableRandom;
+
+/**
+ * A batched version of {@link TTTEnvironment} that plays {@code n} games at once. Instead of one {@link Game} object
+ * per game, the boards are kept as arrays of X and O bit masks (see {@link BitBoard}), and one call to {@link #step}
+ * moves every game forward by one X move and the opponent's reply, filling primitive arrays of rewards, next states and
+ * done flags instead of returning {@link Outcome} objects.
+ *
+ * As in {@link TTTEnvironment}, our agent always plays X and starts every game. The opponent is part of the
+ * environment and plays uniformly at random, like the default {@link RandomAgent} opponent (other opponents work on
+ * {@link Game} objects, so they cannot be stepped in this form). A game that finishes is reset to the empty board
+ * straight away, so every slot always holds a game where it's X's turn.
+ *
+ * States are reported as {@link Game#hashCode} values, so they can be used directly with an {@link ArrayQTable}.
+ *
+ * @author ae187
+ *
+ */
+public class BatchTTTEnvironment {
+
+	/**
+	 * the X and O bit masks of each game
+	 */
+	final int[] xBoards;
+	final int[] oBoards;
+
+	final SplittableRandom r;
+
+	double winReward = 10.0;
+	double loseReward = -50.0;
+	double livingReward = -1.00;
+	double drawReward = 0.0;
+
+	/**
+	 * {@code numGames} empty games, with the default reward parameters of {@link TTTEnvironment}.
+	 *
+	 * @param numGames
+	 */
+	public BatchTTTEnvironment(int numGames) {
+		this(numGames, RandomStreams.newStream());
+	}
+
+	/**
+	 * {@code numGames} empty games where the opponent draws its moves from {@code r}
+	 *
+	 * @param numGames
+	 * @param r
+	 */
+	public BatchTTTEnvironment(int numGames, SplittableRandom r) {
+		this.r = r;
+		xBoards = new int[numGames];
+		oBoards = new int[numGames];
+	}
+
+	public BatchTTTEnvironment(int numGames, double winReward, double loseReward, double livingReward,
+			double drawReward) {
+		this(numGames, winReward, loseReward, livingReward, drawReward, RandomStreams.newStream());
+	}
+
+	public BatchTTTEnvironment(int numGames, double winReward, double loseReward, double livingReward,
+			double drawReward, SplittableRandom r) {
+		this(numGames, r);
+		this.winReward = winReward;
+		this.loseReward = loseReward;
+		this.livingReward = livingReward;
+		this.drawReward = drawReward;
+	}
+
+	/**
+	 *
+	 * @return the number of games played at once
+	 */
+	public int size() {
+		return xBoards.length;
+	}
+
+	/**
+	 * Resets every game to the empty board
+	 */
+	public void reset() {
+		for (int i = 0; i < xBoards.length; i++) {
+			xBoards[i] = 0;
+			oBoards[i] = 0;
+		}
+	}
+
+	/**
+	 * Writes the {@link Game#hashCode} of the current state of every game into {@code states}.
+	 *
+	 * @param states an array of at least {@link #size()} elements
+	 */
+	public void getStates(int[] states) {
+		for (int i = 0; i < xBoards.length; i++)
+			states[i] = BitBoard.code(xBoards[i], oBoards[i], true);
+	}
+
+	/**
+	 *
+	 * @param game the index of the game
+	 * @return the mask of the empty cells of game {@code game}, bit {@code 3*x+y} for cell (x,y). These are X's
+	 *         possible moves.
+	 */
+	public int getPossibleMoves(int game) {
+		return ~(xBoards[game] | oBoards[game]) & BitBoard.FULL;
+	}
+
+	/**
+	 * Plays X's move {@code actions[i]} (a cell {@code 3*x+y}) in every game {@code i}, followed by the opponent's
+	 * reply unless X's move ended the game. As in {@link TTTEnvironment#executeMove}, {@code reward[i]} is the reward
+	 * for the whole step and {@code nextState[i]} is the state after the opponent's reply, or the terminal state after
+	 * X's move. Games with {@code done[i]} set have been reset to the empty board after filling in their results.
+	 *
+	 * @param actions   X's move in every game
+	 * @param reward    filled with the reward received in every game
+	 * @param nextState filled with the {@link Game#hashCode} of the state reached in every game
+	 * @param done      filled with whether every game ended in this step
+	 * @throws IllegalMoveException if one of the actions is not an empty cell
+	 */
+	public void step(int[] actions, double[] reward, int[] nextState, boolean[] done) throws IllegalMoveException {
+		for (int i = 0; i < xBoards.length; i++) {
+			int a = actions[i];
+			int empty = getPossibleMoves(i);
+			if (a < 0 || a > 8 || (empty & (1 << a)) == 0)
+				throw new IllegalMoveException("Illegal Move: cell " + a + " in game " + i);
+
+			int x = xBoards[i] | (1 << a);
+			int o = oBoards[i];
+			empty &= ~(1 << a);
+
+			if (BitBoard.hasLine(x)) {
+				reward[i] = winReward;
+				nextState[i] = BitBoard.code(x, o, false);
+				done[i] = true;
+			} else if (empty == 0) {
+				reward[i] = drawReward;
+				nextState[i] = BitBoard.code(x, o, false);
+				done[i] = true;
+			} else {
+				// the opponent plays a random empty cell
+				o |= 1 << BitBoard.nthCell(empty, r.nextInt(Integer.bitCount(empty)));
+				if (BitBoard.hasLine(o)) {
+					reward[i] = loseReward;
+					done[i] = true;
+				} else if ((x | o) == BitBoard.FULL) {
+					reward[i] = drawReward;
+					done[i] = true;
+				} else {
+					reward[i] = livingReward;
+					done[i] = false;
+				}
+				nextState[i] = BitBoard.code(x, o, true);
+			}
+
+			if (done[i]) {
+				xBoards[i] = 0;
+				oBoards[i] = 0;
+			} else {
+				xBoards[i] = x;
+				oBoards[i] = o;
+			}
+		}
+	}
+
+}
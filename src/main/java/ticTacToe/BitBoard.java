@@ -0,0 +1,140 @@
+package ticTacToe;
+
+/**
+ * Helpers for a compact representation of a board as two 9 bit masks, one for the X's and one for the O's. Cell
+ * {@code 3*x+y} of the board is bit {@code 3*x+y} of a mask.
+ *
+ * The {@link #code} of a board is the same number as {@link Game#hashCode} returns for the corresponding game, so the
+ * two representations can be mixed, e.g. to index an {@link ArrayQTable}.
+ *
+ * @author ae187
+ *
+ */
+final class BitBoard {
+
+	/**
+	 * All 9 cells
+	 */
+	static final int FULL = 0x1FF;
+
+	/**
+	 * The 8 lines of three cells: rows, columns and the two diagonals.
+	 */
+	static final int[] LINES = { 0x007, 0x038, 0x1C0, 0x049, 0x092, 0x124, 0x111, 0x054 };
+
+	/**
+	 * The value of a cell's base 3 digit in {@link Game#hashCode}: the first cell is the most significant digit, and the
+	 * least significant one is whose turn it is.
+	 */
+	static final int[] PLACE = { 19683, 6561, 2187, 729, 243, 81, 27, 9, 3 };
+
+	private BitBoard() {
+	}
+
+	/**
+	 *
+	 * @param bits
+	 * @return true if the cells in {@code bits} contain a full line.
+	 */
+	static boolean hasLine(int bits) {
+		for (int line : LINES)
+			if ((bits & line) == line)
+				return true;
+
+		return false;
+	}
+
+	/**
+	 *
+	 * @return one of {@link Game#X_WON}, {@link Game#O_WON}, {@link Game#DRAW} or {@link Game#ONGOING}
+	 */
+	static int evaluate(int xBits, int oBits) {
+		if (hasLine(xBits))
+			return Game.X_WON;
+		if (hasLine(oBits))
+			return Game.O_WON;
+		if ((xBits | oBits) == FULL)
+			return Game.DRAW;
+
+		return Game.ONGOING;
+	}
+
+	/**
+	 *
+	 * @return the {@link Game#hashCode} of the board
+	 */
+	static int code(int xBits, int oBits, boolean xToMove) {
+		int code = xToMove ? 1 : 2;
+		for (int cell = 0; cell < 9; cell++) {
+			if ((xBits & (1 << cell)) != 0)
+				code += PLACE[cell];
+			else if ((oBits & (1 << cell)) != 0)
+				code += 2 * PLACE[cell];
+		}
+
+		return code;
+	}
+
+	static int bits(Game g, char xo) {
+		char[][] board = g.getBoard();
+		int bits = 0;
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 3; j++)
+				if (board[i][j] == xo)
+					bits |= 1 << (3 * i + j);
+
+		return bits;
+	}
+
+	/**
+	 *
+	 * @param code a {@link Game#hashCode}
+	 * @param xo   'X' or 'O'
+	 * @return the mask of the cells held by {@code xo} in the game with that hash
+	 */
+	static int bits(int code, char xo) {
+		int digit = xo == 'X' ? 1 : 2;
+		int bits = 0;
+		for (int cell = 0; cell < 9; cell++)
+			if ((code / PLACE[cell]) % 3 == digit)
+				bits |= 1 << cell;
+
+		return bits;
+	}
+
+	/**
+	 *
+	 * @return the mask of the empty cells of {@code g}
+	 */
+	static int empty(Game g) {
+		return ~(bits(g, 'X') | bits(g, 'O')) & FULL;
+	}
+
+	/**
+	 *
+	 * @param code a {@link Game#hashCode}
+	 * @return the mask of the empty cells of the game with that hash
+	 */
+	static int empty(int code) {
+		int empty = 0;
+		for (int cell = 0; cell < 9; cell++)
+			if ((code / PLACE[cell]) % 3 == 0)
+				empty |= 1 << cell;
+
+		return empty;
+	}
+
+	/**
+	 *
+	 * @param mask a non-empty mask
+	 * @param k    between 0 (inclusive) and {@code Integer.bitCount(mask)} (exclusive)
+	 * @return the cell of the {@code k}th set bit in {@code mask}
+	 */
+	static int nthCell(int mask, int k) {
+		for (int i = 0; i < k; i++)
+			mask &= mask - 1;
+
+		return Integer.numberOfTrailingZeros(mask);
+	}
+
+}
@@ -0,0 +1,116 @@
+package ticTacToe;
+
+/**
+ * Sparse binary features of a move, for the linear q-function of {@link LinearQAgent}. The features describe the board
+ * after the player to move (the "mover") has played the move, from the mover's point of view, so the same weights can
+ * be used for X and O. Every feature is a small count or occupancy, binned, so that exactly
+ * {@link #ACTIVE_FEATURES} of the {@link #NUM_FEATURES} features are active (equal to 1) for any move and all the others
+ * are 0. The features are:
+ * <ul>
+ * <li>a bias, always active;</li>
+ * <li>whether the move is in the centre, a corner or on an edge;</li>
+ * <li>line ownership: the number of lines holding 1, 2 or 3 of the mover's pieces and none of the other player's, and
+ * the number holding 1 or 2 of the other player's and none of the mover's, each binned as 0, 1, 2 or 3+;</li>
+ * <li>who holds the centre;</li>
+ * <li>the number of corners, and of edges, held by each player;</li>
+ * <li>fork patterns: the number of empty cells where the other player, who moves next, could make two lines of 2 at
+ * once, and the same for the mover, each binned as 0, 1 or 2+.</li>
+ * </ul>
+ * The number of features depends only on the kinds of patterns, not on the number of states, so a q-function over them
+ * uses the same small amount of memory however many states the game has.
+ *
+ * @author ae187
+ *
+ */
+final class BoardFeatures {
+
+	static final int BIAS = 0;
+	static final int MOVE_CELL = 1;
+	static final int LINES = 4;
+	static final int CENTRE = 24;
+	static final int CORNERS = 27;
+	static final int EDGES = 37;
+	static final int FORKS = 47;
+
+	static final int NUM_FEATURES = 53;
+	static final int ACTIVE_FEATURES = 14;
+
+	static final int CENTRE_CELL = 1 << 4;
+	static final int CORNER_CELLS = 0x145;
+	static final int EDGE_CELLS = 0x0AA;
+
+	private BoardFeatures() {
+	}
+
+	/**
+	 * Writes the indices of the features active when the mover plays {@code cell} into {@code active}.
+	 *
+	 * @param mover  the cells of the player to move
+	 * @param other  the cells of the other player
+	 * @param cell   an empty cell, {@code 3*x+y}
+	 * @param active at least {@link #ACTIVE_FEATURES} long
+	 */
+	static void extract(int mover, int other, int cell, int[] active) {
+		int move = 1 << cell;
+		int own = mover | move;
+		int empty = ~(own | other) & BitBoard.FULL;
+
+		active[0] = BIAS;
+		active[1] = MOVE_CELL + ((move & CENTRE_CELL) != 0 ? 0 : (move & CORNER_CELLS) != 0 ? 1 : 2);
+
+		// the number of lines of 1, 2 and 3 of the mover's pieces, then of 1 and 2 of
+		// the other's, 4 bits each
+		int lines = 0;
+		for (int line : BitBoard.LINES) {
+			int o = Integer.bitCount(own & line);
+			int t = Integer.bitCount(other & line);
+			if (o > 0 && t == 0)
+				lines += 1 << (4 * (o - 1));
+			else if (t > 0 && t < 3 && o == 0)
+				lines += 1 << (4 * (2 + t));
+		}
+		for (int k = 0; k < 5; k++)
+			active[2 + k] = LINES + 4 * k + Math.min((lines >>> (4 * k)) & 0xF, 3);
+
+		active[7] = CENTRE + ((own & CENTRE_CELL) != 0 ? 0 : (other & CENTRE_CELL) != 0 ? 1 : 2);
+		active[8] = CORNERS + Integer.bitCount(own & CORNER_CELLS);
+		active[9] = CORNERS + 5 + Integer.bitCount(other & CORNER_CELLS);
+		active[10] = EDGES + Integer.bitCount(own & EDGE_CELLS);
+		active[11] = EDGES + 5 + Integer.bitCount(other & EDGE_CELLS);
+		active[12] = FORKS + Math.min(forks(other, own, empty), 2);
+		active[13] = FORKS + 3 + Math.min(forks(own, other, empty), 2);
+	}
+
+	/**
+	 *
+	 * @return the number of cells in {@code empty} where the player with {@code bits} would make at least two lines of
+	 *         2 of their pieces, with none of the {@code opponent}'s.
+	 */
+	static int forks(int bits, int opponent, int empty) {
+		int forks = 0;
+		for (int cells = empty; cells != 0; cells &= cells - 1) {
+			int after = bits | Integer.lowestOneBit(cells);
+			int twos = 0;
+			for (int line : BitBoard.LINES)
+				if ((opponent & line) == 0 && Integer.bitCount(after & line) == 2)
+					twos++;
+			if (twos >= 2)
+				forks++;
+		}
+
+		return forks;
+	}
+
+	/**
+	 *
+	 * @return the sum of the weights of the active features, i.e. the value of a linear function of the features.
+	 */
+	static double value(double[] weights, int[] active) {
+		double v = 0.0;
+		for (int i = 0; i < ACTIVE_FEATURES; i++)
+			v += weights[active[i]];
+
+		return v;
+	}
+
+}
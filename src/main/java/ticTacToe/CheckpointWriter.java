@@ -0,0 +1,79 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes {@link QTableCheckpoint}s off the training thread. {@link #save} only copies the q-values into a spare table,
+ * which takes about a millisecond, and a background thread encodes and writes the copy while training goes on. At most
+ * one checkpoint is written at a time: saving the next one first waits for the previous write to finish, so the spare
+ * table can be reused and a slow disk slows training down rather than piling up copies.
+ *
+ * @author ae187
+ *
+ */
+class CheckpointWriter {
+
+	final File file;
+
+	/**
+	 * The copy of the q-values being written
+	 */
+	final ArrayQTable spare = new ArrayQTable();
+
+	/**
+	 * The thread writing the last checkpoint, or null
+	 */
+	Thread pending;
+
+	/**
+	 * The error of the last write, if it failed
+	 */
+	volatile IOException failure;
+
+	CheckpointWriter(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Starts writing a checkpoint of {@code q} in the background.
+	 *
+	 * @throws IllegalStateException if the previous checkpoint could not be written
+	 */
+	void save(ArrayQTable q, int episode, int interval, long seed, long opponentSeed) {
+		await();
+		System.arraycopy(q.values, 0, spare.values, 0, spare.values.length);
+		final QTableCheckpoint checkpoint = new QTableCheckpoint(spare, episode, interval, seed, opponentSeed);
+		pending = new Thread(new Runnable() {
+			public void run() {
+				try {
+					checkpoint.write(file);
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+		}, "checkpoint-writer");
+		pending.start();
+	}
+
+	/**
+	 * Waits for the last checkpoint to be written.
+	 *
+	 * @throws IllegalStateException if it could not be written
+	 */
+	void await() {
+		if (pending == null)
+			return;
+
+		try {
+			pending.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a checkpoint to be written", e);
+		}
+		pending = null;
+		if (failure != null)
+			throw new IllegalStateException("Could not write checkpoint " + file, failure);
+	}
+
+}
@@ -0,0 +1,431 @@
+package ticTacToe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link TTTMDP} compiled into flat arrays, so that it can be solved again and again without generating any
+ * transitions or games. The states are the games in which X is to move or that are over (as in the value maps of
+ * {@link ValueIterationAgent} and {@link PolicyIterationAgent}), numbered densely in hash order. The moves of state
+ * {@code s} are {@code moveStart[s]} to {@code moveStart[s+1]-1}, and the transitions of move {@code m} are
+ * {@code transitionStart[m]} to {@code transitionStart[m+1]-1}, each with its probability, its next state, and the kind
+ * of its reward: a win, a loss, a draw, or the living reward.
+ *
+ * For opponent modelling, each move also records the game after it, in which O is to move, and each transition the
+ * cell O replied in, and a predecessor index lists the moves with a transition into each state, so that changes can be
+ * propagated backwards, see {@link OpponentModellingAgent}.
+ *
+ * The transition structure doesn't depend on the rewards or the discount, which are kept apart in a reward vector
+ * indexed by the kinds: {@link #with} makes an MDP with other rewards or discount that shares the structure of this
+ * one, at no cost. Agents re-solve with changed parameters this way, starting from their previous values, see
+ * {@link ValueIterationAgent#resolve}. The structure, compiled once per process, is shared by all instances, see
+ * {@link #shared()}, and never changes. Only the probabilities of an instance made with {@link #withProbabilities} can
+ * be changed, by the agent that owns it.
+ *
+ * Values are arrays indexed by state, where terminal states always have the value 0. The backups are the standard
+ * Bellman backups, as in {@link ValueIterationAgent#sweep} and {@link PolicyIterationAgent#evaluationSweep}, so the
+ * values of a solve match those of the agents' own methods once converged, but not necessarily after any given number
+ * of steps.
+ *
+ * @author ae187
+ *
+ */
+public class CompiledTTTMDP {
+
+	/**
+	 * The kinds of rewards, indexes in {@link #reward}
+	 */
+	static final int WIN = 0;
+	static final int LOSE = 1;
+	static final int LIVING = 2;
+	static final int DRAW = 3;
+
+	/**
+	 * The games of the states
+	 */
+	final Game[] states;
+
+	/**
+	 * The state of each game hash, or -1
+	 */
+	final int[] index;
+
+	final int[] moveStart;
+
+	/**
+	 * The cell {@code 3*x+y} of each move
+	 */
+	final int[] moveCell;
+
+	/**
+	 * The state each move is played in
+	 */
+	final int[] moveState;
+
+	/**
+	 * The hash of the game after each move, before O replies
+	 */
+	final int[] after;
+
+	/**
+	 * The moves after which the game has each hash are {@code afterMove[afterStart[h]]} to
+	 * {@code afterMove[afterStart[h+1]-1]}
+	 */
+	final int[] afterStart;
+	final int[] afterMove;
+
+	final int[] transitionStart;
+
+	final double[] prob;
+
+	final int[] next;
+
+	final byte[] kind;
+
+	/**
+	 * The cell O replied in, in each transition, or -1 if the game ended with X's move
+	 */
+	final byte[] reply;
+
+	/**
+	 * The moves with a transition into state {@code s} are {@code predecessorMove[predecessorStart[s]]} to
+	 * {@code predecessorMove[predecessorStart[s+1]-1]}
+	 */
+	final int[] predecessorStart;
+	final int[] predecessorMove;
+
+	/**
+	 * The rewards of each kind, and the discount factor
+	 */
+	final double[] reward;
+	final double discount;
+
+	/**
+	 * Compiles the transitions of {@code mdp}.
+	 */
+	public CompiledTTTMDP(TTTMDP mdp, double discount) {
+		List<Game> games = Game.generateAllValidGames('X');
+		index = new int[ArrayQTable.NUM_STATES];
+		Arrays.fill(index, -1);
+		List<Game> numbered = new ArrayList<Game>(games.size());
+		for (Game g : games) {
+			if (index[g.hashCode()] < 0) {
+				index[g.hashCode()] = numbered.size();
+				numbered.add(g);
+			}
+		}
+
+		List<Integer> cells = new ArrayList<Integer>();
+		List<Game> afterGames = new ArrayList<Game>();
+		List<TransitionProb> transitions = new ArrayList<TransitionProb>();
+		List<Integer> transitionCounts = new ArrayList<Integer>();
+		int[] starts = new int[numbered.size() + 1];
+		for (int s = 0; s < numbered.size(); s++) {
+			starts[s] = cells.size();
+			Game g = numbered.get(s);
+			if (g.isTerminal())
+				continue;
+
+			for (Move m : g.getPossibleMoves()) {
+				List<TransitionProb> t = mdp.generateTransitions(g, m);
+				cells.add(3 * m.x + m.y);
+				try {
+					afterGames.add(g.simulateMove(m));
+				} catch (IllegalMoveException e) {
+					throw new IllegalStateException("Illegal move " + m + " generated", e);
+				}
+				transitionCounts.add(t.size());
+				transitions.addAll(t);
+			}
+		}
+		int numMoves = cells.size();
+		starts[numbered.size()] = numMoves;
+
+		moveCell = new int[numMoves];
+		moveState = new int[numMoves];
+		after = new int[numMoves];
+		transitionStart = new int[numMoves + 1];
+		for (int s = 0; s < numbered.size(); s++)
+			for (int m = starts[s]; m < starts[s + 1]; m++)
+				moveState[m] = s;
+		for (int m = 0; m < numMoves; m++) {
+			moveCell[m] = cells.get(m);
+			after[m] = afterGames.get(m).hashCode();
+			transitionStart[m + 1] = transitionStart[m] + transitionCounts.get(m);
+		}
+
+		prob = new double[transitions.size()];
+		next = new int[transitions.size()];
+		kind = new byte[transitions.size()];
+		reply = new byte[transitions.size()];
+		for (int m = 0; m < numMoves; m++) {
+			int oBefore = BitBoard.bits(afterGames.get(m), 'O');
+			for (int t = transitionStart[m]; t < transitionStart[m + 1]; t++) {
+				Game sPrime = transitions.get(t).outcome.sPrime;
+				// terminal games where O is to move, after X won or drew, get a state of their own
+				if (index[sPrime.hashCode()] < 0) {
+					index[sPrime.hashCode()] = numbered.size();
+					numbered.add(sPrime);
+				}
+				prob[t] = transitions.get(t).prob;
+				next[t] = index[sPrime.hashCode()];
+				kind[t] = kind(sPrime);
+				int replied = BitBoard.bits(sPrime, 'O') & ~oBefore;
+				reply[t] = (byte) (replied == 0 ? -1 : Integer.numberOfTrailingZeros(replied));
+			}
+		}
+		states = numbered.toArray(new Game[numbered.size()]);
+		// the states added for terminal games have no moves
+		moveStart = Arrays.copyOf(starts, states.length + 1);
+		Arrays.fill(moveStart, starts.length, moveStart.length, numMoves);
+
+		// the moves after which the game has each hash, and the moves into each state
+		afterStart = new int[ArrayQTable.NUM_STATES + 1];
+		afterMove = new int[numMoves];
+		for (int m = 0; m < numMoves; m++)
+			afterStart[after[m] + 1]++;
+		for (int h = 0; h < ArrayQTable.NUM_STATES; h++)
+			afterStart[h + 1] += afterStart[h];
+		int[] filled = Arrays.copyOf(afterStart, ArrayQTable.NUM_STATES);
+		for (int m = 0; m < numMoves; m++)
+			afterMove[filled[after[m]]++] = m;
+
+		predecessorStart = new int[states.length + 1];
+		for (int t = 0; t < next.length; t++)
+			predecessorStart[next[t] + 1]++;
+		for (int s = 0; s < states.length; s++)
+			predecessorStart[s + 1] += predecessorStart[s];
+		predecessorMove = new int[next.length];
+		filled = Arrays.copyOf(predecessorStart, states.length);
+		for (int m = 0; m < numMoves; m++)
+			for (int t = transitionStart[m]; t < transitionStart[m + 1]; t++)
+				predecessorMove[filled[next[t]]++] = m;
+
+		reward = new double[] { mdp.winReward, mdp.loseReward, mdp.livingReward, mdp.drawReward };
+		this.discount = discount;
+	}
+
+	private CompiledTTTMDP(CompiledTTTMDP structure, double[] prob, double[] reward, double discount) {
+		this.states = structure.states;
+		this.index = structure.index;
+		this.moveStart = structure.moveStart;
+		this.moveCell = structure.moveCell;
+		this.moveState = structure.moveState;
+		this.after = structure.after;
+		this.afterStart = structure.afterStart;
+		this.afterMove = structure.afterMove;
+		this.transitionStart = structure.transitionStart;
+		this.prob = prob;
+		this.next = structure.next;
+		this.kind = structure.kind;
+		this.reply = structure.reply;
+		this.predecessorStart = structure.predecessorStart;
+		this.predecessorMove = structure.predecessorMove;
+		this.reward = reward;
+		this.discount = discount;
+	}
+
+	/**
+	 * The structure compiled once, with the default rewards of {@link TTTMDP} and discount 0.9
+	 */
+	private static final class Holder {
+		static final CompiledTTTMDP shared = new CompiledTTTMDP(new TTTMDP(), 0.9);
+	}
+
+	/**
+	 *
+	 * @return the MDP with the default rewards and discount, compiled on first use. Use {@link #with} for other
+	 *         parameters.
+	 */
+	public static CompiledTTTMDP shared() {
+		return Holder.shared;
+	}
+
+	/**
+	 *
+	 * @return an MDP with the same transitions as this one, and the given rewards and discount
+	 */
+	public CompiledTTTMDP with(double discount, double winReward, double loseReward, double livingReward,
+			double drawReward) {
+		return new CompiledTTTMDP(this, prob, new double[] { winReward, loseReward, livingReward, drawReward },
+				discount);
+	}
+
+	/**
+	 *
+	 * @return an MDP with the same transitions, rewards and discount as this one, and its own copy of the transition
+	 *         probabilities, which its owner may change
+	 */
+	CompiledTTTMDP withProbabilities() {
+		return new CompiledTTTMDP(this, prob.clone(), reward, discount);
+	}
+
+	private static byte kind(Game sPrime) {
+		switch (sPrime.getState()) {
+		case Game.X_WON:
+			return WIN;
+		case Game.O_WON:
+			return LOSE;
+		case Game.DRAW:
+			return DRAW;
+		default:
+			return LIVING;
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of states
+	 */
+	public int size() {
+		return states.length;
+	}
+
+	/**
+	 *
+	 * @return the q-value of move {@code m} under the {@code values}
+	 */
+	double qValue(double[] values, int m) {
+		double q = 0;
+		for (int t = transitionStart[m]; t < transitionStart[m + 1]; t++)
+			q += prob[t] * (reward[kind[t]] + discount * values[next[t]]);
+		return q;
+	}
+
+	/**
+	 *
+	 * @return the value of move {@code m} under the {@code values} if O replies to minimise it, rather than at random
+	 */
+	double worstCase(double[] values, int m) {
+		double q = Double.POSITIVE_INFINITY;
+		for (int t = transitionStart[m]; t < transitionStart[m + 1]; t++)
+			q = Math.min(q, reward[kind[t]] + discount * values[next[t]]);
+		return q;
+	}
+
+	/**
+	 * Performs one value iteration step, updating {@code values} in place.
+	 *
+	 * @return the Bellman residual of the step: the largest change of a value
+	 */
+	double sweep(double[] values) {
+		double residual = 0;
+		for (int s = 0; s < states.length; s++) {
+			if (moveStart[s] == moveStart[s + 1])
+				continue;
+
+			double v = Double.NEGATIVE_INFINITY;
+			for (int m = moveStart[s]; m < moveStart[s + 1]; m++)
+				v = Math.max(v, qValue(values, m));
+
+			residual = Math.max(residual, Math.abs(v - values[s]));
+			values[s] = v;
+		}
+		return residual;
+	}
+
+	/**
+	 * Performs one policy evaluation step for {@code policy}, the move (see {@link #moveStart}) played in each state,
+	 * updating {@code values} in place.
+	 *
+	 * @return the largest change of a value
+	 */
+	double evaluationSweep(double[] values, int[] policy) {
+		double residual = 0;
+		for (int s = 0; s < states.length; s++) {
+			if (policy[s] < 0)
+				continue;
+
+			double v = qValue(values, policy[s]);
+			residual = Math.max(residual, Math.abs(v - values[s]));
+			values[s] = v;
+		}
+		return residual;
+	}
+
+	/**
+	 *
+	 * @return the greedy move in each state under the {@code values}, -1 in terminal states. Ties go to the first move,
+	 *         as in the agents' own policy extraction.
+	 */
+	int[] greedy(double[] values) {
+		int[] policy = new int[states.length];
+		for (int s = 0; s < states.length; s++) {
+			policy[s] = -1;
+			double best = Double.NEGATIVE_INFINITY;
+			for (int m = moveStart[s]; m < moveStart[s + 1]; m++) {
+				double q = qValue(values, m);
+				if (q > best) {
+					best = q;
+					policy[s] = m;
+				}
+			}
+		}
+		return policy;
+	}
+
+	/**
+	 *
+	 * @return the values in {@code map} as an array, 0 for states missing from it
+	 */
+	double[] values(Map<Game, Double> map) {
+		double[] values = new double[states.length];
+		for (int s = 0; s < states.length; s++) {
+			Double v = map.get(states[s]);
+			if (v != null && !states[s].isTerminal())
+				values[s] = v;
+		}
+		return values;
+	}
+
+	/**
+	 * Copies {@code values} into {@code map}.
+	 */
+	void copyTo(double[] values, Map<Game, Double> map) {
+		for (int s = 0; s < states.length; s++)
+			if (map.containsKey(states[s]) || !states[s].isTerminal())
+				map.put(states[s], values[s]);
+	}
+
+	/**
+	 *
+	 * @return the move (see {@link #moveStart}) that {@code p} plays in each state, -1 in terminal states and where
+	 *         {@code p} has no legal move
+	 */
+	int[] moves(Policy p) {
+		int[] policy = new int[states.length];
+		for (int s = 0; s < states.length; s++) {
+			policy[s] = -1;
+			if (moveStart[s] == moveStart[s + 1])
+				continue;
+
+			Move move = p.getMove(states[s]);
+			if (move == null)
+				continue;
+
+			for (int m = moveStart[s]; m < moveStart[s + 1]; m++)
+				if (moveCell[m] == 3 * move.x + move.y)
+					policy[s] = m;
+		}
+		return policy;
+	}
+
+	/**
+	 *
+	 * @return the moves of {@code policy} as a map from games
+	 */
+	HashMap<Game, Move> toMap(int[] policy) {
+		HashMap<Game, Move> map = new HashMap<Game, Move>();
+		for (int s = 0; s < states.length; s++) {
+			if (policy[s] >= 0) {
+				Game g = states[s];
+				map.put(g, new Move(g.whoseTurn, moveCell[policy[s]] / 3, moveCell[policy[s]] % 3));
+			}
+		}
+		return map;
+	}
+
+}
@@ -0,0 +1,167 @@
+package ticTacToe;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Keeps a snapshot of the q-values and greedy moves of an {@link ArrayQTable}, to measure how much they changed between
+ * two convergence checks during training, see {@link QLearningAgent#train}. A check costs one pass over the q-states
+ * of the table, so it is cheap compared to the training episodes played between checks.
+ *
+ * @author ae187
+ *
+ */
+class ConvergenceMonitor {
+
+	/**
+	 * the hashes of the non-terminal states checked
+	 */
+	final int[] states;
+
+	/**
+	 * the masks of available moves in each state
+	 */
+	final int[] moves;
+
+	/**
+	 * the greedy move in each state at the last check, -1 before the first check
+	 */
+	final int[] greedy;
+
+	/**
+	 * the q-values at the last check, {@link ArrayQTable#NUM_MOVES} per state
+	 */
+	final double[] previous;
+
+	/**
+	 * the index of each state in {@link #states}, by hash, or -1
+	 */
+	final int[] index;
+
+	/**
+	 * whether the greedy move of each state changed at the last check
+	 */
+	final boolean[] changed;
+
+	/**
+	 * the number of states whose greedy move changed at the last check, among those that X can reach by playing its
+	 * greedy moves, see {@link #reachableChanges()}
+	 */
+	int policyChanges;
+
+	/**
+	 * the largest change of a q-value at the last check
+	 */
+	double maxDelta;
+
+	/**
+	 * Monitors the non-terminal games in {@code games}, starting from the values in {@code q}.
+	 */
+	ConvergenceMonitor(Collection<Game> games, ArrayQTable q) {
+		int n = 0;
+		for (Game g : games)
+			if (!g.isTerminal())
+				n++;
+
+		states = new int[n];
+		moves = new int[n];
+		int i = 0;
+		for (Game g : games) {
+			if (!g.isTerminal()) {
+				states[i] = g.hashCode();
+				moves[i] = BitBoard.empty(g);
+				i++;
+			}
+		}
+
+		index = new int[ArrayQTable.NUM_STATES];
+		Arrays.fill(index, -1);
+		for (i = 0; i < n; i++)
+			index[states[i]] = i;
+		changed = new boolean[n];
+
+		greedy = new int[n];
+		previous = new double[n * ArrayQTable.NUM_MOVES];
+		for (i = 0; i < n; i++) {
+			greedy[i] = q.bestCell(states[i], moves[i]);
+			System.arraycopy(q.values, states[i] * ArrayQTable.NUM_MOVES, previous, i * ArrayQTable.NUM_MOVES,
+					ArrayQTable.NUM_MOVES);
+		}
+	}
+
+	/**
+	 * Compares {@code q} with the snapshot taken at the last check, setting {@link #policyChanges} and
+	 * {@link #maxDelta}, then takes a new snapshot.
+	 */
+	void check(ArrayQTable q) {
+		maxDelta = 0.0;
+		for (int i = 0; i < states.length; i++) {
+			int best = q.bestCell(states[i], moves[i]);
+			changed[i] = best != greedy[i];
+			greedy[i] = best;
+
+			int from = states[i] * ArrayQTable.NUM_MOVES;
+			int to = i * ArrayQTable.NUM_MOVES;
+			for (int cell = 0; cell < ArrayQTable.NUM_MOVES; cell++) {
+				maxDelta = Math.max(maxDelta, Math.abs(q.values[from + cell] - previous[to + cell]));
+				previous[to + cell] = q.values[from + cell];
+			}
+		}
+		policyChanges = reachableChanges();
+	}
+
+	/**
+	 * Walks the games that X can reach by playing the greedy moves of the last check, from the empty board and from
+	 * each first move of O, with O replying in every possible way.
+	 *
+	 * @return the number of those games whose greedy move changed at the last check. Moves changing in the other
+	 *         states, which training only reaches by exploring, can't change how the greedy policy plays.
+	 */
+	int reachableChanges() {
+		boolean[] visited = new boolean[states.length];
+		int count = reach(0, 0, visited);
+		for (int cell = 0; cell < 9; cell++)
+			count += reach(0, 1 << cell, visited);
+		return count;
+	}
+
+	/**
+	 * Walks the games reachable from the board with X to move on {@code xBits} and {@code oBits}, see
+	 * {@link #reachableChanges()}.
+	 *
+	 * @return the number of newly visited games whose greedy move changed
+	 */
+	private int reach(int xBits, int oBits, boolean[] visited) {
+		int i = index[BitBoard.code(xBits, oBits, true)];
+		if (i < 0 || visited[i] || greedy[i] < 0)
+			return 0;
+
+		visited[i] = true;
+		int count = changed[i] ? 1 : 0;
+		int x = xBits | 1 << greedy[i];
+		if (BitBoard.evaluate(x, oBits) != Game.ONGOING)
+			return count;
+
+		for (int empty = ~(x | oBits) & BitBoard.FULL; empty != 0; empty &= empty - 1) {
+			int o = oBits | Integer.lowestOneBit(empty);
+			if (BitBoard.evaluate(x, o) == Game.ONGOING)
+				count += reach(x, o, visited);
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * @return the greedy moves at the last check, as a policy
+	 */
+	MappedPolicy policy() {
+		byte[] cells = new byte[PolicyFile.NUM_STATES];
+		Arrays.fill(cells, PolicyFile.NO_MOVE);
+		for (int i = 0; i < states.length; i++)
+			if (greedy[i] >= 0)
+				cells[states[i]] = (byte) greedy[i];
+
+		return new MappedPolicy(PolicyFile.encode(cells));
+	}
+
+}
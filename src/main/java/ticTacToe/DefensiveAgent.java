@@ -11,5 +11,14 @@ public class DefensiveAgent extends Agent {
 	{
 		super(new DefensivePolicy());
 	}
+	
+	/**
+	 * 
+	 * @param verbose whether the agent prints out the kind of each move it plays
+	 */
+	public DefensiveAgent(boolean verbose)
+	{
+		super(new DefensivePolicy(RandomStreams.newStream(), verbose));
+	}
 
 }
@@ -0,0 +1,206 @@
+package ticTacToe;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A tabular model of the {@link TTTEnvironment}, learned from experience, for Dyna-Q planning in
+ * {@link QLearningAgent#trainDyna}. For every q-state (state, cell) tried it records each distinct next state observed,
+ * how many times it was observed, and the reward received, so a q-state's expected backup can be computed without
+ * playing against the opponent. States are {@link Game#hashCode} values and q-states are indices
+ * {@code state*9+cell} into an {@link ArrayQTable}.
+ *
+ * The outcomes of a q-state are kept in a linked list threaded through primitive arrays, and so are the outcomes
+ * leading to each state, so the model can also find the predecessors of a state for prioritised sweeping. The priority
+ * queue used by prioritised sweeping is an indexed binary max-heap over q-states.
+ *
+ * @author ae187
+ *
+ */
+class DynaModel {
+
+	static final int NUM_QSTATES = ArrayQTable.NUM_STATES * ArrayQTable.NUM_MOVES;
+
+	/**
+	 * the first outcome of each q-state, -1 if it was never tried
+	 */
+	final int[] firstOutcome = new int[NUM_QSTATES];
+
+	/**
+	 * the number of times each q-state was tried
+	 */
+	final int[] visits = new int[NUM_QSTATES];
+
+	/**
+	 * the q-states tried at least once, for uniform sampling
+	 */
+	int[] observed = new int[1024];
+	int numObserved = 0;
+
+	/**
+	 * the first outcome leading to each state, -1 if none was observed
+	 */
+	final int[] firstPredecessor = new int[ArrayQTable.NUM_STATES];
+
+	/**
+	 * the outcomes: (q-state, next state, reward, done) and how many times each was observed, with the next outcome of
+	 * the same q-state and the next outcome leading to the same state
+	 */
+	int[] qStates = new int[1024];
+	int[] nextStates = new int[1024];
+	double[] rewards = new double[1024];
+	boolean[] done = new boolean[1024];
+	int[] counts = new int[1024];
+	int[] nextOutcome = new int[1024];
+	int[] nextPredecessor = new int[1024];
+	int numOutcomes = 0;
+
+	/**
+	 * the priority queue of q-states: {@code heap} holds the q-states, {@code heapIndex} the position of each q-state
+	 * in the heap plus one (0 if it isn't queued), and {@code priority} its priority.
+	 */
+	int[] heap = new int[1024];
+	int heapSize = 0;
+	final int[] heapIndex = new int[NUM_QSTATES];
+	final double[] priority = new double[NUM_QSTATES];
+
+	DynaModel() {
+		Arrays.fill(firstOutcome, -1);
+		Arrays.fill(firstPredecessor, -1);
+	}
+
+	/**
+	 * Records that doing {@code cell} in {@code state} led to {@code nextState} with {@code reward}.
+	 *
+	 * @return the q-state index of ({@code state}, {@code cell})
+	 */
+	int record(int state, int cell, double reward, int nextState, boolean terminal) {
+		int qState = state * ArrayQTable.NUM_MOVES + cell;
+		if (visits[qState]++ == 0) {
+			if (numObserved == observed.length)
+				observed = Arrays.copyOf(observed, 2 * numObserved);
+			observed[numObserved++] = qState;
+		}
+
+		for (int o = firstOutcome[qState]; o >= 0; o = nextOutcome[o]) {
+			if (nextStates[o] == nextState) {
+				counts[o]++;
+				return qState;
+			}
+		}
+
+		if (numOutcomes == qStates.length) {
+			int capacity = 2 * numOutcomes;
+			qStates = Arrays.copyOf(qStates, capacity);
+			nextStates = Arrays.copyOf(nextStates, capacity);
+			rewards = Arrays.copyOf(rewards, capacity);
+			done = Arrays.copyOf(done, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+			nextOutcome = Arrays.copyOf(nextOutcome, capacity);
+			nextPredecessor = Arrays.copyOf(nextPredecessor, capacity);
+		}
+
+		int o = numOutcomes++;
+		qStates[o] = qState;
+		nextStates[o] = nextState;
+		rewards[o] = reward;
+		done[o] = terminal;
+		counts[o] = 1;
+		nextOutcome[o] = firstOutcome[qState];
+		firstOutcome[qState] = o;
+		nextPredecessor[o] = firstPredecessor[nextState];
+		firstPredecessor[nextState] = o;
+		return qState;
+	}
+
+	/**
+	 *
+	 * @return a q-state chosen uniformly among the q-states tried so far
+	 */
+	int sample(SplittableRandom r) {
+		return observed[r.nextInt(numObserved)];
+	}
+
+	/**
+	 *
+	 * @return the expected reward plus discounted value of the next state, under the model, of q-state
+	 *         {@code qState}, which must have been tried at least once.
+	 */
+	double target(ArrayQTable q, int qState, double discount) {
+		double sum = 0.0;
+		for (int o = firstOutcome[qState]; o >= 0; o = nextOutcome[o]) {
+			double sample = rewards[o];
+			if (!done[o])
+				sample += discount * q.maxQValue(nextStates[o], BitBoard.empty(nextStates[o]));
+			sum += counts[o] * sample;
+		}
+
+		return sum / visits[qState];
+	}
+
+	/**
+	 * Queues {@code qState} with priority {@code p}, or raises its priority to {@code p} if it is queued with a lower
+	 * one.
+	 */
+	void push(int qState, double p) {
+		int i = heapIndex[qState] - 1;
+		if (i < 0) {
+			if (heapSize == heap.length)
+				heap = Arrays.copyOf(heap, 2 * heapSize);
+			i = heapSize++;
+			heap[i] = qState;
+			heapIndex[qState] = i + 1;
+		} else if (p <= priority[qState]) {
+			return;
+		}
+
+		priority[qState] = p;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (priority[heap[parent]] >= p)
+				break;
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	/**
+	 *
+	 * @return the queued q-state with the highest priority, removed from the queue, or -1 if the queue is empty
+	 */
+	int pop() {
+		if (heapSize == 0)
+			return -1;
+
+		int top = heap[0];
+		heapIndex[top] = 0;
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapIndex[heap[0]] = 1;
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= heapSize)
+					break;
+				if (child + 1 < heapSize && priority[heap[child + 1]] > priority[heap[child]])
+					child++;
+				if (priority[heap[i]] >= priority[heap[child]])
+					break;
+				swap(i, child);
+				i = child;
+			}
+		}
+
+		return top;
+	}
+
+	private void swap(int i, int j) {
+		int t = heap[i];
+		heap[i] = heap[j];
+		heap[j] = t;
+		heapIndex[heap[i]] = i + 1;
+		heapIndex[heap[j]] = j + 1;
+	}
+
+}
@@ -0,0 +1,272 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Batch (fitted) Q-Iteration over a {@link TransitionLog}: learns q-values offline from logged moves, without playing
+ * any game. The log is memory mapped, read only, and every sweep streams through all its records, computing for each
+ * one the sample {@code r + discount * max_a' Q(s',a')} from the q-values of the previous sweep. The new q-value of a
+ * (state, move) pair is the mean of its samples, so the sweeps are synchronous, and, with tabular q-values, each sweep
+ * is one step of value iteration on the empirical model of the log. Sweeps stop when no q-value changes by more than
+ * {@link #tolerance}, or after {@link #maxSweeps} sweeps.
+ *
+ * Since the q-values only change between sweeps, the records of a sweep are split into {@link #numThreads} contiguous
+ * chunks, read in parallel into separate sums of samples that are added up at the end of the sweep. As every chunk
+ * always goes to the same thread and the sums are added up in the same order, the result doesn't depend on timing.
+ *
+ * Only moves found in the log are considered: the max over the next state's moves and the extracted policy ignore
+ * moves never logged in a state, whose q-values stay unknown, and fall back on every legal move for states not logged
+ * at all.
+ *
+ * @author ae187
+ *
+ */
+public class FittedQIteration {
+
+	/**
+	 * The largest number of records in one mapping, as a mapping can't be larger than 2GB
+	 */
+	static final int SEGMENT_RECORDS = Integer.MAX_VALUE / TransitionLog.RECORD_SIZE;
+
+	/**
+	 * The log to learn from
+	 */
+	final File file;
+
+	/**
+	 * The discount factor (gamma)
+	 */
+	double discount = 0.9;
+
+	/**
+	 * The largest number of sweeps over the log
+	 */
+	int maxSweeps = 100;
+
+	/**
+	 * Sweeping stops when no q-value changes by more than this
+	 */
+	double tolerance = 1e-3;
+
+	/**
+	 * The number of threads reading the log
+	 */
+	int numThreads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The q-values learned by the last call to {@link #fit}
+	 */
+	ArrayQTable q;
+
+	/**
+	 * {@code logged[state]} is the mask of the moves logged in {@code state}, set by {@link #fit}
+	 */
+	int[] logged;
+
+	/**
+	 * The number of samples of each q-state in the log, set by {@link #fit}
+	 */
+	int[] counts;
+
+	/**
+	 * The number of records and of sweeps in the last call to {@link #fit}
+	 */
+	long records = 0;
+	int sweeps = 0;
+
+	public FittedQIteration(File file) {
+		this.file = file;
+	}
+
+	public FittedQIteration(File file, double discount, int numThreads) {
+		this(file);
+		this.discount = discount;
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Learns q-values from the log, see the class comment.
+	 *
+	 * @return the q-values learned
+	 */
+	public ArrayQTable fit() throws IOException {
+		final MappedByteBuffer[] segments = map();
+		final int numMoves = ArrayQTable.NUM_MOVES;
+		final int size = ArrayQTable.NUM_STATES * numMoves;
+		int threads = (int) Math.max(1, Math.min(numThreads, records));
+
+		// the counts of the samples of each q-state don't change between sweeps
+		final int[] counts = new int[size];
+		this.counts = counts;
+		logged = new int[ArrayQTable.NUM_STATES];
+		for (MappedByteBuffer segment : segments) {
+			for (int at = 0; at < segment.limit(); at += TransitionLog.RECORD_SIZE) {
+				int state = segment.getInt(at);
+				int cell = segment.getInt(at + 4);
+				counts[state * numMoves + cell]++;
+				logged[state] |= 1 << cell;
+			}
+		}
+
+		q = new ArrayQTable();
+		final ArrayQTable previous = new ArrayQTable();
+		final double[][] sums = new double[threads][size];
+		Thread[] workers = new Thread[threads];
+		double maxDelta = Double.POSITIVE_INFINITY;
+		for (sweeps = 0; sweeps < maxSweeps && maxDelta > tolerance; sweeps++) {
+			System.arraycopy(q.values, 0, previous.values, 0, size);
+			for (int t = 0; t < threads; t++) {
+				final double[] sum = sums[t];
+				final long from = records * t / threads;
+				final long to = records * (t + 1) / threads;
+				workers[t] = new Thread(new Runnable() {
+					public void run() {
+						Arrays.fill(sum, 0.0);
+						sweep(segments, previous, sum, from, to);
+					}
+				}, "fitted-q-worker-" + t);
+				workers[t].start();
+			}
+
+			for (int t = 0; t < threads; t++) {
+				try {
+					workers[t].join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for fitted Q-iteration threads", e);
+				}
+			}
+
+			maxDelta = 0.0;
+			for (int i = 0; i < size; i++) {
+				if (counts[i] == 0)
+					continue;
+
+				double sum = 0.0;
+				for (int t = 0; t < threads; t++)
+					sum += sums[t][i];
+				q.values[i] = sum / counts[i];
+				maxDelta = Math.max(maxDelta, Math.abs(q.values[i] - previous.values[i]));
+			}
+		}
+
+		System.out.println("Fitted Q-iteration: " + records + " transitions, " + sweeps + " sweeps, last change "
+				+ String.format("%.5f", maxDelta));
+		return q;
+	}
+
+	/**
+	 * Maps the log into memory, in segments of at most {@link #SEGMENT_RECORDS} records, and sets {@link #records}.
+	 */
+	MappedByteBuffer[] map() throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long length = channel.size();
+			if (length % TransitionLog.RECORD_SIZE != 0)
+				throw new IOException(file + " is not a transition log: its length isn't a multiple of "
+						+ TransitionLog.RECORD_SIZE);
+
+			records = length / TransitionLog.RECORD_SIZE;
+			MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((records + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS)];
+			for (int i = 0; i < segments.length; i++) {
+				long from = (long) i * SEGMENT_RECORDS * TransitionLog.RECORD_SIZE;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(length - from,
+						(long) SEGMENT_RECORDS * TransitionLog.RECORD_SIZE));
+			}
+
+			// the mappings stay valid once the channel is closed
+			return segments;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Adds the samples of the records {@code from} (inclusive) to {@code to} (exclusive) to {@code sum}, computed with
+	 * the q-values in {@code previous}. Only reads the log with absolute gets, so that threads can share the mappings.
+	 */
+	void sweep(MappedByteBuffer[] segments, ArrayQTable previous, double[] sum, long from, long to) {
+		while (from < to) {
+			MappedByteBuffer segment = segments[(int) (from / SEGMENT_RECORDS)];
+			int first = (int) (from % SEGMENT_RECORDS);
+			int last = (int) Math.min(SEGMENT_RECORDS, first + (to - from));
+			int end = last * TransitionLog.RECORD_SIZE;
+			for (int at = first * TransitionLog.RECORD_SIZE; at < end; at += TransitionLog.RECORD_SIZE) {
+				int state = segment.getInt(at);
+				int cell = segment.getInt(at + 4);
+				double sample = segment.getDouble(at + 8);
+				if (segment.getInt(at + 20) == 0) {
+					int next = segment.getInt(at + 16);
+					sample += discount * previous.maxQValue(next, moves(next));
+				}
+				sum[state * ArrayQTable.NUM_MOVES + cell] += sample;
+			}
+			from += last - first;
+		}
+	}
+
+	/**
+	 *
+	 * @return the moves to consider in {@code state}: the logged moves, or every legal move if none was logged
+	 */
+	int moves(int state) {
+		return logged[state] != 0 ? logged[state] : BitBoard.empty(state);
+	}
+
+	/**
+	 *
+	 * @return the number of times {@code m} was played in {@code g} in the log read by the last call to {@link #fit}
+	 */
+	public int getSamples(Game g, Move m) {
+		return counts[g.hashCode() * ArrayQTable.NUM_MOVES + 3 * m.x + m.y];
+	}
+
+	/**
+	 *
+	 * @return the greedy policy of the q-values learned by {@link #fit}, for every non-terminal game with X to move
+	 */
+	public Policy extractPolicy() {
+		Policy p = new Policy();
+		List<Game> games = Game.generateAllValidGames('X');
+		for (Game g : games) {
+			if (g.isTerminal())
+				continue;
+
+			int cell = q.bestCell(g.hashCode(), moves(g.hashCode()));
+			p.policy.put(g, new Move(g.whoseTurn, cell / 3, cell % 3));
+		}
+
+		return p;
+	}
+
+	/**
+	 * Fits q-values to the log and extracts their policy.
+	 */
+	public Policy train() throws IOException {
+		fit();
+		return extractPolicy();
+	}
+
+	public static void main(String a[]) throws IOException, IllegalMoveException {
+		// Logs the training of a Q-Learning agent, then learns from the log again and plays the result.
+		File file = File.createTempFile("transitions", ".log");
+		file.deleteOnExit();
+		TransitionLog log = new TransitionLog(file);
+		QLearningAgent learner = new QLearningAgent(new RandomAgent(), 0.1, 20000, 0.9, false);
+		learner.setTransitionLog(log);
+		learner.train();
+		log.close();
+
+		Agent agent = new Agent(new FittedQIteration(file).train());
+		HumanAgent d = new HumanAgent();
+		Game g = new Game(agent, d, d);
+		g.playOut();
+	}
+
+}
@@ -130,6 +130,29 @@ public class Game {
 
 	}
 
+	/**
+	 * Resets this game to the empty board with X to play, keeping the same agents.
+	 */
+	void restart() {
+		initBoard();
+		state = ONGOING;
+		whoseTurn = x;
+	}
+
+	/**
+	 * Executes a move at (i,j) by the agent whose turn it is, without creating a
+	 * {@link Move} and without any checks: the caller must already know that the
+	 * game is ongoing and the cell is empty. This will change the game.
+	 * 
+	 * @param i the x coordinate of the move
+	 * @param j the y coordinate of the move
+	 */
+	void play(int i, int j) {
+		board[i][j] = whoseTurn.getName();
+		whoseTurn = (whoseTurn == x) ? o : x;
+		evaluateGameState();
+	}
+
 	public boolean isLegal(Move m) {
 		if (m.x < 0 || m.x > 2 || m.y < 0 || m.y > 2)
 			return false;
@@ -496,7 +519,8 @@ public class Game {
 	 * /** This method will play out the game to the end using moves from the X and
 	 * O agents. Use this method to test your agents
 	 * 
-	 * Each step is pretty printed.
+	 * Each step is pretty printed. Once the game is over, both agents are told,
+	 * see {@link Agent#gameOver}.
 	 */
 	public void playOut() throws IllegalMoveException {
 
@@ -528,6 +552,10 @@ public class Game {
 		} else
 			System.out.println("It's a draw.");
 
+		x.gameOver(this);
+		if (o != x)
+			o.gameOver(this);
+
 	}
 
 	/**
@@ -555,27 +583,23 @@ public class Game {
 		// ' ' ->0
 		// 'X' ->1
 		// 'O' ->2
-		String s = "";
+		int h = 0;
 		for (int i = 0; i < 3; i++)
 			for (int j = 0; j < 3; j++) {
+				h *= 3;
 				switch (board[i][j]) {
 				case 'X':
-					s += "1";
+					h += 1;
 					break;
 				case 'O':
-					s += "2";
-					break;
-				case ' ':
-					s += "0";
+					h += 2;
 					break;
 				}
 
 			}
 		// also encode whose turn it is. Either 1 or 2 (x or o)
 
-		s += (whoseTurn == x) ? "1" : "2";
-
-		return Integer.parseInt(s, 3);
+		return h * 3 + ((whoseTurn == x) ? 1 : 2);
 
 	}
 
@@ -651,8 +675,8 @@ public class Game {
 		return this.state != ONGOING;
 	}
 
-	public static final String help = " -h this menu" + "\n -x the X agent: -x <pi, vi, random, agg, def, human>"
-			+ "\n -o the O agent: -o <random, agg, def, human>"
+	public static final String help = " -h this menu" + "\n -x the X agent: -x <pi, vi, ql, sp, random, agg, def, human>"
+			+ "\n -o the O agent: -o <sp, random, agg, def, human>"
 			+ "\n -s the agent that starts the game (x or o): -s <x or o>";
 
 	// public static void main(String args[]) throws IllegalMoveException
@@ -714,10 +738,10 @@ public class Game {
 				}
 				if (next.equals("vi")) {
 					System.out.println("x is vi agent.");
-					x = new ValueIterationAgent();
+					x = ValueIterationAgent.precomputed();
 				} else if (next.equals("pi")) {
 					System.out.println("X is pi agent.");
-					x = new PolicyIterationAgent();
+					x = PolicyIterationAgent.precomputed();
 				} else if (next.equals("random")) {
 					System.out.println("X is random agent.");
 					x = new RandomAgent();
@@ -733,7 +757,10 @@ public class Game {
 					x = new DefensiveAgent();
 				} else if (next.equals("ql")) {
 					System.out.println("X is q learning agent.");
-					x = new QLearningAgent();
+					x = QLearningAgent.precomputed();
+				} else if (next.equals("sp")) {
+					System.out.println("X is self-play agent.");
+					x = new SelfPlayAgent();
 				} else {
 					System.out.println("-x should be followed by the agent type: vi, pi, ql, random or human");
 					return;
@@ -769,7 +796,10 @@ public class Game {
 					o = new DefensiveAgent();
 				} else if (next.equals("ql")) {
 					System.out.println("O is q learning agent.");
-					o = new QLearningAgent();
+					o = QLearningAgent.precomputed();
+				} else if (next.equals("sp")) {
+					System.out.println("O is self-play agent.");
+					o = new SelfPlayAgent();
 				} else {
 					System.out.println("Error: -x should be followed by the agent type: vi, pi, random or human");
 					return;
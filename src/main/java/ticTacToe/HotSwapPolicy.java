@@ -0,0 +1,66 @@
+package ticTacToe;
+
+/**
+ * A policy that can be replaced while it is being played, used by agents training in the background (see
+ * {@link Agent#trainInBackground}). It plays a fallback policy until training publishes a better one with
+ * {@link #publish}, and each published policy replaces the previous one atomically: a move is always answered by one
+ * whole policy, never by a mix, and never waits for training. The map of this policy itself stays empty; use
+ * {@link #current} for the policy being played.
+ *
+ * @author ae187
+ *
+ */
+public class HotSwapPolicy extends Policy {
+
+	/**
+	 * the policy being played
+	 */
+	private volatile Policy current;
+
+	/**
+	 * the number of policies published so far
+	 */
+	private volatile int published;
+
+	/**
+	 *
+	 * @param fallback the policy to play until the first one is published
+	 */
+	public HotSwapPolicy(Policy fallback) {
+		this.current = fallback;
+	}
+
+	@Override
+	public Move getMove(Game g) {
+		return current.getMove(g);
+	}
+
+	/**
+	 * Plays {@code p} from the next move on. Policies still being solved must not be published: {@code p} must not be
+	 * modified afterwards.
+	 */
+	public void publish(Policy p) {
+		if (p == null)
+			return;
+
+		current = p;
+		published++;
+	}
+
+	/**
+	 *
+	 * @return the policy being played
+	 */
+	public Policy current() {
+		return current;
+	}
+
+	/**
+	 *
+	 * @return the number of policies published so far, 0 while the fallback is played
+	 */
+	public int getPublished() {
+		return published;
+	}
+
+}
@@ -0,0 +1,91 @@
+package ticTacToe;
+
+/**
+ * Measures how many training episodes the {@link QLearningAgent} training modes need before their policy stops losing,
+ * i.e. loses none of the games against each of the opponents used by the tests (random, aggressive and defensive).
+ * The agent is trained in blocks of episodes, continuing from its current q-values, and checked after every block.
+ *
+ * Run the {@link #main} method to compare one-step Q-Learning with Q(lambda) and Dyna-Q, with and without prioritised
+ * sweeping.
+ *
+ * @author ae187
+ *
+ */
+public class LearningBenchmark {
+
+	/**
+	 * A training mode, e.g. {@code QLearningAgent::train}
+	 */
+	public interface Trainer {
+		void train(QLearningAgent agent);
+	}
+
+	/**
+	 *
+	 * @param trainer     the training mode
+	 * @param block       the number of episodes between two checks
+	 * @param maxEpisodes give up after this many episodes
+	 * @param games       the number of games played against each opponent at every check
+	 * @return the number of episodes after which the agent first lost none of the games, or -1 if it still lost some
+	 *         after {@code maxEpisodes}.
+	 */
+	public static int episodesToZeroLosses(Trainer trainer, int block, int maxEpisodes, int games) {
+		QLearningAgent agent = new QLearningAgent(new RandomAgent(), 0.1, block, 0.9, false);
+		for (int episodes = block; episodes <= maxEpisodes; episodes += block) {
+			trainer.train(agent);
+			if (losses(agent, new RandomAgent(), games) == 0 && losses(agent, new AggressiveAgent(), games) == 0
+					&& losses(agent, new DefensiveAgent(false), games) == 0)
+				return episodes;
+		}
+
+		return -1;
+	}
+
+	/**
+	 *
+	 * @return the number of games out of {@code games} that {@code x} loses against {@code o}, with X starting.
+	 */
+	static int losses(Agent x, Agent o, int games) {
+		int[] results = new int[3];
+		SweepRunner.play(x, o, games, results);
+		return results[1];
+	}
+
+	public static void main(String a[]) {
+		int runs = 5;
+		int maxEpisodes = 50000;
+		int games = 50;
+
+		String[] names = { "one-step Q-Learning", "Q(lambda), lambda=0.8", "Dyna-Q, 10 planning steps",
+				"Dyna-Q, prioritised sweeping, 10 planning steps" };
+		// the model-based modes need far fewer episodes, so they are checked more often
+		int[] blocks = { 1000, 1000, 100, 100 };
+		Trainer[] trainers = { new Trainer() {
+			public void train(QLearningAgent agent) {
+				agent.train();
+			}
+		}, new Trainer() {
+			public void train(QLearningAgent agent) {
+				agent.trainLambda(0.8);
+			}
+		}, new Trainer() {
+			public void train(QLearningAgent agent) {
+				agent.trainDyna(10, false);
+			}
+		}, new Trainer() {
+			public void train(QLearningAgent agent) {
+				agent.trainDyna(10, true);
+			}
+		} };
+
+		for (int t = 0; t < trainers.length; t++) {
+			String result = names[t] + ": episodes to zero losses =";
+			for (int run = 0; run < runs; run++) {
+				int episodes = episodesToZeroLosses(trainers[t], blocks[t], maxEpisodes, games);
+				result += " " + (episodes < 0 ? ">" + maxEpisodes : "" + episodes);
+			}
+			System.out.println(result);
+		}
+	}
+
+}
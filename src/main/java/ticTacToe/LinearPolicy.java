@@ -0,0 +1,81 @@
+package ticTacToe;
+
+
+/**
+ * A greedy Policy over a linear q-function of the {@link BoardFeatures} of a move: the q-value of a move is the sum of
+ * the weights of its active features. Moves are computed when asked for rather than looked up in
+ * {@link Policy#policy}, so the policy takes the same memory whatever the number of states. The features are from the
+ * point of view of the player to move, so the policy can play either X or O.
+ * @author ae187
+ *
+ */
+public class LinearPolicy extends Policy {
+
+	/**
+	 * the weight of each feature, shared with the agent learning them
+	 */
+	final double[] weights;
+
+	/**
+	 * the active features of the move being evaluated, reused by every call
+	 */
+	final int[] active=new int[BoardFeatures.ACTIVE_FEATURES];
+
+	public LinearPolicy(double[] weights)
+	{
+		if (weights.length!=BoardFeatures.NUM_FEATURES)
+			throw new IllegalArgumentException("Expected "+BoardFeatures.NUM_FEATURES+" weights, got "+weights.length);
+
+		this.weights=weights;
+	}
+
+	@Override
+	public Move getMove(Game g) {
+		if (g.isTerminal())
+			return null;
+
+		char mover=g.whoseTurn.getName();
+		int cell=bestCell(BitBoard.bits(g, mover), BitBoard.bits(g, mover=='X'?'O':'X'));
+		return new Move(g.whoseTurn, cell/3, cell%3);
+	}
+
+	/**
+	 *
+	 * @param mover the cells of the player to move
+	 * @param other the cells of the other player
+	 * @param cell an empty cell
+	 * @return the q-value of the mover playing {@code cell}
+	 */
+	double getQValue(int mover, int other, int cell) {
+		BoardFeatures.extract(mover, other, cell, active);
+		return BoardFeatures.value(weights, active);
+	}
+
+	/**
+	 *
+	 * @return the empty cell with the highest q-value, or -1 if the board is full
+	 */
+	int bestCell(int mover, int other) {
+		int best=-1;
+		double max=Double.NEGATIVE_INFINITY;
+		for (int cells=~(mover|other)&BitBoard.FULL; cells!=0; cells&=cells-1) {
+			int cell=Integer.numberOfTrailingZeros(cells);
+			double q=getQValue(mover, other, cell);
+			if (q>max) {
+				max=q;
+				best=cell;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 *
+	 * @return the highest q-value over the empty cells, which there must be
+	 */
+	double maxQValue(int mover, int other) {
+		return getQValue(mover, other, bestCell(mover, other));
+	}
+
+}
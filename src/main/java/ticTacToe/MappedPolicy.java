@@ -0,0 +1,62 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A Policy answering {@link #getMove} straight from a policy file (see {@link PolicyFile}) mapped into memory, without
+ * loading it into a map: looking up a move is one read of a byte at the game's hash. The file's pages are shared by
+ * every process mapping it, so one file can serve the policy to many JVMs at no heap cost to any of them.
+ *
+ * @author ae187
+ *
+ */
+public class MappedPolicy extends Policy {
+
+	/**
+	 * the whole policy file, header included
+	 */
+	final ByteBuffer buffer;
+
+	/**
+	 * Maps the policy in {@code file}.
+	 *
+	 * @throws IOException if the file can't be read, or isn't a valid policy file
+	 */
+	public MappedPolicy(File file) throws IOException {
+		this(PolicyFile.map(file));
+	}
+
+	/**
+	 * A policy served from a policy file already in memory and checked, e.g. read from a resource by
+	 * {@link PrecomputedPolicies}.
+	 */
+	MappedPolicy(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 *
+	 * @return the move stored for {@code g}, or null if there is none, e.g. because {@code g} is terminal
+	 */
+	@Override
+	public Move getMove(Game g) {
+		int cell = cell(g.hashCode());
+		if (cell < 0)
+			return null;
+
+		return new Move(g.whoseTurn, cell / 3, cell % 3);
+	}
+
+	/**
+	 *
+	 * @param state the {@link Game#hashCode} of a game
+	 * @return the cell of the move stored for {@code state}, or -1 if there is none
+	 */
+	int cell(int state) {
+		byte move = buffer.get(PolicyFile.HEADER_SIZE + state);
+		return move == PolicyFile.NO_MOVE ? -1 : move;
+	}
+
+}
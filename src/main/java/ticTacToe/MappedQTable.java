@@ -0,0 +1,162 @@
+package ticTacToe;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * An {@link ArrayQTable} whose q-values live in a memory-mapped file instead of the Java heap, so that several
+ * processes on the same machine can map the same file and train one table together, see
+ * {@link QLearningAgent#trainProcesses}. The operating system's page cache holds the only copy of the q-values: they
+ * cost no heap and no garbage collection in any of the processes, and what one process writes is seen by the others
+ * without any copying.
+ *
+ * The file starts with a header of {@link #HEADER_SIZE} bytes: a magic number, a format version, the number of states
+ * and of moves per state, then one slot per worker process holding the number of episodes it has played and the time
+ * it took, in nanoseconds, for the coordinating process to read. The q-values follow, as doubles, in the same order as
+ * in {@link ArrayQTable}.
+ *
+ * Like the array of {@link ArrayQTable}, the q-values are read and written with plain, unsynchronised accesses
+ * (Hogwild-style): a write from one process may overwrite a concurrent write to the same q-state from another. Every
+ * double is written with one aligned store, so a reader never sees a torn value.
+ *
+ * The table has the fixed size of an {@link ArrayQTable}, {@link #NUM_STATES} by {@link #NUM_MOVES} doubles (about
+ * 4.2MB), which only fits the 3x3 game: a larger board would need a different state encoding and file format.
+ *
+ * @author ae187
+ *
+ */
+public class MappedQTable extends ArrayQTable implements Closeable {
+
+	static final int MAGIC = 0x51544142;
+
+	static final int VERSION = 1;
+
+	/**
+	 * The size of the header, one page so that the q-values are page aligned
+	 */
+	static final int HEADER_SIZE = 4096;
+
+	/**
+	 * Where the worker slots start in the header, and their size
+	 */
+	static final int SLOTS = 64;
+	static final int SLOT_SIZE = 16;
+
+	/**
+	 * The largest number of worker processes with a slot in the header
+	 */
+	public static final int MAX_WORKERS = (HEADER_SIZE - SLOTS) / SLOT_SIZE;
+
+	final File file;
+
+	final RandomAccessFile raf;
+
+	final MappedByteBuffer buffer;
+
+	/**
+	 * Maps the table in {@code file}, creating the file with all q-values set to 0 if it doesn't exist or is empty.
+	 *
+	 * @throws IOException if the file exists but isn't a q-table of this size
+	 */
+	public MappedQTable(File file) throws IOException {
+		super(null);
+		this.file = file;
+		long size = HEADER_SIZE + 8L * NUM_STATES * NUM_MOVES;
+		raf = new RandomAccessFile(file, "rw");
+		try {
+			boolean created = raf.length() == 0;
+			if (!created && raf.length() != size)
+				throw new IOException(file + " is not a q-table: it should be " + size + " bytes long");
+
+			raf.setLength(size);
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			if (created) {
+				buffer.putInt(0, MAGIC);
+				buffer.putInt(4, VERSION);
+				buffer.putInt(8, NUM_STATES);
+				buffer.putInt(12, NUM_MOVES);
+			} else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != NUM_STATES
+					|| buffer.getInt(12) != NUM_MOVES)
+				throw new IOException(file + " is not a version " + VERSION + " q-table");
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public double getQValue(int state, int cell) {
+		return buffer.getDouble(HEADER_SIZE + 8 * (state * NUM_MOVES + cell));
+	}
+
+	@Override
+	public void setQValue(int state, int cell, double v) {
+		buffer.putDouble(HEADER_SIZE + 8 * (state * NUM_MOVES + cell), v);
+	}
+
+	@Override
+	public void copyFrom(QTable q) {
+		for (Game g : q.keySet())
+			for (Move m : q.get(g).keySet())
+				setQValue(g.hashCode(), 3 * m.x + m.y, q.getQValue(g, m));
+	}
+
+	/**
+	 * Publishes the progress of worker {@code worker}.
+	 *
+	 * @param episodes the number of episodes it has played
+	 * @param nanos    the time it took
+	 */
+	public void setProgress(int worker, long episodes, long nanos) {
+		buffer.putLong(SLOTS + SLOT_SIZE * worker + 8, nanos);
+		buffer.putLong(SLOTS + SLOT_SIZE * worker, episodes);
+	}
+
+	public long getEpisodes(int worker) {
+		return buffer.getLong(SLOTS + SLOT_SIZE * worker);
+	}
+
+	public long getNanos(int worker) {
+		return buffer.getLong(SLOTS + SLOT_SIZE * worker + 8);
+	}
+
+	/**
+	 * Clears the progress of the first {@code workers} workers, before starting new ones.
+	 */
+	public void resetProgress(int workers) {
+		for (int w = 0; w < workers; w++)
+			setProgress(w, 0, 0);
+	}
+
+	/**
+	 * Writes the table to disk and copies the file to {@code to}, replacing it atomically if the file system allows. If
+	 * workers are still training, the copy may mix q-values from before and after some of their updates.
+	 */
+	public void snapshot(File to) throws IOException {
+		buffer.force();
+		File tmp = new File(to.getPath() + ".tmp");
+		Files.copy(file.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		try {
+			Files.move(tmp.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Writes the table to disk and closes the file. The mapping itself is only released once the table is garbage
+	 * collected.
+	 */
+	public void close() throws IOException {
+		buffer.force();
+		raf.close();
+	}
+
+}
@@ -0,0 +1,124 @@
+package ticTacToe;
+
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Dense matrix products over flat, row-major {@code float[]} arrays, for {@link QNetwork}. The loops are blocked so
+ * that the rows of the second operand being used stay in cache, and each product computes a range of rows of its
+ * result, so that {@link #forRows} can split the rows between threads: no two ranges write the same element.
+ *
+ * @author ae187
+ *
+ */
+final class Matrices {
+
+	/**
+	 * the block size, in elements, of the blocked loops
+	 */
+	static final int BLOCK = 64;
+
+	/**
+	 * A task computing rows {@code [from, to)} of a result.
+	 */
+	interface RowTask {
+		void run(int from, int to);
+	}
+
+	private Matrices() {
+	}
+
+	/**
+	 * Runs {@code task} over rows {@code [0, rows)}, split into chunks run in parallel on the common fork/join pool if
+	 * {@code parallel} is true, or in one go on this thread otherwise.
+	 */
+	static void forRows(boolean parallel, int rows, final RowTask task) {
+		if (!parallel || rows < 2 * BLOCK) {
+			task.run(0, rows);
+			return;
+		}
+
+		final int chunk = BLOCK;
+		final int total = rows;
+		IntStream.range(0, (rows + chunk - 1) / chunk).parallel().forEach(new IntConsumer() {
+			@Override
+			public void accept(int c) {
+				task.run(c * chunk, Math.min(total, (c + 1) * chunk));
+			}
+		});
+	}
+
+	/**
+	 * Rows {@code [from, to)} of {@code c = a.b}, where {@code a} is m by k, {@code b} is k by n and {@code c} is m by
+	 * n.
+	 */
+	static void multiply(float[] a, float[] b, float[] c, int k, int n, int from, int to) {
+		for (int i = from; i < to; i++)
+			for (int j = 0; j < n; j++)
+				c[i * n + j] = 0f;
+
+		for (int pp = 0; pp < k; pp += BLOCK) {
+			int pEnd = Math.min(k, pp + BLOCK);
+			for (int jj = 0; jj < n; jj += BLOCK) {
+				int jEnd = Math.min(n, jj + BLOCK);
+				for (int i = from; i < to; i++) {
+					int ci = i * n;
+					for (int p = pp; p < pEnd; p++) {
+						float aip = a[i * k + p];
+						if (aip == 0f)
+							continue;
+						int bp = p * n;
+						for (int j = jj; j < jEnd; j++)
+							c[ci + j] += aip * b[bp + j];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rows {@code [from, to)} of {@code c = a.transpose(b)}, where {@code a} is m by n, {@code b} is k by n and
+	 * {@code c} is m by k.
+	 */
+	static void multiplyTransposedB(float[] a, float[] b, float[] c, int n, int k, int from, int to) {
+		for (int pp = 0; pp < k; pp += BLOCK) {
+			int pEnd = Math.min(k, pp + BLOCK);
+			for (int i = from; i < to; i++) {
+				int ai = i * n;
+				for (int p = pp; p < pEnd; p++) {
+					int bp = p * n;
+					float sum = 0f;
+					for (int j = 0; j < n; j++)
+						sum += a[ai + j] * b[bp + j];
+					c[i * k + p] = sum;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rows {@code [from, to)} of {@code c = transpose(a).b}, where {@code a} is m by k, {@code b} is m by n and
+	 * {@code c} is k by n.
+	 */
+	static void multiplyTransposedA(float[] a, float[] b, float[] c, int m, int k, int n, int from, int to) {
+		for (int p = from; p < to; p++)
+			for (int j = 0; j < n; j++)
+				c[p * n + j] = 0f;
+
+		for (int ii = 0; ii < m; ii += BLOCK) {
+			int iEnd = Math.min(m, ii + BLOCK);
+			for (int p = from; p < to; p++) {
+				int cp = p * n;
+				for (int i = ii; i < iEnd; i++) {
+					float aip = a[i * k + p];
+					if (aip == 0f)
+						continue;
+					int bi = i * n;
+					for (int j = 0; j < n; j++)
+						c[cp + j] += aip * b[bi + j];
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,172 @@
+package ticTacToe;
+
+import java.util.Arrays;
+
+/**
+ * A value iteration agent for the game as a zero-sum Markov game, rather than the MDP of {@link TTTMDP}, which treats
+ * the opponent as a uniformly random part of the environment, so that {@link ValueIterationAgent}'s policies are only
+ * optimal against a random opponent. Here O is an adversary choosing its replies to minimise X's return: the value of
+ * a move of X is the worst value over O's replies, and X picks the move with the best worst case.
+ *
+ * The adversary can be blended with the random opponent of {@link TTTMDP}: with an {@link #adversarial} weight of w,
+ * the value of a move is w times its worst case plus (1-w) times its expectation under a random reply. A weight of 1
+ * is plain minimax, and a weight of 0 plans against a random opponent, as {@link ValueIterationAgent} does.
+ *
+ * The values are computed by value iteration on the arrays of {@link CompiledTTTMDP#shared()}, whose structure is
+ * shared with the other agents rather than compiled again. A single pass yields the moves of both sides: X's best
+ * moves, and O's replies minimising X's values, in one policy that can play either side, see {@link #opponent()}.
+ *
+ * @author ae187
+ *
+ */
+public class MinimaxValueIterationAgent extends Agent {
+
+	/**
+	 * The MDP whose states, moves and transitions are used
+	 */
+	CompiledTTTMDP mdp;
+
+	/**
+	 * The weight of the adversarial opponent, between 0 (a random opponent) and 1 (a worst-case opponent)
+	 */
+	double adversarial = 1.0;
+
+	/**
+	 * Value iteration stops when no value changes by more than this
+	 */
+	double tolerance = 1e-9;
+
+	/**
+	 * The values of the states of {@link #mdp}, to X
+	 */
+	double[] values;
+
+	/**
+	 * The number of sweeps the last training took
+	 */
+	int sweeps;
+
+	/**
+	 * A worst-case agent, with the default rewards and discount of {@link TTTMDP}
+	 */
+	public MinimaxValueIterationAgent() {
+		this(1.0);
+	}
+
+	/**
+	 * @param adversarial the weight of the adversarial opponent, see {@link MinimaxValueIterationAgent}
+	 */
+	public MinimaxValueIterationAgent(double adversarial) {
+		this(0.9, 10.0, -50.0, -1.0, 0.0, adversarial);
+	}
+
+	public MinimaxValueIterationAgent(double discountFactor, double winReward, double loseReward, double livingReward,
+			double drawReward, double adversarial) {
+		if (adversarial < 0 || adversarial > 1)
+			throw new IllegalArgumentException("The adversarial weight must be between 0 and 1, not " + adversarial);
+
+		this.mdp = CompiledTTTMDP.shared().with(discountFactor, winReward, loseReward, livingReward, drawReward);
+		this.adversarial = adversarial;
+		train();
+	}
+
+	/**
+	 *
+	 * @return the value of move {@code m} against the blend of the adversarial and random opponents
+	 */
+	double qValue(int m) {
+		double q = adversarial * mdp.worstCase(values, m);
+		if (adversarial < 1)
+			q += (1 - adversarial) * mdp.qValue(values, m);
+		return q;
+	}
+
+	/**
+	 * Performs one step of value iteration, updating {@link #values} in place.
+	 *
+	 * @return the largest change of a value
+	 */
+	double sweep() {
+		double residual = 0;
+		for (int s = 0; s < mdp.size(); s++) {
+			if (mdp.moveStart[s] == mdp.moveStart[s + 1])
+				continue;
+
+			double v = Double.NEGATIVE_INFINITY;
+			for (int m = mdp.moveStart[s]; m < mdp.moveStart[s + 1]; m++)
+				v = Math.max(v, qValue(m));
+
+			residual = Math.max(residual, Math.abs(v - values[s]));
+			values[s] = v;
+		}
+		return residual;
+	}
+
+	/**
+	 * Runs value iteration from scratch until the values converge, then extracts the moves of both sides: in every
+	 * state where X is to move, the move with the best value, and in every game where O is to reply, the reply
+	 * minimising X's value.
+	 */
+	public void train() {
+		values = new double[mdp.size()];
+		sweeps = 0;
+		do {
+			sweeps++;
+		} while (sweep() > tolerance);
+
+		setPolicy(extractPolicy());
+	}
+
+	/**
+	 *
+	 * @return the moves of both sides under the current values, ties going to the first move
+	 */
+	MappedPolicy extractPolicy() {
+		byte[] cells = new byte[PolicyFile.NUM_STATES];
+		Arrays.fill(cells, PolicyFile.NO_MOVE);
+		for (int s = 0; s < mdp.size(); s++) {
+			double best = Double.NEGATIVE_INFINITY;
+			for (int m = mdp.moveStart[s]; m < mdp.moveStart[s + 1]; m++) {
+				double q = qValue(m);
+				if (q > best) {
+					best = q;
+					cells[mdp.states[s].hashCode()] = (byte) mdp.moveCell[m];
+				}
+			}
+		}
+
+		// the replies only depend on the game after X's move, so the first move leading to it will do
+		for (int m = 0; m < mdp.moveCell.length; m++) {
+			if (cells[mdp.after[m]] != PolicyFile.NO_MOVE)
+				continue;
+
+			double worst = Double.POSITIVE_INFINITY;
+			for (int t = mdp.transitionStart[m]; t < mdp.transitionStart[m + 1]; t++) {
+				double v = mdp.reward[mdp.kind[t]] + mdp.discount * values[mdp.next[t]];
+				if (mdp.reply[t] >= 0 && v < worst) {
+					worst = v;
+					cells[mdp.after[m]] = mdp.reply[t];
+				}
+			}
+		}
+
+		return new MappedPolicy(PolicyFile.encode(cells));
+	}
+
+	/**
+	 *
+	 * @return an agent playing O with this agent's policy, i.e. replying to minimise X's values
+	 */
+	public Agent opponent() {
+		return new Agent(policy);
+	}
+
+	/**
+	 *
+	 * @return the number of sweeps the last training took
+	 */
+	public int getSweeps() {
+		return sweeps;
+	}
+
+}
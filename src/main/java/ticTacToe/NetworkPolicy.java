@@ -0,0 +1,82 @@
+package ticTacToe;
+
+
+/**
+ * A greedy Policy over the q-values of a {@link QNetwork}: the move played is the legal move with the highest q-value.
+ * Like {@link LinearPolicy}, moves are computed when asked for, and the network sees the board from the point of view
+ * of the player to move. The network only ever sees canonical boards (see {@link Symmetries}): a board is turned into
+ * its canonical form before being fed to the network, and the q-values are mapped back to the original cells.
+ * @author ae187
+ *
+ */
+public class NetworkPolicy extends Policy {
+
+	final QNetwork network;
+
+	/**
+	 * the network's input for the game being played, reused by every call
+	 */
+	final float[] input=new float[QNetwork.NUM_INPUTS];
+
+	public NetworkPolicy(QNetwork network)
+	{
+		this.network=network;
+	}
+
+	@Override
+	public Move getMove(Game g) {
+		if (g.isTerminal())
+			return null;
+
+		char mover=g.whoseTurn.getName();
+		int cell=bestCell(BitBoard.bits(g, mover), BitBoard.bits(g, mover=='X'?'O':'X'));
+		return new Move(g.whoseTurn, cell/3, cell%3);
+	}
+
+	/**
+	 *
+	 * @param mover the cells of the player to move
+	 * @param other the cells of the other player
+	 * @return the empty cell with the highest q-value, or -1 if the board is full
+	 */
+	int bestCell(int mover, int other) {
+		int t=encode(mover, other, input, 0);
+		return bestCell(network.forward(input, 1), 0, ~(mover|other)&BitBoard.FULL, t);
+	}
+
+	/**
+	 * Writes the network's inputs for the canonical form of a board into {@code row}, from {@code offset}.
+	 *
+	 * @param mover the cells of the player to move
+	 * @param other the cells of the other player
+	 * @return the symmetry mapping the board to its canonical form
+	 */
+	static int encode(int mover, int other, float[] row, int offset) {
+		int t=Symmetries.canonical(mover, other);
+		QNetwork.encode(Symmetries.apply(t, mover), Symmetries.apply(t, other), row, offset);
+		return t;
+	}
+
+	/**
+	 *
+	 * @param q q-values for canonical boards, {@link QNetwork#NUM_OUTPUTS} per row
+	 * @param row the row to look at
+	 * @param cells the legal cells of the original board
+	 * @param t the symmetry mapping the original board to the canonical one
+	 * @return the cell in {@code cells} with the highest q-value in the row, or -1 if there is none
+	 */
+	static int bestCell(float[] q, int row, int cells, int t) {
+		int best=-1;
+		float max=Float.NEGATIVE_INFINITY;
+		for (int cell=0; cell<QNetwork.NUM_OUTPUTS; cell++) {
+			float v=q[row*QNetwork.NUM_OUTPUTS+Symmetries.CELL[t][cell]];
+			if ((cells&(1<<cell))!=0 && v>max) {
+				max=v;
+				best=cell;
+			}
+		}
+
+		return best;
+	}
+
+}
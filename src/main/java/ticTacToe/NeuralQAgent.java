@@ -0,0 +1,319 @@
+package ticTacToe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * An agent whose q-values come from a {@link QNetwork}, a small neural network, instead of a table. The network can be
+ * trained in two ways:
+ * <ul>
+ * <li>by fitting the q-values of a trained {@link ValueIterationAgent}, computed from its values with one step of
+ * expectimax over its {@link TTTMDP} ({@link #fit});</li>
+ * <li>or by Q-Learning from its own games against the opponent in a {@link TTTEnvironment} ({@link #train}): the moves
+ * played are stored in a {@link ReplayBuffer}, and every few moves the network takes a gradient step on a minibatch of
+ * stored moves, towards targets computed with a copy of the network that is only refreshed now and then.</li>
+ * </ul>
+ * Either way the agent plays through a {@link NetworkPolicy}, and its memory is set by the size of the network, not
+ * the number of states. The network only learns about canonical boards (see {@link Symmetries}), which leaves it about
+ * 8 times fewer boards to fit.
+ *
+ * @author ae187
+ *
+ */
+public class NeuralQAgent extends Agent {
+
+	/**
+	 * The network
+	 */
+	QNetwork network;
+
+	/**
+	 * The number of episodes to train for, in {@link #train}
+	 */
+	int numEpisodes = 30000;
+
+	/**
+	 * The number of passes over the states, in {@link #fit}
+	 */
+	int epochs = 300;
+
+	/**
+	 * The learning rate {@link #fit} starts from, decaying linearly to 0. The teacher's targets don't move, so this can
+	 * be higher than the network's own rate, which is used by {@link #train}.
+	 */
+	float fitRate = 0.01f;
+
+	/**
+	 * The number of rows in a minibatch
+	 */
+	int batchSize = 64;
+
+	/**
+	 * The discount factor (gamma)
+	 */
+	double discount = 0.9;
+
+	/**
+	 * The epsilon in the epsilon greedy policy used during training.
+	 */
+	double epsilon = 0.1;
+
+	/**
+	 * The number of moves between two gradient steps in {@link #train}
+	 */
+	int updateInterval = 8;
+
+	/**
+	 * The number of gradient steps between two refreshes of the network used for the targets in {@link #train}
+	 */
+	int targetRefresh = 250;
+
+	/**
+	 * This is the Reinforcement Learning environment that this agent will interact with when it is training.
+	 */
+	TTTEnvironment env = new TTTEnvironment();
+
+	/**
+	 * This agent's random number stream
+	 */
+	SplittableRandom random = RandomStreams.newStream();
+
+	/**
+	 * Fits a network with two hidden layers of {@code hidden} units to the q-values of {@code teacher}. One hidden layer
+	 * of 128 units has about as many weights as there are q-values to fit, and doesn't fit them closely enough to never
+	 * lose; two of 128 units, for 300 epochs, do.
+	 *
+	 * @param teacher a trained value iteration agent
+	 * @param hidden  the number of units of each hidden layer
+	 * @param epochs  the number of passes over the states
+	 */
+	public NeuralQAgent(ValueIterationAgent teacher, int hidden, int epochs) {
+		this(teacher, new int[] { hidden, hidden }, epochs, 64, false);
+	}
+
+	/**
+	 * Fits a network with hidden layers of {@code hidden} units to the q-values of {@code teacher}, in minibatches of
+	 * {@code batchSize} boards. With {@code parallel} the rows of each minibatch are split across threads, which only
+	 * pays off for minibatches of a few hundred boards or more: smaller ones are always run on one thread.
+	 *
+	 * @param teacher   a trained value iteration agent
+	 * @param hidden    the number of units of each hidden layer
+	 * @param epochs    the number of passes over the states
+	 * @param batchSize the number of boards in a minibatch
+	 * @param parallel  whether to split minibatches across threads
+	 */
+	public NeuralQAgent(ValueIterationAgent teacher, int[] hidden, int epochs, int batchSize, boolean parallel) {
+		super();
+		this.epochs = epochs;
+		this.batchSize = batchSize;
+		int[] sizes = new int[hidden.length + 2];
+		sizes[0] = QNetwork.NUM_INPUTS;
+		System.arraycopy(hidden, 0, sizes, 1, hidden.length);
+		sizes[sizes.length - 1] = QNetwork.NUM_OUTPUTS;
+		this.network = new QNetwork(sizes, parallel, random.split());
+		this.policy = new NetworkPolicy(network);
+		fit(teacher);
+	}
+
+	/**
+	 * Trains a network with one hidden layer of {@code hidden} units by playing against {@code opponent}.
+	 *
+	 * @param opponent    the opponent agent that this agent will interact with in the environment
+	 * @param hidden      the number of hidden units
+	 * @param numEpisodes the number of episodes (games) to train for
+	 */
+	public NeuralQAgent(Agent opponent, int hidden, int numEpisodes) {
+		super();
+		this.env = new TTTEnvironment(opponent);
+		this.numEpisodes = numEpisodes;
+		this.network = new QNetwork(hidden, random.split());
+		this.policy = new NetworkPolicy(network);
+		train();
+	}
+
+	/**
+	 * Trains a network with 128 hidden units against a {@link RandomAgent}, with the default parameters.
+	 */
+	public NeuralQAgent() {
+		this(new RandomAgent(), 128, 30000);
+	}
+
+	/**
+	 * Trains the network for {@code this.epochs} passes over every canonical non-terminal game with X to move, in
+	 * shuffled minibatches, with the q-values of {@code teacher} as targets for the legal moves. The targets for a
+	 * canonical board are the teacher's q-values for the first of its symmetric boards found.
+	 *
+	 * The fit is close, but not exact: the teacher's q-values for the moves of some states are within a tenth of each
+	 * other, and there the network may well play another move than the teacher. Those moves are all but as good
+	 * against the random opponent the teacher was solved for, but can lose against others.
+	 *
+	 * @throws IllegalArgumentException if the teacher has no values, e.g. an agent loaded with
+	 *                                  {@link ValueIterationAgent#precomputed()}, which has only a policy
+	 */
+	public void fit(ValueIterationAgent teacher) {
+		if (teacher.valueFunction.isEmpty())
+			throw new IllegalArgumentException("The teacher has no values to fit, only a policy");
+
+		List<Game> games = new ArrayList<Game>();
+		boolean[] seen = new boolean[ArrayQTable.NUM_STATES];
+		for (Game g : Game.generateAllValidGames('X')) {
+			int x = BitBoard.bits(g, 'X');
+			int o = BitBoard.bits(g, 'O');
+			int t = Symmetries.canonical(x, o);
+			int canonical = BitBoard.code(Symmetries.apply(t, x), Symmetries.apply(t, o), true);
+			if (!g.isTerminal() && !seen[canonical]) {
+				seen[canonical] = true;
+				games.add(g);
+			}
+		}
+
+		int n = games.size();
+		float[] inputs = new float[n * QNetwork.NUM_INPUTS];
+		float[] targets = new float[n * QNetwork.NUM_OUTPUTS];
+		float[] mask = new float[n * QNetwork.NUM_OUTPUTS];
+		for (int i = 0; i < n; i++) {
+			Game g = games.get(i);
+			int t = NetworkPolicy.encode(BitBoard.bits(g, 'X'), BitBoard.bits(g, 'O'), inputs, i * QNetwork.NUM_INPUTS);
+			for (Move m : g.getPossibleMoves()) {
+				double q = 0.0;
+				for (TransitionProb tp : teacher.mdp.generateTransitions(g, m))
+					q += tp.prob * (tp.outcome.localReward + teacher.discount * teacher.valueFunction.get(tp.outcome.sPrime));
+
+				int out = i * QNetwork.NUM_OUTPUTS + Symmetries.CELL[t][3 * m.x + m.y];
+				targets[out] = (float) q;
+				mask[out] = 1f;
+			}
+		}
+
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++)
+			order[i] = i;
+
+		float[] batchInputs = new float[batchSize * QNetwork.NUM_INPUTS];
+		float[] batchTargets = new float[batchSize * QNetwork.NUM_OUTPUTS];
+		float[] batchMask = new float[batchSize * QNetwork.NUM_OUTPUTS];
+		// the learning rate decays linearly to 0, to settle on a good fit
+		float learningRate = network.learningRate;
+		for (int epoch = 0; epoch < epochs; epoch++) {
+			network.learningRate = fitRate * (epochs - epoch) / epochs;
+			for (int i = n - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int t = order[i];
+				order[i] = order[j];
+				order[j] = t;
+			}
+
+			for (int from = 0; from < n; from += batchSize) {
+				int rows = Math.min(batchSize, n - from);
+				for (int r = 0; r < rows; r++) {
+					int i = order[from + r];
+					System.arraycopy(inputs, i * QNetwork.NUM_INPUTS, batchInputs, r * QNetwork.NUM_INPUTS,
+							QNetwork.NUM_INPUTS);
+					System.arraycopy(targets, i * QNetwork.NUM_OUTPUTS, batchTargets, r * QNetwork.NUM_OUTPUTS,
+							QNetwork.NUM_OUTPUTS);
+					System.arraycopy(mask, i * QNetwork.NUM_OUTPUTS, batchMask, r * QNetwork.NUM_OUTPUTS,
+							QNetwork.NUM_OUTPUTS);
+				}
+				network.train(batchInputs, batchTargets, batchMask, rows);
+			}
+		}
+		network.learningRate = learningRate;
+	}
+
+	/**
+	 * Plays {@code this.numEpisodes} epsilon-greedy episodes in the environment, storing every move in a
+	 * {@link ReplayBuffer}. Every {@link #updateInterval} moves the network takes one gradient step on a uniformly
+	 * sampled minibatch of stored moves, towards the reward plus the discounted highest q-value of the next state
+	 * according to the target network, a copy of the network refreshed every {@link #targetRefresh} steps so that the
+	 * targets don't move with every step.
+	 */
+	public void train() {
+		ReplayBuffer replay = new ReplayBuffer(50000, false);
+		QNetwork target = new QNetwork(network.sizes, network.parallel, random.split());
+		target.copyFrom(network);
+		NetworkPolicy greedy = (NetworkPolicy) policy;
+
+		int[] batch = new int[batchSize];
+		float[] inputs = new float[batchSize * QNetwork.NUM_INPUTS];
+		float[] nextInputs = new float[batchSize * QNetwork.NUM_INPUTS];
+		float[] targets = new float[batchSize * QNetwork.NUM_OUTPUTS];
+		float[] mask = new float[batchSize * QNetwork.NUM_OUTPUTS];
+		int[] symmetry = new int[batchSize];
+		int[] nextSymmetry = new int[batchSize];
+		StepResult step = new StepResult();
+		int played = 0;
+		int steps = 0;
+
+		// the learning rate decays linearly to 0, to settle on a good fit
+		float learningRate = network.learningRate;
+		for (int episode = 0; episode < numEpisodes; episode++) {
+			network.learningRate = learningRate * (numEpisodes - episode) / numEpisodes;
+			env.reset();
+			Game game = env.getCurrentGameState();
+
+			while (!env.isTerminal()) {
+				int state = game.hashCode();
+				int x = BitBoard.bits(game, 'X');
+				int o = BitBoard.bits(game, 'O');
+				int moves = ~(x | o) & BitBoard.FULL;
+				int cell = random.nextDouble() < epsilon
+						? BitBoard.nthCell(moves, random.nextInt(Integer.bitCount(moves)))
+						: greedy.bestCell(x, o);
+
+				try {
+					env.step(cell, step);
+				} catch (IllegalMoveException e) {
+					System.out.print("Illegal Move!!!!!!!!");
+					break;
+				}
+				replay.add(state, cell, step.reward, step.nextState, step.done);
+
+				if (replay.size() < batchSize || ++played % updateInterval != 0)
+					continue;
+
+				replay.sampleUniform(random, batch);
+				for (int r = 0; r < batchSize; r++) {
+					int i = batch[r];
+					int s = replay.getState(i);
+					int nextState = replay.getNextState(i);
+					symmetry[r] = NetworkPolicy.encode(BitBoard.bits(s, 'X'), BitBoard.bits(s, 'O'), inputs,
+							r * QNetwork.NUM_INPUTS);
+					nextSymmetry[r] = NetworkPolicy.encode(BitBoard.bits(nextState, 'X'), BitBoard.bits(nextState, 'O'),
+							nextInputs, r * QNetwork.NUM_INPUTS);
+				}
+
+				float[] next = target.forward(nextInputs, batchSize);
+				Arrays.fill(mask, 0f);
+				for (int r = 0; r < batchSize; r++) {
+					int i = batch[r];
+					double sample = replay.getReward(i);
+					if (!replay.isDone(i)) {
+						int best = NetworkPolicy.bestCell(next, r, BitBoard.empty(replay.getNextState(i)), nextSymmetry[r]);
+						sample += discount * next[r * QNetwork.NUM_OUTPUTS + Symmetries.CELL[nextSymmetry[r]][best]];
+					}
+
+					int out = r * QNetwork.NUM_OUTPUTS + Symmetries.CELL[symmetry[r]][replay.getAction(i)];
+					targets[out] = (float) sample;
+					mask[out] = 1f;
+				}
+				network.train(inputs, targets, mask, batchSize);
+
+				if (++steps % targetRefresh == 0)
+					target.copyFrom(network);
+			}
+		}
+		network.learningRate = learningRate;
+	}
+
+	public static void main(String a[]) throws IllegalMoveException {
+		// Test method to play the agent against a human agent.
+		NeuralQAgent agent = new NeuralQAgent();
+		HumanAgent d = new HumanAgent();
+		Game g = new Game(agent, d, d);
+		g.playOut();
+
+	}
+
+}
@@ -0,0 +1,235 @@
+package ticTacToe;
+
+import java.util.Arrays;
+
+/**
+ * An agent that learns how its opponent actually plays, rather than assuming a uniformly random opponent as
+ * {@link TTTMDP} does, and plans against that. It counts the replies of O in every position it has seen, in primitive
+ * count tables indexed by the game's hash, and estimates the probability of each reply as its share of the counts,
+ * smoothed by a pseudo-count of {@link #prior} for every legal reply: positions never seen are assumed uniformly random,
+ * and no reply ever gets probability 0.
+ *
+ * The agent plans on a {@link CompiledTTTMDP} with its own transition probabilities. It solves it from scratch once,
+ * for a uniformly random opponent, on construction. After every game it re-plans incrementally (see
+ * {@link #gameOver}): only the probabilities of the positions where O replied during the game are updated, the states
+ * in which X's moves lead to those positions are backed up again, and any value that changes is propagated backwards
+ * through the MDP's predecessor index, to the states that can lead to it, until no value changes by more than
+ * {@link #tolerance}. Usually only a handful of the thousands of states are backed up.
+ *
+ * The agent only plays X, and isn't thread-safe.
+ *
+ * @author ae187
+ *
+ */
+public class OpponentModellingAgent extends Agent {
+
+	/**
+	 * The MDP planned on, with the current estimates of the opponent's replies as transition probabilities
+	 */
+	final CompiledTTTMDP mdp;
+
+	/**
+	 * The number of times O replied in each cell of each position, at {@code 9*hash+cell}, and in each position
+	 */
+	final int[] counts = new int[ArrayQTable.NUM_STATES * ArrayQTable.NUM_MOVES];
+	final int[] totals = new int[ArrayQTable.NUM_STATES];
+
+	/**
+	 * The pseudo-count of every legal reply
+	 */
+	double prior = 1.0;
+
+	/**
+	 * Changes of values smaller than this aren't propagated
+	 */
+	double tolerance = 1e-9;
+
+	/**
+	 * The value of each state of {@link #mdp}, and the move played in it, -1 in terminal states
+	 */
+	final double[] values;
+	final int[] moves;
+
+	/**
+	 * The game after this agent's last move, while waiting to see O's reply, or null
+	 */
+	Game lastPlayed;
+
+	/**
+	 * The hashes of the positions where O replied since the last re-planning
+	 */
+	int[] replied = new int[ArrayQTable.NUM_MOVES];
+	int numReplied = 0;
+
+	/**
+	 * The queue of states to back up, and whether each state is queued
+	 */
+	final int[] queue;
+	final boolean[] queued;
+
+	/**
+	 * The number of backups performed by the last re-planning
+	 */
+	int backups;
+
+	/**
+	 * Plays against an opponent model with the default rewards and discount of {@link TTTMDP}
+	 */
+	public OpponentModellingAgent() {
+		this(0.9, 10.0, -50.0, -1.0, 0.0);
+	}
+
+	public OpponentModellingAgent(double discountFactor, double winReward, double loseReward, double livingReward,
+			double drawReward) {
+		mdp = CompiledTTTMDP.shared().with(discountFactor, winReward, loseReward, livingReward, drawReward)
+				.withProbabilities();
+		values = new double[mdp.size()];
+		moves = new int[mdp.size()];
+		queue = new int[mdp.size()];
+		queued = new boolean[mdp.size()];
+		policy = new Policy() {
+			@Override
+			public Move getMove(Game g) {
+				int s = mdp.index[g.hashCode()];
+				if (s < 0 || moves[s] < 0)
+					return null;
+
+				int cell = mdp.moveCell[moves[s]];
+				return new Move(g.whoseTurn, cell / 3, cell % 3);
+			}
+		};
+		solve();
+	}
+
+	/**
+	 * Plans every state from scratch, for the current opponent model.
+	 */
+	public void solve() {
+		while (mdp.sweep(values) > tolerance) {
+		}
+		System.arraycopy(mdp.greedy(values), 0, moves, 0, moves.length);
+	}
+
+	/**
+	 * Records O's reply to this agent's last move, if there is one, then plays the move of the current plan.
+	 */
+	@Override
+	public Move getMove(Game g) {
+		observe(g);
+		Move m = policy.getMove(g);
+		try {
+			lastPlayed = m != null ? g.simulateMove(m) : null;
+		} catch (IllegalMoveException e) {
+			throw new IllegalStateException("Planned an illegal move " + m, e);
+		}
+		return m;
+	}
+
+	/**
+	 * Records O's last reply, if it ended the game, and re-plans incrementally for the replies seen during the game.
+	 */
+	@Override
+	public void gameOver(Game g) {
+		observe(g);
+		lastPlayed = null;
+		replan();
+	}
+
+	/**
+	 * Counts the cell that O replied in between {@link #lastPlayed} and {@code g}, if O replied.
+	 */
+	void observe(Game g) {
+		if (lastPlayed == null)
+			return;
+
+		int cells = BitBoard.bits(g, 'O') & ~BitBoard.bits(lastPlayed, 'O');
+		int hash = lastPlayed.hashCode();
+		lastPlayed = null;
+		if (Integer.bitCount(cells) != 1)
+			return;
+
+		counts[ArrayQTable.NUM_MOVES * hash + Integer.numberOfTrailingZeros(cells)]++;
+		totals[hash]++;
+		if (numReplied == replied.length)
+			replied = Arrays.copyOf(replied, 2 * replied.length);
+		replied[numReplied++] = hash;
+	}
+
+	/**
+	 * Updates the transition probabilities of the positions where O replied since the last re-planning, and backs up
+	 * the states whose values may have changed, from the states where X's moves lead to those positions backwards.
+	 */
+	void replan() {
+		int head = 0;
+		int size = 0;
+		for (int i = 0; i < numReplied; i++) {
+			int hash = replied[i];
+			for (int k = mdp.afterStart[hash]; k < mdp.afterStart[hash + 1]; k++) {
+				int m = mdp.afterMove[k];
+				int n = mdp.transitionStart[m + 1] - mdp.transitionStart[m];
+				for (int t = mdp.transitionStart[m]; t < mdp.transitionStart[m + 1]; t++)
+					if (mdp.reply[t] >= 0)
+						mdp.prob[t] = (counts[ArrayQTable.NUM_MOVES * hash + mdp.reply[t]] + prior)
+								/ (totals[hash] + prior * n);
+
+				int s = mdp.moveState[m];
+				if (!queued[s]) {
+					queued[s] = true;
+					queue[(head + size++) % queue.length] = s;
+				}
+			}
+		}
+		numReplied = 0;
+
+		backups = 0;
+		while (size > 0) {
+			int s = queue[head];
+			head = (head + 1) % queue.length;
+			size--;
+			queued[s] = false;
+
+			// backing the state up, keeping the first best move as the greedy extraction does
+			double v = Double.NEGATIVE_INFINITY;
+			for (int m = mdp.moveStart[s]; m < mdp.moveStart[s + 1]; m++) {
+				double q = mdp.qValue(values, m);
+				if (q > v) {
+					v = q;
+					moves[s] = m;
+				}
+			}
+			backups++;
+
+			boolean changed = Math.abs(v - values[s]) > tolerance;
+			values[s] = v;
+			if (!changed)
+				continue;
+
+			for (int k = mdp.predecessorStart[s]; k < mdp.predecessorStart[s + 1]; k++) {
+				int p = mdp.moveState[mdp.predecessorMove[k]];
+				if (!queued[p]) {
+					queued[p] = true;
+					queue[(head + size++) % queue.length] = p;
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of states backed up by the last re-planning
+	 */
+	public int getBackups() {
+		return backups;
+	}
+
+	/**
+	 *
+	 * @return the estimated probability that O replies in cell {@code 3*x+y} of {@code g}, where O is to move
+	 */
+	public double getReplyProbability(Game g, int x, int y) {
+		int hash = g.hashCode();
+		int n = 9 - Integer.bitCount(BitBoard.bits(g, 'X') | BitBoard.bits(g, 'O'));
+		return (counts[ArrayQTable.NUM_MOVES * hash + 3 * x + y] + prior) / (totals[hash] + prior * n);
+	}
+
+}
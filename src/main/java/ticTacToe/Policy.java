@@ -1,6 +1,8 @@
 package ticTacToe;
 
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 
 /**
@@ -44,17 +46,23 @@ public class Policy {
 	}
 	
 	/**
-	 * loads policy from file. One possible format for storing a policy is as a sequence of lines where each line
-	 * specifies the action/move determined by the policy in a particular game state. The game states should not
-	 * explicitly stored, only their hashes are stored. The {@link Game} object itself can be constructed using the 
-	 * {@link Game#inverseHash} method.
+	 * loads policy from file, in the binary format of {@link PolicyFile}: the move of the policy in every game state,
+	 * stored by the hash of the game. The game states are not explicitly stored, only their hashes are. The {@link Game}
+	 * objects themselves are constructed using the {@link Game#inverseHash} method. To use a policy file without
+	 * loading it into the heap, see {@link MappedPolicy}.
 	 *  
 	 * @param file
+	 * @throws IOException if the file can't be read, or isn't a valid policy file
 	 */
-	public Policy(String file)
+	public Policy(String file) throws IOException
 	{
-		/* implement this constructor to load a stored policy from file. */
-		
+		MappedPolicy stored=new MappedPolicy(new File(file));
+		for (int hash=0;hash<PolicyFile.NUM_STATES;hash++)
+		{
+			Game g=stored.cell(hash)<0?null:Game.inverseHash(hash);
+			if (g!=null)
+				policy.put(g, stored.getMove(g));
+		}
 	}
 
 	
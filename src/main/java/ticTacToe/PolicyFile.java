@@ -0,0 +1,178 @@
+package ticTacToe;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The binary file format for policies, read by {@link MappedPolicy} and {@link Policy#Policy(String)}, and written by
+ * {@link #write}. A policy is stored as one byte per game hash (see {@link Game#hashCode}), the dense id of a state:
+ * the cell {@code 3*x+y} of the move to play, or {@link #NO_MOVE} for hashes that aren't valid non-terminal games or
+ * where the policy has no move. Game states themselves are never stored, so a whole policy takes 59KB.
+ *
+ * The file starts with a header of {@link #HEADER_SIZE} bytes, big endian: a magic number, the format version, the
+ * board parameters it was written for (rows, columns, and the number of states), and a CRC32 of the moves. The moves
+ * follow, in hash order.
+ *
+ * @author ae187
+ *
+ */
+public final class PolicyFile {
+
+	static final int MAGIC = 0x54545450;
+
+	static final int VERSION = 1;
+
+	static final int ROWS = 3;
+	static final int COLUMNS = 3;
+
+	/**
+	 * The number of states, i.e. of game hashes
+	 */
+	static final int NUM_STATES = ArrayQTable.NUM_STATES;
+
+	static final int HEADER_SIZE = 32;
+
+	/**
+	 * The byte stored for states without a move
+	 */
+	static final byte NO_MOVE = (byte) 0xff;
+
+	private PolicyFile() {
+	}
+
+	/**
+	 * Writes the moves of {@code policy} in every valid non-terminal game, with either player to move, to
+	 * {@code file}. Policies computing their moves when asked, e.g. a {@link LinearPolicy}, are stored just as well as
+	 * policies kept in a map. The file is written to a temporary file first and then moved over {@code file}.
+	 */
+	public static void write(Policy policy, File file) throws IOException {
+		byte[] moves = new byte[NUM_STATES];
+		Arrays.fill(moves, NO_MOVE);
+		for (char xo : new char[] { 'X', 'O' }) {
+			for (Game g : Game.generateAllValidGames(xo)) {
+				if (g.isTerminal())
+					continue;
+
+				Move m = policy.getMove(g);
+				if (m != null)
+					moves[g.hashCode()] = (byte) (3 * m.x + m.y);
+			}
+		}
+
+		File tmp = new File(file.getPath() + ".tmp");
+		FileOutputStream out = new FileOutputStream(tmp);
+		try {
+			out.write(encode(moves).array());
+		} finally {
+			out.close();
+		}
+
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Puts a header in front of {@code moves}, one byte per game hash as described above.
+	 *
+	 * @return the whole policy file, in a heap buffer
+	 */
+	static ByteBuffer encode(byte[] moves) {
+		CRC32 crc = new CRC32();
+		crc.update(moves);
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + NUM_STATES);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(ROWS);
+		buffer.putInt(COLUMNS);
+		buffer.putInt(NUM_STATES);
+		buffer.putInt((int) crc.getValue());
+		buffer.putLong(0L);
+		buffer.put(moves);
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Maps {@code file} into memory, read only, and checks its header and checksum.
+	 *
+	 * @return the whole file, header included
+	 * @throws IOException if the file can't be read, or isn't a valid policy file for this board
+	 */
+	static MappedByteBuffer map(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		MappedByteBuffer buffer;
+		try {
+			if (channel.size() != HEADER_SIZE + NUM_STATES)
+				throw new IOException(file + " is not a policy file: it should be " + (HEADER_SIZE + NUM_STATES)
+						+ " bytes long");
+
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE + NUM_STATES);
+		} finally {
+			channel.close();
+		}
+
+		check(buffer, file.toString());
+		return buffer;
+	}
+
+	/**
+	 * Reads the policy file in {@code in}, e.g. a resource, into memory and checks its header and checksum.
+	 *
+	 * @param source where the file comes from, for error messages
+	 * @return the whole file, header included
+	 * @throws IOException if the file can't be read, or isn't a valid policy file for this board
+	 */
+	static ByteBuffer read(InputStream in, String source) throws IOException {
+		byte[] bytes = new byte[HEADER_SIZE + NUM_STATES];
+		DataInputStream data = new DataInputStream(in);
+		try {
+			data.readFully(bytes);
+			if (data.read() != -1)
+				throw new IOException(source + " is not a policy file: it is too long");
+		} catch (EOFException e) {
+			throw new IOException(source + " is not a policy file: it is too short", e);
+		} finally {
+			data.close();
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		check(buffer, source);
+		return buffer;
+	}
+
+	/**
+	 * Checks the header and checksum of a whole policy file.
+	 *
+	 * @throws IOException if it isn't a valid policy file for this board
+	 */
+	static void check(ByteBuffer buffer, String source) throws IOException {
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+			throw new IOException(source + " is not a version " + VERSION + " policy file");
+		if (buffer.getInt(8) != ROWS || buffer.getInt(12) != COLUMNS || buffer.getInt(16) != NUM_STATES)
+			throw new IOException(source + " is a policy for a " + buffer.getInt(8) + "x" + buffer.getInt(12) + " board");
+
+		ByteBuffer moves = buffer.duplicate();
+		moves.position(HEADER_SIZE);
+		CRC32 crc = new CRC32();
+		crc.update(moves);
+		if ((int) crc.getValue() != buffer.getInt(20))
+			throw new IOException(source + " is corrupted: wrong checksum");
+	}
+
+}
@@ -1,10 +1,13 @@
 package ticTacToe;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
 
 /**
  * A policy iteration agent. You should implement the following methods: (1)
@@ -31,13 +34,20 @@ public class PolicyIterationAgent extends Agent {
 	 * This map is used to store the values of states according to the current
 	 * policy (policy evaluation).
 	 */
-	HashMap<Game, Double> policyValues = new HashMap<Game, Double>();
+	Map<Game, Double> policyValues = new HashMap<Game, Double>();
 
 	/**
 	 * This stores the current policy as a map from {@link Game}s to {@link Move}.
 	 */
 	HashMap<Game, Move> curPolicy = new HashMap<Game, Move>();
 
+	/**
+	 * Whether {@link #policyValues} and {@link #curPolicy} are shared with other
+	 * agents through {@link SolvedModelCache}, see {@link #cached()}. Shared maps
+	 * are copied before this agent modifies them, see {@link #unshare()}.
+	 */
+	boolean shared = false;
+
 	double discount = 0.9;
 
 	/**
@@ -45,6 +55,11 @@ public class PolicyIterationAgent extends Agent {
 	 */
 	TTTMDP mdp;
 
+	/**
+	 * This agent's random number stream, used to generate the initial random policy
+	 */
+	SplittableRandom random = RandomStreams.newStream();
+
 	/**
 	 * loads the policy from file if one exists. Policies should be stored in .pol
 	 * files directly under the project folder.
@@ -68,6 +83,103 @@ public class PolicyIterationAgent extends Agent {
 
 	}
 
+	/**
+	 * 
+	 * @return an agent playing the policy solved at build time with the default
+	 *         parameters (see {@link PrecomputedPolicies}), or a newly solved
+	 *         agent if there is none. Only the policy is loaded: the agent has no
+	 *         values.
+	 */
+	public static PolicyIterationAgent precomputed() {
+		Policy p = PrecomputedPolicies.load(PrecomputedPolicies.POLICY_ITERATION);
+		return p != null ? new PolicyIterationAgent(p) : new PolicyIterationAgent();
+	}
+
+	/**
+	 * 
+	 * @return an agent with the default parameters, sharing the policy and values
+	 *         of every other such agent in the process through
+	 *         {@link SolvedModelCache#global()}: only the first one is solved.
+	 */
+	public static PolicyIterationAgent cached() {
+		TTTMDP d = new TTTMDP();
+		return cached(0.9, d.winReward, d.loseReward, d.livingReward, d.drawReward);
+	}
+
+	/**
+	 * 
+	 * @return an agent with the given parameters, sharing the policy and values
+	 *         of every other agent with the same parameters in the process through
+	 *         {@link SolvedModelCache#global()}. Training or re-solving the agent
+	 *         first gives it its own copy of them, so other agents are unaffected.
+	 */
+	public static PolicyIterationAgent cached(final double discountFactor, final double winningReward,
+			final double losingReward, final double livingReward, final double drawReward) {
+		SolvedModelCache.Key key = new SolvedModelCache.Key("policy-iteration", discountFactor, winningReward,
+				losingReward, livingReward, drawReward, "uniform random", 3);
+		SolvedModelCache.Model model = SolvedModelCache.global().get(key, new Callable<SolvedModelCache.Model>() {
+			public SolvedModelCache.Model call() {
+				PolicyIterationAgent solved = new PolicyIterationAgent(discountFactor, winningReward, losingReward,
+						livingReward, drawReward);
+				return new SolvedModelCache.Model(solved.policy, solved.policyValues);
+			}
+		});
+
+		PolicyIterationAgent agent = new PolicyIterationAgent(model.policy);
+		agent.discount = discountFactor;
+		agent.mdp = new TTTMDP(winningReward, losingReward, livingReward, drawReward);
+		agent.policyValues = model.values;
+		agent.curPolicy = model.policy.policy;
+		agent.shared = true;
+		return agent;
+	}
+
+	/**
+	 * Copies {@link #policyValues} and {@link #curPolicy} if they are shared, so
+	 * that this agent can modify them. Every method modifying them calls this
+	 * first.
+	 */
+	void unshare() {
+		if (!shared)
+			return;
+
+		policyValues = new HashMap<Game, Double>(policyValues);
+		curPolicy = new HashMap<Game, Move>(curPolicy);
+		shared = false;
+	}
+
+	/**
+	 * 
+	 * @return an agent with the default parameters that solves in the background
+	 *         (see {@link Agent#trainInBackground}), playing the policy solved at
+	 *         build time meanwhile if there is one, or an
+	 *         {@link AggressivePolicy} otherwise
+	 */
+	public static PolicyIterationAgent background() {
+		Policy stale = PrecomputedPolicies.load(PrecomputedPolicies.POLICY_ITERATION);
+		TTTMDP d = new TTTMDP();
+		return background(0.9, d.winReward, d.loseReward, d.livingReward, d.drawReward,
+				stale != null ? stale : new AggressivePolicy());
+	}
+
+	/**
+	 * 
+	 * @return an agent with the given parameters that solves in the background,
+	 *         playing {@code fallback} meanwhile. The policy is published after
+	 *         every improvement step that changes it.
+	 */
+	public static PolicyIterationAgent background(double discountFactor, double winningReward, double losingReward,
+			double livingReward, double drawReward, Policy fallback) {
+		final PolicyIterationAgent agent = new PolicyIterationAgent(discountFactor, winningReward, losingReward,
+				livingReward, drawReward, false);
+		agent.trainInBackground(fallback, new Runnable() {
+			public void run() {
+				agent.train();
+			}
+		});
+		return agent;
+	}
+
 	/**
 	 * Use this constructor to initialise a learning agent with default MDP
 	 * paramters (rewards, transitions, etc) as specified in {@link TTTMDP}
@@ -101,6 +213,25 @@ public class PolicyIterationAgent extends Agent {
 		train();
 	}
 
+	/**
+	 * Use this constructor to set the various parameters of the Tic-Tac-Toe MDP,
+	 * and to solve later, e.g. with a time budget with {@link #train(Duration)}.
+	 * 
+	 * @param discountFactor
+	 * @param winningReward
+	 * @param losingReward
+	 * @param livingReward
+	 * @param drawReward
+	 * @param train          whether to solve now
+	 */
+	public PolicyIterationAgent(double discountFactor, double winningReward, double losingReward, double livingReward,
+			double drawReward, boolean train) {
+		this.discount = discountFactor;
+		this.mdp = new TTTMDP(winningReward, losingReward, livingReward, drawReward);
+		if (train)
+			train();
+	}
+
 	/**
 	 * Initialises the {@link #policyValues} map, and sets the initial value of all
 	 * states to 0 (V0 under some policy pi ({@link #curPolicy} from the lectures).
@@ -109,6 +240,7 @@ public class PolicyIterationAgent extends Agent {
 	 * 
 	 */
 	public void initValues() {
+		unshare();
 		List<Game> allGames = Game.generateAllValidGames('X');// all valid games where it is X's turn, or it's terminal.
 		for (Game g : allGames)
 			this.policyValues.put(g, 0.0);
@@ -124,12 +256,10 @@ public class PolicyIterationAgent extends Agent {
 	 */
 	
 	public void initRandomPolicy() {
+		unshare();
 
 		// Getting all states from policy values
 		Set<Game> states = policyValues.keySet();
-		// Creating a new random object
-		Random rand = new Random();
-
 		// Iterating through each state
 		for (Game state : states) {
 
@@ -143,7 +273,7 @@ public class PolicyIterationAgent extends Agent {
 				if (!posMoves.isEmpty()) {
 					
 					// Selecting a random move
-					Move randMove = posMoves.get(rand.nextInt(posMoves.size()));
+					Move randMove = posMoves.get(random.nextInt(posMoves.size()));
 					
 					// Updating the policy with the random move
 					this.curPolicy.put(state, randMove);
@@ -168,35 +298,47 @@ public class PolicyIterationAgent extends Agent {
 
 	    // Iterating until convergence
 	    do {
-	        // Resetting maxQVal to negative infinity
-	        maxQVal = Double.NEGATIVE_INFINITY;
-
-	        // Iterating through all games in the current policy
-	        for (Game state : curPolicy.keySet()) {
-	            // Initializing qVal to 0
-	            double qVal = 0;
-
-	            // Checking if the game is not in a terminal state
-	            if (!state.isTerminal()) {
-	            	
-	                // Policy Iteration Bellman's Equation for non-terminal states
-	                for (TransitionProb tr : mdp.generateTransitions(state, curPolicy.get(state))) {
-	                    qVal += tr.prob * (tr.outcome.localReward + (discount * policyValues.get(tr.outcome.sPrime)));
-	                }
-	            }
+	        maxQVal = evaluationSweep();
 
-	            // Getting the old Q value for the current game
-	            double oldQVal = policyValues.get(state);
+	    // Continuing the loop as long as the maximum change in Q value is greater than delta
+	    } while (maxQVal > delta);
+	}
 
-	            // Updating the Q value for the current game
-	            policyValues.put(state, qVal);
+	/**
+	 * Performs one policy evaluation step, updating the values in place.
+	 * 
+	 * @return the largest change of a value
+	 */
+	double evaluationSweep() {
+		unshare();
+
+	    // Resetting maxQVal to negative infinity
+	    double maxQVal = Double.NEGATIVE_INFINITY;
 
-	            // Calculating the maximum Q value
-	            maxQVal = Math.max(maxQVal, Math.abs(oldQVal - qVal));
+	    // Iterating through all games in the current policy
+	    for (Game state : curPolicy.keySet()) {
+	        // Initializing qVal to 0
+	        double qVal = 0;
+
+	        // Checking if the game is not in a terminal state
+	        if (!state.isTerminal()) {
+
+	            // Policy Iteration Bellman's Equation for non-terminal states
+	            for (TransitionProb tr : mdp.generateTransitions(state, curPolicy.get(state))) {
+	                qVal += tr.prob * (tr.outcome.localReward + (discount * policyValues.get(tr.outcome.sPrime)));
+	            }
 	        }
-	        
-	    // Continuing the loop as long as the maximum change in Q value is greater than delta
-	    } while (maxQVal > delta);
+
+	        // Getting the old Q value for the current game
+	        double oldQVal = policyValues.get(state);
+
+	        // Updating the Q value for the current game
+	        policyValues.put(state, qVal);
+
+	        // Calculating the maximum Q value
+	        maxQVal = Math.max(maxQVal, Math.abs(oldQVal - qVal));
+	    }
+	    return maxQVal;
 	}
 
 	/**
@@ -213,6 +355,8 @@ public class PolicyIterationAgent extends Agent {
 
 	// Initializing the flag to check if the policy has improved
 	protected boolean improvePolicy() {
+		unshare();
+
 		// Checking if policy is improved
 	    boolean hasImproved = false;
 
@@ -305,16 +449,141 @@ public class PolicyIterationAgent extends Agent {
 	        if (curPolicy.equals(prePolicy)) {
 	            break;
 	        }
-	    } while (true);
 
-	    // Creating a new policy
-	    super.policy = new Policy();
+	        // Publishing the improved policy to games in progress, when training in the background
+	        if (policy instanceof HotSwapPolicy) {
+	            setPolicy(new Policy(new HashMap<Game, Move>(curPolicy)));
+	        }
+	    } while (true);
 
 	    // Setting the new policy as the current policy
-	    super.policy.policy = curPolicy;
+	    setPolicy(new Policy(curPolicy));
 	}
 
 
+	/**
+	 * Solves for at most {@code budget} of wall-clock time, then sets the
+	 * policy, as {@link #train()} does. Starting from the current policy and
+	 * values (or a random policy and values of 0 if there are none yet), policy
+	 * evaluation and improvement steps alternate until the policy no longer
+	 * changes or time runs out. When time runs out during an evaluation, the
+	 * policy is still improved once from the values evaluated so far, so the
+	 * budget may be overrun by about the time of one improvement step.
+	 * 
+	 * @param budget the time to solve for
+	 * @return the policy, the number of improvement steps, the residual of the
+	 *         last evaluation step and the number of moves changed by the last
+	 *         improvement step
+	 */
+	public AnytimeResult train(Duration budget) {
+		long start = System.nanoTime();
+		long deadline = start + budget.toNanos();
+		if (policyValues.isEmpty())
+			initValues();
+		if (curPolicy.isEmpty())
+			initRandomPolicy();
+
+		int improvements = 0;
+		int changes;
+		double residual;
+		boolean converged;
+		long sweepNanos = 0;
+		long improveNanos = 0;
+		do {
+			// Evaluating the policy for as long as there is time left to improve it afterwards
+			do {
+				long sweepStart = System.nanoTime();
+				residual = evaluationSweep();
+				sweepNanos = System.nanoTime() - sweepStart;
+			} while (residual > delta && System.nanoTime() + sweepNanos + improveNanos <= deadline);
+
+			long improveStart = System.nanoTime();
+			HashMap<Game, Move> prePolicy = new HashMap<Game, Move>(curPolicy);
+			improvePolicy();
+			improvements++;
+			changes = 0;
+			for (Game state : curPolicy.keySet())
+				if (!Objects.equals(curPolicy.get(state), prePolicy.get(state)))
+					changes++;
+			improveNanos = System.nanoTime() - improveStart;
+
+			converged = changes == 0 && residual <= delta;
+			if (!converged && policy instanceof HotSwapPolicy)
+				setPolicy(new Policy(new HashMap<Game, Move>(curPolicy)));
+		} while (!converged && System.nanoTime() + sweepNanos + improveNanos <= deadline);
+
+		Policy p = new Policy(curPolicy);
+		setPolicy(p);
+		AnytimeResult result = new AnytimeResult(p, improvements, residual, changes, converged,
+				System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * Re-solves for new rewards and discount, warm-starting from this agent's
+	 * current policy and values rather than from a random policy, on the
+	 * transitions of {@link CompiledTTTMDP#shared()}: only the reward vector and
+	 * the discount change, the transitions are never generated again. After a
+	 * small change of the parameters most moves of the old policy are still
+	 * optimal, so few improvement steps are needed. Evaluation and improvement
+	 * steps alternate until the policy no longer changes, then the values and
+	 * the policy are set as {@link #train()} would.
+	 * 
+	 * @return the policy, the number of improvement steps, the residual of the
+	 *         last evaluation step and the number of states whose move changed
+	 *         from the previous policy
+	 */
+	public AnytimeResult resolve(double discountFactor, double winningReward, double losingReward,
+			double livingReward, double drawReward) {
+		long start = System.nanoTime();
+		CompiledTTTMDP compiled = CompiledTTTMDP.shared().with(discountFactor, winningReward, losingReward,
+				livingReward, drawReward);
+		double[] values = compiled.values(policyValues);
+		int[] before = compiled.moves(new Policy(curPolicy));
+		int[] moves = before.clone();
+		// states where the old policy has no move start from the greedy one
+		int[] greedy = compiled.greedy(values);
+		for (int s = 0; s < moves.length; s++)
+			if (moves[s] < 0)
+				moves[s] = greedy[s];
+
+		int improvements = 0;
+		double residual;
+		boolean stable;
+		do {
+			do {
+				residual = compiled.evaluationSweep(values, moves);
+			} while (residual > delta);
+
+			int[] improved = compiled.greedy(values);
+			improvements++;
+			stable = true;
+			for (int s = 0; s < moves.length; s++) {
+				// keeping the current move on ties, so that the policy settles
+				if (improved[s] != moves[s]
+						&& compiled.qValue(values, improved[s]) > compiled.qValue(values, moves[s])) {
+					moves[s] = improved[s];
+					stable = false;
+				}
+			}
+		} while (!stable);
+
+		int changes = 0;
+		for (int s = 0; s < moves.length; s++)
+			if (moves[s] != before[s])
+				changes++;
+
+		this.discount = discountFactor;
+		this.mdp = new TTTMDP(winningReward, losingReward, livingReward, drawReward);
+		unshare();
+		compiled.copyTo(values, policyValues);
+		curPolicy = compiled.toMap(moves);
+		Policy p = new Policy(curPolicy);
+		setPolicy(p);
+		AnytimeResult result = new AnytimeResult(p, improvements, residual, changes, true, System.nanoTime() - start);
+		return result;
+	}
+
 	public static void main(String[] args) throws IllegalMoveException {
 		/**
 		 * Test code to run the Policy Iteration Agent agains a Human Agent.
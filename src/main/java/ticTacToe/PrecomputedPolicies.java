@@ -0,0 +1,85 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Policies solved once at build time and shipped as resources, so that agents with the default parameters can start
+ * playing without solving or training first. The build runs {@link #main} after compiling (see the exec plugin in the
+ * pom), which solves a {@link ValueIterationAgent}, a {@link PolicyIterationAgent} and a {@link QLearningAgent}, all
+ * with their default rewards and discount, and writes their policies in the format of {@link PolicyFile} under
+ * {@link #RESOURCES} in the classes directory. Q-Learning trains with the fixed seed {@link #SEED}, so every build ships
+ * the same policies.
+ *
+ * The agents' {@code precomputed()} factory methods load these resources, and solve as usual if they are missing, e.g.
+ * when running from an IDE that skips the build step. Agents with customised rewards or discount must be solved with
+ * their constructors.
+ *
+ * @author ae187
+ *
+ */
+public final class PrecomputedPolicies {
+
+	/**
+	 * The folder of the policies, on the class path
+	 */
+	public static final String RESOURCES = "policies";
+
+	/**
+	 * The names of the policies of each agent
+	 */
+	public static final String VALUE_ITERATION = "vi";
+	public static final String POLICY_ITERATION = "pi";
+	public static final String Q_LEARNING = "ql";
+
+	/**
+	 * The seed of the random streams while solving
+	 */
+	static final long SEED = 1;
+
+	private PrecomputedPolicies() {
+	}
+
+	/**
+	 *
+	 * @param name the name of a policy, e.g. {@link #VALUE_ITERATION}
+	 * @return the precomputed policy called {@code name}, or null if it isn't on the class path
+	 * @throws IllegalStateException if the resource is there but can't be read, or is corrupted
+	 */
+	public static Policy load(String name) {
+		String resource = RESOURCES + "/" + name + ".policy";
+		InputStream in = PrecomputedPolicies.class.getClassLoader().getResourceAsStream(resource);
+		if (in == null)
+			return null;
+
+		try {
+			return new MappedPolicy(PolicyFile.read(in, resource));
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not load the precomputed policy " + resource, e);
+		}
+	}
+
+	/**
+	 * Solves the agents and writes their policies.
+	 *
+	 * @param args the classes directory to write the policies under
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1)
+			throw new IllegalArgumentException("Expected the classes directory");
+
+		File folder = new File(args[0], RESOURCES);
+		if (!folder.isDirectory() && !folder.mkdirs())
+			throw new IOException("Could not create " + folder);
+
+		RandomStreams.setSeed(SEED);
+		long start = System.nanoTime();
+		PolicyFile.write(new ValueIterationAgent().getPolicy(), new File(folder, VALUE_ITERATION + ".policy"));
+		PolicyFile.write(new PolicyIterationAgent().getPolicy(), new File(folder, POLICY_ITERATION + ".policy"));
+		PolicyFile.write(new QLearningAgent().getPolicy(), new File(folder, Q_LEARNING + ".policy"));
+		System.out.println("Precomputed policies written to " + folder + " in "
+				+ String.format("%.2f", (System.nanoTime() - start) / 1e9) + "s");
+	}
+
+}
@@ -1,8 +1,13 @@
 package ticTacToe;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -59,6 +64,89 @@ public class QLearningAgent extends Agent {
 	 */
 	TTTEnvironment env = new TTTEnvironment();
 
+	/**
+	 * This agent's random number stream, used for exploration. Training threads
+	 * and environments created by the agent get streams split off this one, so a
+	 * fixed {@link RandomStreams} seed makes training reproducible.
+	 */
+	SplittableRandom random = RandomStreams.newStream();
+
+	/**
+	 * The number of episodes between two convergence checks in {@link #train}, or
+	 * 0 to always train for {@link #numEpisodes} episodes.
+	 */
+	int checkInterval = 1000;
+
+	/**
+	 * Training has converged at a check when at most this many states changed
+	 * their greedy move since the previous check, among the states that the
+	 * greedy policy can reach whatever the opponent plays (see
+	 * {@link ConvergenceMonitor#policyChanges}): moves keep changing in states
+	 * that only exploration reaches long after the greedy play has settled...
+	 */
+	int maxPolicyChanges = 0;
+
+	/**
+	 * ...and no q-value changed by more than this since the previous check. Not
+	 * checked by default: with a constant learning rate a single exploratory
+	 * update moves a q-value by up to alpha times the lose reward, so the largest
+	 * change between two checks stays around that (5 with the defaults) long
+	 * after the greedy policy has settled.
+	 */
+	double convergenceDelta = Double.POSITIVE_INFINITY;
+
+	/**
+	 * The number of checks in a row that must show convergence to stop training
+	 * early. Against the default random opponent a greedy move that is wrong can
+	 * stay put for several checks before exploration corrects it: with 10 checks
+	 * the default agent stops after about 33,000 episodes on average, and loses
+	 * games about as rarely as after the full 50,000 (for 4 seeds in 200).
+	 */
+	int patience = 10;
+
+	/**
+	 * The number of episodes played by the last call to {@link #train}
+	 */
+	int episodesTrained = 0;
+
+	/**
+	 * Notified at every convergence check of {@link #train}, may be null.
+	 */
+	TrainingListener listener;
+
+	/**
+	 * The model of the environment learned by {@link #trainDyna}, kept between
+	 * calls so that training can be continued. Null until first used.
+	 */
+	DynaModel model;
+
+	/**
+	 * In prioritised sweeping, q-states whose value would change by less than this
+	 * are not queued for planning.
+	 */
+	double sweepThreshold = 0.01;
+
+	/**
+	 * If not null, every move played by {@link #train} and
+	 * {@link #trainParallel} is appended to this log, so that it can be learned
+	 * from again offline, see {@link FittedQIteration}.
+	 */
+	TransitionLog transitionLog;
+
+	/**
+	 * If not null, {@link #train} saves a {@link QTableCheckpoint} to this file
+	 * every {@link #checkpointInterval} episodes, and at the end.
+	 */
+	File checkpointFile;
+
+	int checkpointInterval = 5000;
+
+	/**
+	 * The episode that the next call to {@link #train} starts from, set when
+	 * resuming from a checkpoint.
+	 */
+	int startEpisode = 0;
+
 	/**
 	 * Construct a Q-Learning agent that learns from interactions with
 	 * {@code opponent}.
@@ -78,6 +166,222 @@ public class QLearningAgent extends Agent {
 		train();
 	}
 
+	/**
+	 * Construct a Q-Learning agent, training it straight away with {@link #train}
+	 * only if {@code train} is true. Otherwise call {@link #train} or one of the
+	 * other training methods, e.g. {@link #trainLambda(double)}, before using the
+	 * agent.
+	 * 
+	 * @param opponent     the opponent agent that this Q-Learning agent will
+	 *                     interact with to learn.
+	 * @param learningRate This is the rate at which the agent learns. Alpha from
+	 *                     your lectures.
+	 * @param numEpisodes  The number of episodes (games) to train for
+	 * @param train        whether to train now
+	 */
+	public QLearningAgent(Agent opponent, double learningRate, int numEpisodes, double discount, boolean train) {
+		env = new TTTEnvironment(opponent);
+		this.alpha = learningRate;
+		this.numEpisodes = numEpisodes;
+		this.discount = discount;
+		initQTable();
+		if (train)
+			train();
+	}
+
+	/**
+	 * Construct a Q-Learning agent that trains with {@code numThreads} worker
+	 * threads in parallel, see {@link #trainParallel(int)}. With one thread this is
+	 * the same as the constructor above.
+	 * 
+	 * @param opponent     the opponent agent that this Q-Learning agent will
+	 *                     interact with to learn.
+	 * @param learningRate This is the rate at which the agent learns. Alpha from
+	 *                     your lectures.
+	 * @param numEpisodes  The total number of episodes (games) to train for,
+	 *                     shared between the threads
+	 * @param numThreads   The number of worker threads
+	 */
+	public QLearningAgent(Agent opponent, double learningRate, int numEpisodes, double discount, int numThreads) {
+		env = new TTTEnvironment(opponent);
+		this.alpha = learningRate;
+		this.numEpisodes = numEpisodes;
+		this.discount = discount;
+		initQTable();
+		if (numThreads > 1)
+			trainParallel(numThreads);
+		else
+			train();
+	}
+
+	/**
+	 * Construct a Q-Learning agent that trains with experience replay, see
+	 * {@link #trainWithReplay(ReplayBuffer, int)}.
+	 * 
+	 * @param opponent     the opponent agent that this Q-Learning agent will
+	 *                     interact with to learn.
+	 * @param learningRate This is the rate at which the agent learns. Alpha from
+	 *                     your lectures.
+	 * @param numEpisodes  The number of episodes (games) to train for
+	 * @param replay       the replay buffer to store transitions in
+	 * @param batchSize    the number of transitions replayed after every move
+	 */
+	public QLearningAgent(Agent opponent, double learningRate, int numEpisodes, double discount, ReplayBuffer replay,
+			int batchSize) {
+		env = new TTTEnvironment(opponent);
+		this.alpha = learningRate;
+		this.numEpisodes = numEpisodes;
+		this.discount = discount;
+		initQTable();
+		trainWithReplay(replay, batchSize);
+	}
+
+	/**
+	 * Construct a Q-Learning agent that reports its training progress to
+	 * {@code listener} at every convergence check, see {@link #train}.
+	 * 
+	 * @param opponent     the opponent agent that this Q-Learning agent will
+	 *                     interact with to learn.
+	 * @param learningRate This is the rate at which the agent learns. Alpha from
+	 *                     your lectures.
+	 * @param numEpisodes  The maximum number of episodes (games) to train for
+	 * @param listener     notified at every convergence check
+	 */
+	public QLearningAgent(Agent opponent, double learningRate, int numEpisodes, double discount,
+			TrainingListener listener) {
+		env = new TTTEnvironment(opponent);
+		this.alpha = learningRate;
+		this.numEpisodes = numEpisodes;
+		this.discount = discount;
+		this.listener = listener;
+		initQTable();
+		train();
+	}
+
+	/**
+	 * Construct a Q-Learning agent that resumes training from the checkpoint in
+	 * {@code checkpoint}, saved by an agent trained with {@link #train} and the
+	 * same parameters, and keeps saving checkpoints there at the same interval.
+	 * Training goes on from the checkpoint's q-values and episode, with the
+	 * agent's and the opponent's random streams restarted from the checkpoint's
+	 * seeds, so it plays the same episodes as the interrupted run would have. The convergence checks start
+	 * over though, so early stopping may happen later than it would have.
+	 * 
+	 * @param opponent     the opponent agent that this Q-Learning agent will
+	 *                     interact with to learn.
+	 * @param learningRate This is the rate at which the agent learns. Alpha from
+	 *                     your lectures.
+	 * @param numEpisodes  The total number of episodes (games) to train for,
+	 *                     including those played before the checkpoint
+	 * @param checkpoint   the checkpoint file
+	 * @throws IOException if the checkpoint can't be read
+	 */
+	public QLearningAgent(Agent opponent, double learningRate, int numEpisodes, double discount, File checkpoint)
+			throws IOException {
+		env = new TTTEnvironment(opponent);
+		this.alpha = learningRate;
+		this.numEpisodes = numEpisodes;
+		this.discount = discount;
+		initQTable();
+		QTableCheckpoint saved = QTableCheckpoint.read(checkpoint);
+		saved.q.copyTo(qTable);
+		random = new SplittableRandom(saved.seed);
+		env.reseedOpponent(saved.opponentSeed);
+		startEpisode = saved.episode;
+		checkpointFile = checkpoint;
+		checkpointInterval = saved.interval;
+		train();
+	}
+
+	/**
+	 * Use this constructor to initialise your agent with an existing policy. The
+	 * agent has no q-values and must not be trained.
+	 * 
+	 * @param p
+	 */
+	public QLearningAgent(Policy p) {
+		super(p);
+	}
+
+	/**
+	 * 
+	 * @return an agent playing the policy trained at build time with the default
+	 *         parameters (see {@link PrecomputedPolicies}), or a newly trained
+	 *         agent if there is none
+	 */
+	public static QLearningAgent precomputed() {
+		Policy p = PrecomputedPolicies.load(PrecomputedPolicies.Q_LEARNING);
+		return p != null ? new QLearningAgent(p) : new QLearningAgent();
+	}
+
+	/**
+	 * 
+	 * @return an agent with the default parameters, trained with the seed of
+	 *         {@link RandomStreams#global()}, see {@link #cached(long)}
+	 */
+	public static QLearningAgent cached() {
+		return cached(RandomStreams.global().getSeed());
+	}
+
+	/**
+	 * 
+	 * @return an agent playing the policy of an agent with the default
+	 *         parameters trained with random streams seeded from {@code seed},
+	 *         shared with every other such agent in the process through
+	 *         {@link SolvedModelCache#global()}: only the first one is trained.
+	 *         Like {@link #QLearningAgent(Policy)}, the agent has no q-values and
+	 *         must not be trained.
+	 */
+	public static QLearningAgent cached(final long seed) {
+		TTTMDP d = new TTTMDP();
+		SolvedModelCache.Key key = new SolvedModelCache.Key("q-learning alpha=0.1 episodes=50000", 0.9, d.winReward,
+				d.loseReward, d.livingReward, d.drawReward, "uniform random", 3, seed);
+		SolvedModelCache.Model model = SolvedModelCache.global().get(key, new Callable<SolvedModelCache.Model>() {
+			public SolvedModelCache.Model call() {
+				QLearningAgent solved = new QLearningAgent(new RandomAgent(), 0.1, 50000, 0.9, false);
+				// the streams are restarted from the seed, as when resuming from a
+				// checkpoint, so the policy doesn't depend on what else drew from
+				// the global streams first
+				SplittableRandom seeds = new SplittableRandom(seed);
+				solved.random = seeds.split();
+				solved.env.reseedOpponent(seeds.nextLong());
+				solved.train();
+				return new SolvedModelCache.Model(solved.policy, null);
+			}
+		});
+
+		return new QLearningAgent(model.policy);
+	}
+
+	/**
+	 * 
+	 * @return an agent with the default parameters that trains in the background
+	 *         (see {@link Agent#trainInBackground}), playing the policy trained at
+	 *         build time meanwhile if there is one, or an
+	 *         {@link AggressivePolicy} otherwise
+	 */
+	public static QLearningAgent background() {
+		Policy stale = PrecomputedPolicies.load(PrecomputedPolicies.Q_LEARNING);
+		return background(new RandomAgent(), 0.1, 50000, 0.9, stale != null ? stale : new AggressivePolicy());
+	}
+
+	/**
+	 * 
+	 * @return an agent with the given parameters that trains in the background,
+	 *         playing {@code fallback} meanwhile. The greedy policy is published
+	 *         at every convergence check of {@link #train}.
+	 */
+	public static QLearningAgent background(Agent opponent, double learningRate, int numEpisodes, double discount,
+			Policy fallback) {
+		final QLearningAgent agent = new QLearningAgent(opponent, learningRate, numEpisodes, discount, false);
+		agent.trainInBackground(fallback, new Runnable() {
+			public void run() {
+				agent.train();
+			}
+		});
+		return agent;
+	}
+
 	/**
 	 * Initialises all valid q-values -- Q(g,m) -- to 0.
 	 * 
@@ -113,103 +417,560 @@ public class QLearningAgent extends Agent {
 	 * epsilon-greedy policy where with the probability {@code epsilon} the agent
 	 * explores, and with probability {@code 1-epsilon}, it exploits.
 	 * 
+	 * Every {@link #checkInterval} episodes the q-values are checked for
+	 * convergence: training stops early once, for {@link #patience} checks in a
+	 * row, at most {@link #maxPolicyChanges} states reachable by the greedy policy
+	 * changed their greedy move and no q-value changed by more than
+	 * {@link #convergenceDelta} since the previous check. Every check is reported
+	 * to the {@link #listener}, if there is one. See {@link #setEarlyStopping}.
+	 * 
+	 * If a checkpoint file was set with {@link #setCheckpoints}, a
+	 * {@link QTableCheckpoint} is saved there in the background every
+	 * {@link #checkpointInterval} episodes and when training stops.
+	 * 
 	 * At the end of this method you should always call the {@code extractPolicy()}
 	 * method to extract the policy from the learned q-values. This is currently
 	 * done for you on the last line of the method.
 	 */
 
 	public void train() {
-		// Initializing the training process
-		for (int episode = 0; episode < numEpisodes; episode++) {
+		// Training on a primitive copy of the q-table, so that convergence checks are cheap
+		ArrayQTable q = new ArrayQTable();
+		q.copyFrom(qTable);
+		ConvergenceMonitor monitor = checkInterval > 0 ? new ConvergenceMonitor(qTable.keySet(), q) : null;
 
-			// Resetting the environment for the new episode
-			env.reset();
+		CheckpointWriter checkpoints = checkpointFile != null ? new CheckpointWriter(checkpointFile) : null;
 
-			// Getting the current game state
-			Game currentGame = env.getCurrentGameState();
+		int episode = startEpisode;
+		startEpisode = 0;
+		int convergedChecks = 0;
+		while (episode < numEpisodes) {
+			// Playing episodes up to the next convergence check or checkpoint
+			int block = numEpisodes - episode;
+			if (monitor != null)
+				block = Math.min(block, checkInterval - episode % checkInterval);
+			if (checkpoints != null)
+				block = Math.min(block, checkpointInterval - episode % checkpointInterval);
 
-			// Checking if the game has reached a terminal state
-			while (!env.isTerminal()) {	
-				Move selectedMove = null;
+			playEpisodes(q, env, random, block);
+			episode += block;
 
-				// Deciding whether to explore or exploit
-				if (new Random().nextDouble() < epsilon) { // exploration
+			if (checkpoints != null && episode % checkpointInterval == 0)
+				checkpoint(checkpoints, q, episode);
 
-					// Fetching the list of possible moves
-					List<Move> possibleMoves = env.getPossibleMoves();
+			if (monitor != null && (episode % checkInterval == 0 || episode == numEpisodes)) {
+				monitor.check(q);
+				if (listener != null)
+					listener.onProgress(episode, monitor.policyChanges, monitor.maxDelta);
+				// Publishing the greedy policy to games in progress, when training in the background
+				if (policy instanceof HotSwapPolicy)
+					setPolicy(monitor.policy());
 
-					// Selecting a random move for exploration
-					selectedMove = possibleMoves.get(new Random().nextInt(possibleMoves.size()));
+				// Stopping once the checks have shown convergence enough times in a row
+				if (monitor.policyChanges <= maxPolicyChanges && monitor.maxDelta <= convergenceDelta)
+					convergedChecks++;
+				else
+					convergedChecks = 0;
 
-				} else { // exploitation
-					double highestQValue = Double.NEGATIVE_INFINITY;
+				if (convergedChecks >= patience)
+					break;
+			}
+		}
+		if (checkpoints != null) {
+			if (episode % checkpointInterval != 0)
+				checkpoint(checkpoints, q, episode);
+			checkpoints.await();
+		}
 
-					// Iterating over possible moves to find the one with the highest Q-value
-					for (Move candidateMove : env.getPossibleMoves()) {
+		episodesTrained = episode;
+		q.copyTo(qTable);
 
-						// Getting the Q-value for the candidate move
-						double candidateQValue = qTable.getQValue(currentGame, candidateMove);
+		// --------------------------------------------------------
+		// you shouldn't need to delete the following lines of code.
+		setPolicy(extractPolicy());
+		if (this.policy == null) {
+			System.out.println("Unimplemented methods! First implement the train() & extractPolicy methods");
+			// System.exit(1);
+		}
 
-						// Updating the highest Q-value and selected move if the candidate's Q-value is
-						// higher
-						if (candidateQValue > highestQValue) {
-							highestQValue = candidateQValue;
-							selectedMove = candidateMove;
-						}
-					}
+	}
+
+	/**
+	 * Parallel version of {@link #train}. Plays {@code this.numEpisodes} episodes
+	 * split between {@code numThreads} worker threads. Each worker has its own
+	 * {@link TTTEnvironment}, against a new instance of the opponent's class (see
+	 * {@link TTTEnvironment#copy}), and its own random number streams, drawn from
+	 * this agent's {@link #random} stream before the threads start, and all
+	 * workers update one shared {@link ArrayQTable} without locking (Hogwild-style). When every
+	 * worker has finished, the shared q-values are copied back into
+	 * {@link #qTable} and the policy is extracted from it as usual.
+	 * 
+	 * The number of episodes per second of each worker is printed out.
+	 * 
+	 * @param numThreads the number of worker threads
+	 */
+	public void trainParallel(int numThreads) {
+		final ArrayQTable shared = new ArrayQTable();
+		shared.copyFrom(qTable);
+
+		final long[] elapsed = new long[numThreads];
+		final int[] episodes = new int[numThreads];
+		Thread[] workers = new Thread[numThreads];
+		for (int t = 0; t < numThreads; t++) {
+			final int id = t;
+			final SplittableRandom r = random.split();
+			final TTTEnvironment workerEnv = env.copy(random.nextLong());
+			// the first (numEpisodes % numThreads) workers play one extra episode
+			episodes[t] = numEpisodes / numThreads + (t < numEpisodes % numThreads ? 1 : 0);
+			workers[t] = new Thread(new Runnable() {
+				public void run() {
+					long start = System.nanoTime();
+					playEpisodes(shared, workerEnv, r, episodes[id]);
+					elapsed[id] = System.nanoTime() - start;
+				}
+			}, "q-learning-worker-" + t);
+			workers[t].start();
+		}
+
+		for (int t = 0; t < numThreads; t++) {
+			try {
+				workers[t].join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for training threads", e);
+			}
+			double seconds = elapsed[t] / 1e9;
+			System.out.println("Worker " + t + ": " + episodes[t] + " episodes in " + String.format("%.2f", seconds)
+					+ "s (" + String.format("%.0f", episodes[t] / seconds) + " episodes/s)");
+		}
+
+		shared.copyTo(qTable);
+		setPolicy(extractPolicy());
+	}
+
+	/**
+	 * Multi-process version of {@link #train}. Plays {@code this.numEpisodes}
+	 * episodes split between {@code numProcesses} worker JVMs on this machine
+	 * (see {@link QTableWorker}), which all update the q-values of one
+	 * {@link MappedQTable} in {@code file} without locking, as the threads of
+	 * {@link #trainParallel(int)} do. The q-values live in the mapped file, not
+	 * on any heap, and each worker has its own heap and garbage collector.
+	 * Training starts from the q-values already in the file, if there are any.
+	 * 
+	 * This process coordinates: every {@code checkpointMillis} milliseconds it
+	 * adds up the progress published by the workers in the table's header,
+	 * prints it out and, if {@code checkpoint} isn't null, copies the table to
+	 * {@code checkpoint}. When every worker has exited, the q-values are copied
+	 * into {@link #qTable} and the policy is extracted from it as usual.
+	 * 
+	 * The workers play against a new instance of the opponent's class, which
+	 * must have a public constructor without arguments, and get seeds drawn from
+	 * this agent's {@link #random} stream.
+	 * 
+	 * As the workers train a {@link MappedQTable}, this only works for the 3x3
+	 * game, and the q-values are copied back onto this process' heap at the
+	 * end: the mapped file saves the workers' heaps, not this one.
+	 * 
+	 * @param numProcesses     the number of worker processes
+	 * @param file             the table file shared with the workers
+	 * @param checkpoint       the file to copy the table to, or null
+	 * @param checkpointMillis the time between two progress reports
+	 */
+	public void trainProcesses(int numProcesses, File file, File checkpoint, long checkpointMillis)
+			throws IOException {
+		if (numProcesses < 1 || numProcesses > MappedQTable.MAX_WORKERS)
+			throw new IllegalArgumentException("The number of processes should be between 1 and "
+					+ MappedQTable.MAX_WORKERS);
+
+		MappedQTable table = new MappedQTable(file);
+		table.resetProgress(numProcesses);
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process[] workers = new Process[numProcesses];
+		try {
+			for (int w = 0; w < numProcesses; w++) {
+				// the first (numEpisodes % numProcesses) workers play one extra episode
+				int episodes = numEpisodes / numProcesses + (w < numEpisodes % numProcesses ? 1 : 0);
+				List<String> command = new ArrayList<String>();
+				Collections.addAll(command, java, "-cp", System.getProperty("java.class.path"),
+						QTableWorker.class.getName());
+				Collections.addAll(command, QTableWorker.arguments(this, file, w, episodes, random.nextLong()));
+				workers[w] = new ProcessBuilder(command).inheritIO().start();
+			}
+
+			long start = System.nanoTime();
+			for (int w = 0; w < numProcesses; w++) {
+				while (!workers[w].waitFor(checkpointMillis, TimeUnit.MILLISECONDS)) {
+					long episodes = 0;
+					for (int v = 0; v < numProcesses; v++)
+						episodes += table.getEpisodes(v);
+					double seconds = (System.nanoTime() - start) / 1e9;
+					System.out.println("Workers: " + episodes + " episodes in " + String.format("%.2f", seconds)
+							+ "s (" + String.format("%.0f", episodes / seconds) + " episodes/s)");
+					if (checkpoint != null)
+						table.snapshot(checkpoint);
 				}
+				if (workers[w].exitValue() != 0)
+					throw new IllegalStateException("Worker " + w + " failed with exit status " + workers[w].exitValue());
+			}
+
+			for (int w = 0; w < numProcesses; w++) {
+				double seconds = table.getNanos(w) / 1e9;
+				System.out.println("Worker " + w + ": " + table.getEpisodes(w) + " episodes in "
+						+ String.format("%.2f", seconds) + "s (" + String.format("%.0f", table.getEpisodes(w) / seconds)
+						+ " episodes/s)");
+			}
+			if (checkpoint != null)
+				table.snapshot(checkpoint);
+
+			table.copyTo(qTable);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for training processes", e);
+		} finally {
+			for (Process worker : workers)
+				if (worker != null)
+					worker.destroy();
+			table.close();
+		}
+
+		setPolicy(extractPolicy());
+	}
 
+	/**
+	 * Saves a checkpoint of {@code q} in the background. The agent's and the
+	 * opponent's random streams are restarted from new seeds, stored in the
+	 * checkpoint, so that training resumed from it carries on identically.
+	 */
+	void checkpoint(CheckpointWriter checkpoints, ArrayQTable q, int episode) {
+		long seed = random.nextLong();
+		long opponentSeed = random.nextLong();
+		random = new SplittableRandom(seed);
+		env.reseedOpponent(opponentSeed);
+		checkpoints.save(q, episode, checkpointInterval, seed, opponentSeed);
+	}
+
+	/**
+	 * Plays {@code episodes} episodes of epsilon-greedy Q-Learning in {@code env},
+	 * updating the q-values in {@code q}. Used by the workers of
+	 * {@link #trainParallel(int)} and by {@link QTableWorker}, so it must only
+	 * touch its arguments and the (read-only) learning parameters of this agent.
+	 */
+	void playEpisodes(ArrayQTable q, TTTEnvironment env, SplittableRandom r, int episodes) {
+		StepResult step = new StepResult();
+		for (int episode = 0; episode < episodes; episode++) {
+			env.reset();
+			Game game = env.getCurrentGameState();
+			int state = game.hashCode();
+
+			while (!env.isTerminal()) {
+				int cell = selectCell(q, game, state, r);
 				try {
-					// Executing the selected move and getting the outcome
-					Outcome outcome = env.executeMove(selectedMove);
+					env.step(cell, step);
+					if (transitionLog != null)
+						transitionLog.append(state, cell, step.reward, step.nextState, step.done);
 
-					// Creating a final copy of the current game state 
-					final Game currentGameFinal = currentGame;
+					double sample = step.reward;
+					if (!step.done)
+						sample += discount * q.maxQValue(step.nextState, BitBoard.empty(game));
 
-					// Updating the maxQValue
-					double maxQValue = Double.NEGATIVE_INFINITY;
-					for (Move move : currentGameFinal.getPossibleMoves()) {
-						double qValue = qTable.getQValue(currentGameFinal, move);
-						maxQValue = Math.max(qValue, maxQValue);
-					}
+					q.setQValue(state, cell, (1 - alpha) * q.getQValue(state, cell) + alpha * sample);
+					state = step.nextState;
+				} catch (IllegalMoveException e) {
+					System.out.print("Illegal Move!!!!!!!!");
+				} catch (IOException e) {
+					throw new IllegalStateException("Could not write to the transition log", e);
+				}
+			}
+		}
+	}
 
-					// Calculating the sample for the Q-value update
-					double sample;
-					if (currentGameFinal.isTerminal()) {
-						sample = outcome.localReward;
-					} else {
-						for (Move move : currentGameFinal.getPossibleMoves()) {
-							double qValue = qTable.getQValue(currentGameFinal, move);
-							if (qValue > maxQValue) {
-								maxQValue = qValue;
-							}
-						}
-						sample = outcome.localReward + discount * maxQValue;
-					}
+	/**
+	 * Chooses X's move in {@code game} epsilon-greedily according to {@code q},
+	 * without allocating anything.
+	 * 
+	 * @param state the {@link Game#hashCode} of {@code game}
+	 * @return the cell of the move, {@code 3*x+y}
+	 */
+	int selectCell(ArrayQTable q, Game game, int state, SplittableRandom r) {
+		int moves = BitBoard.empty(game);
+		if (r.nextDouble() < epsilon)
+			return BitBoard.nthCell(moves, r.nextInt(Integer.bitCount(moves)));
+
+		return q.bestCell(state, moves);
+	}
+
+	/**
+	 * Batched version of {@link #train}. Plays {@code numGames} games at once in a
+	 * {@link BatchTTTEnvironment}, choosing epsilon-greedy moves and updating an
+	 * {@link ArrayQTable} for the whole batch at every step, until at least
+	 * {@code this.numEpisodes} games have finished. The q-values are then copied
+	 * back into {@link #qTable} and the policy is extracted from it as usual.
+	 * 
+	 * Like {@link BatchTTTEnvironment}, this always trains against a random
+	 * opponent.
+	 * 
+	 * @param numGames the number of games played at once
+	 */
+	public void trainBatched(int numGames) {
+		ArrayQTable q = new ArrayQTable();
+		q.copyFrom(qTable);
+		BatchTTTEnvironment batch = new BatchTTTEnvironment(numGames, env.winReward, env.loseReward,
+				env.livingReward, env.drawReward, random.split());
+
+		int[] states = new int[numGames];
+		int[] actions = new int[numGames];
+		double[] rewards = new double[numGames];
+		int[] nextStates = new int[numGames];
+		boolean[] done = new boolean[numGames];
+
+		batch.getStates(states);
+		int finished = 0;
+		while (finished < numEpisodes) {
+			for (int i = 0; i < numGames; i++) {
+				int cells = batch.getPossibleMoves(i);
+				if (random.nextDouble() < epsilon)
+					actions[i] = BitBoard.nthCell(cells, random.nextInt(Integer.bitCount(cells)));
+				else
+					actions[i] = q.bestCell(states[i], cells);
+			}
+
+			try {
+				batch.step(actions, rewards, nextStates, done);
+			} catch (IllegalMoveException e) {
+				throw new IllegalStateException("this shouldn't happen!", e);
+			}
+
+			for (int i = 0; i < numGames; i++) {
+				double sample = rewards[i];
+				if (done[i])
+					finished++;
+				else
+					sample += discount * q.maxQValue(nextStates[i], batch.getPossibleMoves(i));
+
+				q.setQValue(states[i], actions[i], (1 - alpha) * q.getQValue(states[i], actions[i]) + alpha * sample);
+				states[i] = done[i] ? BitBoard.code(0, 0, true) : nextStates[i];
+			}
+		}
 
-					// Calculating the running average
-					double RunningAvg = (1 - alpha) * qTable.getQValue(outcome.s, outcome.move) + alpha * sample;
+		q.copyTo(qTable);
+		setPolicy(extractPolicy());
+	}
+
+	/**
+	 * Experience replay version of {@link #train}. Plays {@code this.numEpisodes}
+	 * epsilon-greedy episodes with the environment, storing every transition in
+	 * {@code replay}. After every move a minibatch of {@code batchSize} stored
+	 * transitions is sampled from the buffer (uniformly or prioritised, depending
+	 * on the buffer) and used for Q-Learning updates on an {@link ArrayQTable},
+	 * so every transition can be learned from many times. Updates are scaled by
+	 * the transitions' importance-sampling weights (see
+	 * {@link ReplayBuffer#weights}), to undo the bias of prioritised sampling. The q-values are then
+	 * copied back into {@link #qTable} and the policy is extracted from it as
+	 * usual.
+	 * 
+	 * @param replay    the replay buffer to store transitions in
+	 * @param batchSize the number of transitions replayed after every move
+	 */
+	public void trainWithReplay(ReplayBuffer replay, int batchSize) {
+		ArrayQTable q = new ArrayQTable();
+		q.copyFrom(qTable);
+		int[] batch = new int[batchSize];
+		double[] weights = new double[batchSize];
+		StepResult step = new StepResult();
 
-					// Updating the Q-value in the Q-table
-					qTable.addQValue(outcome.s, outcome.move, RunningAvg);
+		for (int episode = 0; episode < numEpisodes; episode++) {
+			env.reset();
+			Game game = env.getCurrentGameState();
 
-					// Updating the current game state
-					currentGame = outcome.sPrime;
+			while (!env.isTerminal()) {
+				int state = game.hashCode();
+				int cell = selectCell(q, game, state, random);
+				try {
+					env.step(cell, step);
+					replay.add(state, cell, step.reward, step.nextState, step.done);
 				} catch (IllegalMoveException e) {
+					System.out.print("Illegal Move!!!!!!!!");
+				}
+
+				replay.sample(random, batch);
+				replay.weights(batch, weights);
+				for (int j = 0; j < batchSize; j++) {
+					int i = batch[j];
+					int s = replay.getState(i);
+					int a = replay.getAction(i);
+					double sample = replay.getReward(i);
+					if (!replay.isDone(i))
+						sample += discount * q.maxQValue(replay.getNextState(i), BitBoard.empty(replay.getNextState(i)));
+
+					double tdError = sample - q.getQValue(s, a);
+					q.setQValue(s, a, q.getQValue(s, a) + alpha * weights[j] * tdError);
+					replay.updatePriority(i, tdError);
+				}
+			}
+		}
 
-					// Printing the Exception message
+		q.copyTo(qTable);
+		setPolicy(extractPolicy());
+	}
+
+	/**
+	 * Watkins's Q(lambda) version of {@link #train}. Plays
+	 * {@code this.numEpisodes} epsilon-greedy episodes, and after every move
+	 * updates not only the q-state just left but every q-state visited earlier in
+	 * the episode, weighted by its eligibility trace, so the reward at the end of
+	 * a game reaches back to the first move in a single episode. Traces decay by
+	 * {@code discount*lambda} per move and are cut after an exploratory move, so
+	 * the agent still learns the values of the greedy policy.
+	 * 
+	 * X moves at most 5 times per game and never visits a state twice, so the
+	 * traces are a short list of (q-state, trace) pairs in two fixed-size arrays,
+	 * reused across episodes. The q-values are learned on an {@link ArrayQTable},
+	 * then copied back into {@link #qTable} and the policy is extracted from it as
+	 * usual.
+	 * 
+	 * @param lambda the trace decay, between 0 (one-step Q-Learning) and 1
+	 */
+	public void trainLambda(double lambda) {
+		ArrayQTable q = new ArrayQTable();
+		q.copyFrom(qTable);
+
+		// the q-table index and trace of each q-state visited since the traces were
+		// last cut
+		int[] traceIndex = new int[ArrayQTable.NUM_MOVES];
+		double[] trace = new double[ArrayQTable.NUM_MOVES];
+		StepResult step = new StepResult();
+
+		for (int episode = 0; episode < numEpisodes; episode++) {
+			env.reset();
+			Game game = env.getCurrentGameState();
+			int traces = 0;
+
+			while (!env.isTerminal()) {
+				int state = game.hashCode();
+				int greedy = q.bestCell(state, BitBoard.empty(game));
+				int cell = selectCell(q, game, state, random);
+
+				// an exploratory move doesn't follow the greedy policy, so earlier
+				// moves get no credit for what happens after it
+				if (q.getQValue(state, cell) < q.getQValue(state, greedy))
+					traces = 0;
+
+				try {
+					env.step(cell, step);
+					double sample = step.reward;
+					if (!step.done)
+						sample += discount * q.maxQValue(step.nextState, BitBoard.empty(game));
+					double tdError = sample - q.getQValue(state, cell);
+
+					traceIndex[traces] = state * ArrayQTable.NUM_MOVES + cell;
+					trace[traces] = 1.0;
+					traces++;
+
+					for (int i = 0; i < traces; i++) {
+						q.values[traceIndex[i]] += alpha * tdError * trace[i];
+						trace[i] *= discount * lambda;
+					}
+				} catch (IllegalMoveException e) {
 					System.out.print("Illegal Move!!!!!!!!");
 				}
 			}
 		}
-		// --------------------------------------------------------
-		// you shouldn't need to delete the following lines of code.
-		this.policy = extractPolicy();
-		if (this.policy == null) {
-			System.out.println("Unimplemented methods! First implement the train() & extractPolicy methods");
-			// System.exit(1);
+
+		q.copyTo(qTable);
+		setPolicy(extractPolicy());
+	}
+
+	/**
+	 * Dyna-Q version of {@link #train}. Plays {@code this.numEpisodes}
+	 * epsilon-greedy episodes, doing the usual Q-Learning update after every real
+	 * move, and also records the move's outcome in a tabular model of the
+	 * environment ({@link DynaModel}). It then does {@code planningSteps}
+	 * simulated updates using the model alone, so each real game - the expensive
+	 * part, since the opponent has to be consulted - is learned from many times.
+	 * 
+	 * The opponent is random, so a q-state can lead to several next states; a
+	 * planning update therefore sets the q-value to its expected backup over all
+	 * the outcomes observed, weighted by how often each was seen. Without
+	 * prioritised sweeping the q-states updated are picked uniformly among those
+	 * tried so far. With it, they are taken from a priority queue ordered by how
+	 * much their value would change, and updating a q-state queues the q-states
+	 * leading to its state, so value changes spread backwards from the end of the
+	 * game.
+	 * 
+	 * The q-values are learned on an {@link ArrayQTable}, then copied back into
+	 * {@link #qTable} and the policy is extracted from it as usual.
+	 * 
+	 * @param planningSteps the number of simulated updates after every real move
+	 * @param prioritised   whether to use prioritised sweeping
+	 */
+	public void trainDyna(int planningSteps, boolean prioritised) {
+		ArrayQTable q = new ArrayQTable();
+		q.copyFrom(qTable);
+		if (model == null)
+			model = new DynaModel();
+		StepResult step = new StepResult();
+
+		for (int episode = 0; episode < numEpisodes; episode++) {
+			env.reset();
+			Game game = env.getCurrentGameState();
+			int state = game.hashCode();
+
+			while (!env.isTerminal()) {
+				int cell = selectCell(q, game, state, random);
+				try {
+					env.step(cell, step);
+				} catch (IllegalMoveException e) {
+					System.out.print("Illegal Move!!!!!!!!");
+					break;
+				}
+
+				double sample = step.reward;
+				if (!step.done)
+					sample += discount * q.maxQValue(step.nextState, BitBoard.empty(game));
+				q.setQValue(state, cell, (1 - alpha) * q.getQValue(state, cell) + alpha * sample);
+
+				int qState = model.record(state, cell, step.reward, step.nextState, step.done);
+				if (prioritised)
+					sweep(q, qState, planningSteps);
+				else
+					for (int i = 0; i < planningSteps; i++) {
+						int s = model.sample(random);
+						q.values[s] = model.target(q, s, discount);
+					}
+
+				state = step.nextState;
+			}
 		}
 
+		q.copyTo(qTable);
+		setPolicy(extractPolicy());
+	}
+
+	/**
+	 * Prioritised sweeping: queues {@code qState} if its value is far enough from
+	 * its expected backup, then does up to {@code steps} expected backups of the
+	 * queued q-states, highest priority first, queueing the predecessors of every
+	 * state whose q-values change.
+	 */
+	void sweep(ArrayQTable q, int qState, int steps) {
+		double p = Math.abs(model.target(q, qState, discount) - q.values[qState]);
+		if (p > sweepThreshold)
+			model.push(qState, p);
+
+		for (int i = 0; i < steps; i++) {
+			int s = model.pop();
+			if (s < 0)
+				break;
+
+			q.values[s] = model.target(q, s, discount);
+			int state = s / ArrayQTable.NUM_MOVES;
+			for (int o = model.firstPredecessor[state]; o >= 0; o = model.nextPredecessor[o]) {
+				int pred = model.qStates[o];
+				p = Math.abs(model.target(q, pred, discount) - q.values[pred]);
+				if (p > sweepThreshold)
+					model.push(pred, p);
+			}
+		}
 	}
 
 	/**
@@ -258,6 +1019,73 @@ public class QLearningAgent extends Agent {
 	}
 
 
+	public void setTrainingListener(TrainingListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets the log that the moves played in training are appended to, or null
+	 * to stop logging. The log isn't flushed or closed by the agent.
+	 */
+	public void setTransitionLog(TransitionLog transitionLog) {
+		this.transitionLog = transitionLog;
+	}
+
+	/**
+	 * Sets when {@link #train} stops early, see {@link #train}.
+	 * 
+	 * @param checkInterval    the number of episodes between two convergence
+	 *                         checks, or 0 to always play all the episodes
+	 * @param maxPolicyChanges the largest number of states reachable by the
+	 *                         greedy policy whose greedy move may change between
+	 *                         two checks that show convergence
+	 * @param convergenceDelta the largest change of a q-value between two checks
+	 *                         that show convergence
+	 * @param patience         the number of checks in a row that must show
+	 *                         convergence
+	 */
+	public void setEarlyStopping(int checkInterval, int maxPolicyChanges, double convergenceDelta, int patience) {
+		if (checkInterval < 0 || maxPolicyChanges < 0 || convergenceDelta < 0 || patience < 1)
+			throw new IllegalArgumentException("Invalid early stopping parameters");
+
+		this.checkInterval = checkInterval;
+		this.maxPolicyChanges = maxPolicyChanges;
+		this.convergenceDelta = convergenceDelta;
+		this.patience = patience;
+	}
+
+	/**
+	 * Makes {@link #train} save a checkpoint to {@code file} every
+	 * {@code interval} episodes, or stop saving checkpoints if {@code file} is
+	 * null. See {@link #QLearningAgent(Agent, double, int, double, File)} to
+	 * resume from one.
+	 */
+	public void setCheckpoints(File file, int interval) {
+		if (interval < 1)
+			throw new IllegalArgumentException("The checkpoint interval should be positive");
+
+		this.checkpointFile = file;
+		this.checkpointInterval = interval;
+	}
+
+	/**
+	 * 
+	 * @return the number of episodes played by the last call to {@link #train},
+	 *         which can be less than {@link #numEpisodes} if it stopped early.
+	 */
+	public int getEpisodesTrained() {
+		return episodesTrained;
+	}
+
+	/**
+	 *
+	 * @return the q-table learnt so far. This is the agent's own table, not a
+	 *         copy.
+	 */
+	public QTable getQTable() {
+		return qTable;
+	}
+
 	public static void main(String a[]) throws IllegalMoveException {
 		// Test method to play your agent against a human agent (yourself).
 		QLearningAgent agent = new QLearningAgent();
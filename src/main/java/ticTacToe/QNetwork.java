@@ -0,0 +1,292 @@
+package ticTacToe;
+
+import java.util.SplittableRandom;
+
+/**
+ * A small multilayer perceptron, in plain Java, mapping a board to one q-value per cell. It is used by
+ * {@link NeuralQAgent} as an alternative to tabular q-values: its memory depends on the layer sizes only, not on the
+ * number of states.
+ *
+ * The hidden layers use ReLU and the output layer is linear. The weights of each layer are one flat row-major
+ * {@code float[]} (inputs by outputs), and the network works on a batch of rows at a time: the forward and backward
+ * passes are matrix products over the whole batch (see {@link Matrices}), optionally split across threads by batch
+ * rows. Training is minibatch gradient descent with Adam on the squared error of the outputs, with a mask saying
+ * which outputs have a target, since only the q-values of legal - or played - moves are known.
+ *
+ * The buffers holding a batch's activations and gradients are allocated for the largest batch seen so far and reused.
+ *
+ * @author ae187
+ *
+ */
+public class QNetwork {
+
+	/**
+	 * The number of inputs: 9 cells for the player to move, then 9 for the other player.
+	 */
+	public static final int NUM_INPUTS = 18;
+
+	/**
+	 * The number of outputs, one q-value per cell.
+	 */
+	public static final int NUM_OUTPUTS = 9;
+
+	/**
+	 * the number of units in each layer, inputs first
+	 */
+	final int[] sizes;
+
+	/**
+	 * the weights of each layer, {@code sizes[l]} by {@code sizes[l+1]}, and its biases
+	 */
+	final float[][] weights;
+	final float[][] biases;
+
+	/**
+	 * Adam's running averages of the gradient and of its square, for each weight and bias
+	 */
+	final float[][] weightMean;
+	final float[][] weightSquare;
+	final float[][] biasMean;
+	final float[][] biasSquare;
+
+	float learningRate = 0.001f;
+	float beta1 = 0.9f;
+	float beta2 = 0.999f;
+
+	/**
+	 * the number of steps taken, for Adam's bias correction
+	 */
+	int steps = 0;
+
+	/**
+	 * whether to split batches across threads
+	 */
+	boolean parallel;
+
+	/**
+	 * the number of rows the buffers below have room for
+	 */
+	int capacity = 0;
+
+	/**
+	 * the activations of each layer for the current batch, {@code activations[0]} being the inputs; the error
+	 * gradients with respect to each layer's outputs; and the gradients of the weights
+	 */
+	float[][] activations;
+	float[][] deltas;
+	final float[][] weightGradients;
+	final float[][] biasGradients;
+
+	/**
+	 * A network with one hidden layer of {@code hidden} units, single threaded.
+	 */
+	public QNetwork(int hidden, SplittableRandom r) {
+		this(new int[] { NUM_INPUTS, hidden, NUM_OUTPUTS }, false, r);
+	}
+
+	/**
+	 *
+	 * @param sizes    the number of units in each layer, from {@link #NUM_INPUTS} to {@link #NUM_OUTPUTS}
+	 * @param parallel whether to split batches across threads
+	 * @param r        used for the initial weights
+	 */
+	public QNetwork(int[] sizes, boolean parallel, SplittableRandom r) {
+		if (sizes.length < 2 || sizes[0] != NUM_INPUTS || sizes[sizes.length - 1] != NUM_OUTPUTS)
+			throw new IllegalArgumentException("Layers should go from " + NUM_INPUTS + " inputs to " + NUM_OUTPUTS
+					+ " outputs");
+
+		this.sizes = sizes.clone();
+		this.parallel = parallel;
+		int layers = sizes.length - 1;
+		weights = new float[layers][];
+		biases = new float[layers][];
+		weightMean = new float[layers][];
+		weightSquare = new float[layers][];
+		biasMean = new float[layers][];
+		biasSquare = new float[layers][];
+		weightGradients = new float[layers][];
+		biasGradients = new float[layers][];
+		for (int l = 0; l < layers; l++) {
+			weights[l] = new float[sizes[l] * sizes[l + 1]];
+			biases[l] = new float[sizes[l + 1]];
+			weightMean[l] = new float[weights[l].length];
+			weightSquare[l] = new float[weights[l].length];
+			biasMean[l] = new float[biases[l].length];
+			biasSquare[l] = new float[biases[l].length];
+			weightGradients[l] = new float[weights[l].length];
+			biasGradients[l] = new float[biases[l].length];
+
+			// He initialisation, for ReLU units
+			double limit = Math.sqrt(6.0 / sizes[l]);
+			for (int i = 0; i < weights[l].length; i++)
+				weights[l][i] = (float) ((2 * r.nextDouble() - 1) * limit);
+		}
+	}
+
+	/**
+	 * Writes the inputs for a board into {@code row}, from {@code offset}.
+	 *
+	 * @param mover the cells of the player to move
+	 * @param other the cells of the other player
+	 */
+	public static void encode(int mover, int other, float[] row, int offset) {
+		for (int cell = 0; cell < 9; cell++) {
+			row[offset + cell] = (mover >>> cell) & 1;
+			row[offset + 9 + cell] = (other >>> cell) & 1;
+		}
+	}
+
+	void ensureCapacity(int batch) {
+		if (batch <= capacity)
+			return;
+
+		activations = new float[sizes.length][];
+		deltas = new float[sizes.length][];
+		for (int l = 1; l < sizes.length; l++) {
+			activations[l] = new float[batch * sizes[l]];
+			deltas[l] = new float[batch * sizes[l]];
+		}
+		capacity = batch;
+	}
+
+	/**
+	 * Computes the outputs for a batch of inputs.
+	 *
+	 * @param inputs {@code batch} rows of {@link #NUM_INPUTS} inputs
+	 * @param batch  the number of rows
+	 * @return {@code batch} rows of {@link #NUM_OUTPUTS} q-values. This is a buffer of the network, overwritten by the
+	 *         next call, and may be longer than needed.
+	 */
+	public float[] forward(float[] inputs, final int batch) {
+		ensureCapacity(batch);
+		activations[0] = inputs;
+		for (int l = 0; l < sizes.length - 1; l++) {
+			final float[] in = activations[l];
+			final float[] out = activations[l + 1];
+			final float[] w = weights[l];
+			final float[] b = biases[l];
+			final int k = sizes[l];
+			final int n = sizes[l + 1];
+			final boolean relu = l < sizes.length - 2;
+			Matrices.forRows(parallel, batch, new Matrices.RowTask() {
+				@Override
+				public void run(int from, int to) {
+					Matrices.multiply(in, w, out, k, n, from, to);
+					for (int i = from; i < to; i++) {
+						for (int j = 0; j < n; j++) {
+							float z = out[i * n + j] + b[j];
+							out[i * n + j] = relu && z < 0f ? 0f : z;
+						}
+					}
+				}
+			});
+		}
+
+		return activations[sizes.length - 1];
+	}
+
+	/**
+	 * Does one step of gradient descent on a batch, towards {@code targets} for the outputs where {@code mask} is 1.
+	 *
+	 * @param inputs  {@code batch} rows of {@link #NUM_INPUTS} inputs
+	 * @param targets {@code batch} rows of {@link #NUM_OUTPUTS} targets
+	 * @param mask    {@code batch} rows of {@link #NUM_OUTPUTS} weights, 1 for the outputs to learn and 0 for the
+	 *                others
+	 * @param batch   the number of rows
+	 * @return the mean squared error of the masked outputs before the step
+	 */
+	public double train(float[] inputs, float[] targets, float[] mask, final int batch) {
+		float[] outputs = forward(inputs, batch);
+		int last = sizes.length - 1;
+		float[] delta = deltas[last];
+		double loss = 0.0;
+		int count = 0;
+		for (int i = 0; i < batch * NUM_OUTPUTS; i++) {
+			float error = mask[i] * (outputs[i] - targets[i]);
+			loss += error * error;
+			count += mask[i] != 0f ? 1 : 0;
+			delta[i] = error / batch;
+		}
+
+		for (int l = last - 1; l >= 0; l--) {
+			final float[] in = activations[l];
+			final float[] d = deltas[l + 1];
+			final float[] gw = weightGradients[l];
+			final float[] gb = biasGradients[l];
+			final int k = sizes[l];
+			final int n = sizes[l + 1];
+
+			// the weights' gradients, split by rows of the weight matrix
+			Matrices.forRows(parallel, k, new Matrices.RowTask() {
+				@Override
+				public void run(int from, int to) {
+					Matrices.multiplyTransposedA(in, d, gw, batch, k, n, from, to);
+				}
+			});
+			for (int j = 0; j < n; j++)
+				gb[j] = 0f;
+			for (int i = 0; i < batch; i++)
+				for (int j = 0; j < n; j++)
+					gb[j] += d[i * n + j];
+
+			// the gradients of the previous layer's outputs, through its ReLUs
+			if (l > 0) {
+				final float[] w = weights[l];
+				final float[] prev = deltas[l];
+				Matrices.forRows(parallel, batch, new Matrices.RowTask() {
+					@Override
+					public void run(int from, int to) {
+						Matrices.multiplyTransposedB(d, w, prev, n, k, from, to);
+						for (int i = from * k; i < to * k; i++)
+							if (in[i] <= 0f)
+								prev[i] = 0f;
+					}
+				});
+			}
+		}
+
+		steps++;
+		float rate = (float) (learningRate * Math.sqrt(1 - Math.pow(beta2, steps)) / (1 - Math.pow(beta1, steps)));
+		for (int l = 0; l < last; l++) {
+			step(weights[l], weightMean[l], weightSquare[l], weightGradients[l], rate);
+			step(biases[l], biasMean[l], biasSquare[l], biasGradients[l], rate);
+		}
+
+		return count == 0 ? 0.0 : loss / count;
+	}
+
+	/**
+	 * An Adam step, with the bias corrections folded into {@code rate}
+	 */
+	private void step(float[] params, float[] mean, float[] square, float[] gradients, float rate) {
+		for (int i = 0; i < params.length; i++) {
+			float g = gradients[i];
+			mean[i] = beta1 * mean[i] + (1 - beta1) * g;
+			square[i] = beta2 * square[i] + (1 - beta2) * g * g;
+			params[i] -= rate * mean[i] / ((float) Math.sqrt(square[i]) + 1e-8f);
+		}
+	}
+
+	/**
+	 * Copies the weights and biases of {@code other}, which must have the same layer sizes.
+	 */
+	public void copyFrom(QNetwork other) {
+		for (int l = 0; l < weights.length; l++) {
+			System.arraycopy(other.weights[l], 0, weights[l], 0, weights[l].length);
+			System.arraycopy(other.biases[l], 0, biases[l], 0, biases[l].length);
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of weights and biases
+	 */
+	public int numParameters() {
+		int n = 0;
+		for (int l = 0; l < weights.length; l++)
+			n += weights[l].length + biases[l].length;
+
+		return n;
+	}
+
+}
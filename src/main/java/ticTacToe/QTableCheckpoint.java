@@ -0,0 +1,150 @@
+package ticTacToe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A snapshot of {@link QLearningAgent#train} at the end of an episode: the q-values, the number of episodes played,
+ * and the seeds that the random streams of the agent and of its opponent were restarted from at that point, so that
+ * training resumed from the snapshot plays exactly the episodes the original run would have played.
+ *
+ * The file is compact and binary, big endian: a magic number, a format version, the episode, the checkpoint interval,
+ * the two seeds, the number of non-zero q-values, then each of them as its {@link ArrayQTable} index (int) and value
+ * (double), and a CRC32 of everything before it. Only the few thousand q-states that training has touched are stored,
+ * rather than the whole table. A snapshot is written to a temporary file first and then moved over the previous one,
+ * so that a crash while writing leaves the previous snapshot intact.
+ *
+ * @author ae187
+ *
+ */
+public class QTableCheckpoint {
+
+	static final int MAGIC = 0x51434b50;
+
+	static final int VERSION = 2;
+
+	/**
+	 * The q-values
+	 */
+	final ArrayQTable q;
+
+	/**
+	 * The number of episodes played
+	 */
+	final int episode;
+
+	/**
+	 * The number of episodes between two checkpoints of the run
+	 */
+	final int interval;
+
+	/**
+	 * The seeds of the agent's and of the opponent's random streams
+	 */
+	final long seed;
+	final long opponentSeed;
+
+	QTableCheckpoint(ArrayQTable q, int episode, int interval, long seed, long opponentSeed) {
+		this.q = q;
+		this.episode = episode;
+		this.interval = interval;
+		this.seed = seed;
+		this.opponentSeed = opponentSeed;
+	}
+
+	public int getEpisode() {
+		return episode;
+	}
+
+	/**
+	 * Writes the snapshot to {@code file}, replacing it atomically if the file system allows.
+	 */
+	void write(File file) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		int count = 0;
+		for (double v : q.values)
+			if (v != 0.0)
+				count++;
+
+		CRC32 crc = new CRC32();
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new CheckedOutputStream(new FileOutputStream(tmp), crc)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(episode);
+			out.writeInt(interval);
+			out.writeLong(seed);
+			out.writeLong(opponentSeed);
+			out.writeInt(count);
+			for (int i = 0; i < q.values.length; i++) {
+				if (q.values[i] != 0.0) {
+					out.writeInt(i);
+					out.writeDouble(q.values[i]);
+				}
+			}
+			out.flush();
+			out.writeInt((int) crc.getValue());
+		} finally {
+			out.close();
+		}
+
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 *
+	 * @return the snapshot in {@code file}
+	 * @throws IOException if the file can't be read, or isn't a complete, uncorrupted snapshot
+	 */
+	public static QTableCheckpoint read(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		DataInputStream in = new DataInputStream(
+				new CheckedInputStream(new BufferedInputStream(new FileInputStream(file)), crc));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException(file + " is not a version " + VERSION + " q-table checkpoint");
+
+			int episode = in.readInt();
+			int interval = in.readInt();
+			long seed = in.readLong();
+			long opponentSeed = in.readLong();
+			int count = in.readInt();
+			ArrayQTable q = new ArrayQTable();
+			for (int n = 0; n < count; n++) {
+				int i = in.readInt();
+				if (i < 0 || i >= q.values.length)
+					throw new IOException(file + " is corrupted: q-state " + i + " is out of range");
+				q.values[i] = in.readDouble();
+			}
+
+			int expected = (int) crc.getValue();
+			if (in.readInt() != expected)
+				throw new IOException(file + " is corrupted: wrong checksum");
+
+			return new QTableCheckpoint(q, episode, interval, seed, opponentSeed);
+		} catch (EOFException e) {
+			throw new IOException(file + " is truncated", e);
+		} finally {
+			in.close();
+		}
+	}
+
+}
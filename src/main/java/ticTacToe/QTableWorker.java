@@ -0,0 +1,77 @@
+package ticTacToe;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The worker process of {@link QLearningAgent#trainProcesses}: plays episodes of Q-Learning against its own opponent,
+ * updating the q-values of a {@link MappedQTable} shared with the other workers, and publishes its progress in its slot
+ * of the table's header. It is started by the coordinating process with the arguments built by {@link #arguments}, and
+ * exits with status 0 once it has played all its episodes.
+ *
+ * @author ae187
+ *
+ */
+public final class QTableWorker {
+
+	/**
+	 * The number of episodes between two progress reports
+	 */
+	static final int REPORT_INTERVAL = 1000;
+
+	private QTableWorker() {
+	}
+
+	/**
+	 *
+	 * @return the command line arguments for a worker training {@code agent}'s opponent and parameters into
+	 *         {@code file}
+	 */
+	static String[] arguments(QLearningAgent agent, File file, int worker, int episodes, long seed) {
+		TTTEnvironment env = agent.env;
+		return new String[] { file.getPath(), String.valueOf(worker), String.valueOf(episodes), String.valueOf(seed),
+				String.valueOf(agent.alpha), String.valueOf(agent.discount), String.valueOf(agent.epsilon),
+				env.game.o.getClass().getName(), String.valueOf(env.winReward), String.valueOf(env.loseReward),
+				String.valueOf(env.livingReward), String.valueOf(env.drawReward) };
+	}
+
+	/**
+	 * The arguments are, in order: the table file, the worker's number, the number of episodes to play, the seed of
+	 * its {@link RandomStreams}, alpha, the discount, epsilon, the class of the opponent (which must have a public
+	 * constructor without arguments), and the win, lose, living and draw rewards.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 12)
+			throw new IllegalArgumentException("Expected 12 arguments, got " + args.length);
+
+		int worker = Integer.parseInt(args[1]);
+		int episodes = Integer.parseInt(args[2]);
+		RandomStreams.setSeed(Long.parseLong(args[3]));
+		Agent opponent;
+		try {
+			opponent = (Agent) Class.forName(args[7]).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Cannot create an opponent of class " + args[7], e);
+		}
+
+		QLearningAgent agent = new QLearningAgent(opponent, Double.parseDouble(args[4]), episodes,
+				Double.parseDouble(args[5]), false);
+		agent.epsilon = Double.parseDouble(args[6]);
+		agent.env = new TTTEnvironment(opponent, Double.parseDouble(args[8]), Double.parseDouble(args[9]),
+				Double.parseDouble(args[10]), Double.parseDouble(args[11]));
+
+		MappedQTable table = new MappedQTable(new File(args[0]));
+		try {
+			long start = System.nanoTime();
+			for (int played = 0; played < episodes;) {
+				int block = Math.min(REPORT_INTERVAL, episodes - played);
+				agent.playEpisodes(table, agent.env, agent.random, block);
+				played += block;
+				table.setProgress(worker, played, System.nanoTime() - start);
+			}
+		} finally {
+			table.close();
+		}
+	}
+
+}
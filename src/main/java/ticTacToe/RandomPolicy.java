@@ -1,9 +1,7 @@
 package ticTacToe;
 
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * This is a Policy which picks an move randomly with equal probability from the available moves. 
@@ -12,25 +10,38 @@ import java.util.Random;
  */
 public class RandomPolicy extends Policy{
 
-	Random r = new Random();
+	SplittableRandom r;
+	
+	/**
+	 * A random policy using its own stream from {@link RandomStreams}
+	 */
+	public RandomPolicy()
+	{
+		this(RandomStreams.newStream());
+	}
+	
+	public RandomPolicy(SplittableRandom r)
+	{
+		this.r=r;
+	}
 	
 	@Override
 	public Move getMove(Game g) {
 		
+		int cell=getCell(g);
 		
-		List<IndexPair> pairs=new ArrayList<IndexPair>();
-		
-		for(int i=0;i<3;i++)
-			for(int j=0;j<3;j++)
-			{
-				if (g.getBoard()[i][j]==' ')
-					pairs.add(new IndexPair(i,j));
-					
-			}
-		
-		IndexPair random=pairs.get(r.nextInt(pairs.size()));
-		
-		return new Move(g.whoseTurn, random.x, random.y);
+		return new Move(g.whoseTurn, cell/3, cell%3);
+	}
+	
+	/**
+	 * Picks an empty cell of {@code g} randomly with equal probability, without allocating anything. Used by
+	 * {@link TTTEnvironment#step}.
+	 * @param g
+	 * @return the cell {@code 3*x+y} of the move
+	 */
+	int getCell(Game g) {
+		int empty=BitBoard.empty(g);
+		return BitBoard.nthCell(empty, r.nextInt(Integer.bitCount(empty)));
 	}
 	
 	
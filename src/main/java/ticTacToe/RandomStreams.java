@@ -0,0 +1,72 @@
+package ticTacToe;
+
+import java.util.SplittableRandom;
+
+/**
+ * A seeded source of independent random number streams, built on {@link SplittableRandom}. Every agent, policy,
+ * environment and training thread that needs random numbers should get its own stream from here (or split one off the
+ * stream of its owner), rather than creating its own {@link java.util.Random}. Streams are not thread-safe, so each
+ * should be used by one thread only; in exchange they need no synchronisation at all.
+ *
+ * All streams handed out by one {@code RandomStreams} follow from its seed and the order in which they were split
+ * off, so running the same code with the same seed gives the same games, bit for bit. The process-wide instance used
+ * by default is seeded from the {@code ttt.seed} system property (e.g. {@code -Dttt.seed=42}), or randomly if it is
+ * not set, and can be re-seeded with {@link #setSeed(long)}.
+ *
+ * Note that {@link QLearningAgent#trainParallel(int)} gives each worker thread a reproducible stream, but the order
+ * in which the workers' updates to the shared q-table interleave still depends on thread scheduling.
+ *
+ * @author ae187
+ *
+ */
+public class RandomStreams {
+
+	private static RandomStreams global = new RandomStreams(
+			Long.getLong("ttt.seed", new SplittableRandom().nextLong()));
+
+	private final long seed;
+	private final SplittableRandom root;
+
+	public RandomStreams(long seed) {
+		this.seed = seed;
+		this.root = new SplittableRandom(seed);
+	}
+
+	/**
+	 *
+	 * @return a new stream, independent of all the streams handed out before it.
+	 */
+	public synchronized SplittableRandom split() {
+		return root.split();
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 *
+	 * @return the process-wide instance
+	 */
+	public static synchronized RandomStreams global() {
+		return global;
+	}
+
+	/**
+	 * Re-seeds the process-wide instance. Only streams handed out after this call are affected.
+	 *
+	 * @param seed
+	 */
+	public static synchronized void setSeed(long seed) {
+		global = new RandomStreams(seed);
+	}
+
+	/**
+	 *
+	 * @return a new stream from the process-wide instance
+	 */
+	public static SplittableRandom newStream() {
+		return global().split();
+	}
+
+}
@@ -0,0 +1,231 @@
+package ticTacToe;
+
+import java.util.SplittableRandom;
+
+/**
+ * A fixed-capacity experience replay buffer of (s,a,r,s',done) transitions, for use by {@link QLearningAgent}. States
+ * are stored as {@link Game#hashCode} values and actions as cells ({@code 3*x+y}), all in primitive arrays allocated
+ * once up front, so adding a transition never allocates. When the buffer is full the oldest transition is overwritten.
+ *
+ * Transitions can be sampled uniformly, or - if the buffer is prioritised - with probability proportional to their
+ * priority (proportional prioritised replay). Priorities are kept in a sum tree, so both sampling and updating a
+ * priority take O(log(capacity)) time. New transitions get the highest priority seen so far, so that each one is
+ * likely to be replayed at least once.
+ *
+ * Prioritised sampling replays some transitions more often than they occur, which biases the updates towards them. To
+ * correct for this, each sampled transition has an importance-sampling weight, see {@link #weights}, by which its
+ * update should be scaled.
+ *
+ * @author ae187
+ *
+ */
+public class ReplayBuffer {
+
+	final int[] states;
+	final int[] actions;
+	final double[] rewards;
+	final int[] nextStates;
+	final boolean[] done;
+
+	final boolean prioritised;
+
+	/**
+	 * How strongly priorities affect sampling: 0 is uniform, 1 fully proportional to the TD error.
+	 */
+	double priorityExponent = 0.6;
+
+	/**
+	 * How much of the bias of prioritised sampling the weights correct: 0 is none, 1 all of it.
+	 */
+	double importanceExponent = 0.4;
+
+	/**
+	 * Added to every TD error so that no transition has zero probability of being sampled
+	 */
+	double minPriority = 0.01;
+
+	/**
+	 * The sum tree over priorities: leaves are at {@code [leaves, 2*leaves)} and node {@code i} holds the sum of its
+	 * children {@code 2i} and {@code 2i+1}.
+	 */
+	final double[] tree;
+	final int leaves;
+	double maxPriority = 1.0;
+
+	/**
+	 * where the next transition will be written
+	 */
+	int next = 0;
+	int size = 0;
+
+	/**
+	 *
+	 * @param capacity    the maximum number of transitions held
+	 * @param prioritised whether {@link #sample} should use prioritised rather than uniform sampling
+	 */
+	public ReplayBuffer(int capacity, boolean prioritised) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity should be positive");
+
+		states = new int[capacity];
+		actions = new int[capacity];
+		rewards = new double[capacity];
+		nextStates = new int[capacity];
+		done = new boolean[capacity];
+
+		this.prioritised = prioritised;
+		int l = 1;
+		while (l < capacity)
+			l <<= 1;
+		leaves = l;
+		tree = prioritised ? new double[2 * leaves] : null;
+	}
+
+	/**
+	 * Adds a transition, overwriting the oldest one if the buffer is full.
+	 *
+	 * @param state     the {@link Game#hashCode} of the source state
+	 * @param action    the cell of the move
+	 * @param reward    the reward received
+	 * @param nextState the {@link Game#hashCode} of the target state
+	 * @param isDone    whether the target state is terminal
+	 */
+	public void add(int state, int action, double reward, int nextState, boolean isDone) {
+		states[next] = state;
+		actions[next] = action;
+		rewards[next] = reward;
+		nextStates[next] = nextState;
+		done[next] = isDone;
+
+		if (prioritised)
+			setPriority(next, maxPriority);
+
+		next = (next + 1) % states.length;
+		if (size < states.length)
+			size++;
+	}
+
+	/**
+	 * Fills {@code indices} with the indices of transitions sampled uniformly, with replacement.
+	 */
+	public void sampleUniform(SplittableRandom r, int[] indices) {
+		for (int i = 0; i < indices.length; i++)
+			indices[i] = r.nextInt(size);
+	}
+
+	/**
+	 * Fills {@code indices} with the indices of transitions sampled, with replacement, with probability proportional to
+	 * their priority.
+	 */
+	public void samplePrioritised(SplittableRandom r, int[] indices) {
+		if (!prioritised)
+			throw new IllegalStateException("This replay buffer doesn't keep priorities");
+
+		for (int i = 0; i < indices.length; i++) {
+			double target = r.nextDouble() * tree[1];
+			int node = 1;
+			while (node < leaves) {
+				node *= 2;
+				if (target >= tree[node]) {
+					target -= tree[node];
+					node++;
+				}
+			}
+			// guard against rounding errors landing on an empty leaf
+			indices[i] = Math.min(node - leaves, size - 1);
+		}
+	}
+
+	/**
+	 * Samples prioritised if this is a prioritised buffer, uniformly otherwise.
+	 */
+	public void sample(SplittableRandom r, int[] indices) {
+		if (prioritised)
+			samplePrioritised(r, indices);
+		else
+			sampleUniform(r, indices);
+	}
+
+	/**
+	 * Fills {@code weights} with the importance-sampling weights of the transitions {@code indices}: {@code (size *
+	 * P(i))^-importanceExponent}, where {@code P(i)} is the probability of sampling transition {@code i}, divided by
+	 * the largest weight of the batch so that updates are only ever scaled down. All weights are 1 if the buffer is not
+	 * prioritised.
+	 */
+	public void weights(int[] indices, double[] weights) {
+		if (!prioritised) {
+			for (int i = 0; i < indices.length; i++)
+				weights[i] = 1.0;
+			return;
+		}
+
+		double max = 0;
+		for (int i = 0; i < indices.length; i++) {
+			weights[i] = Math.pow(size * tree[indices[i] + leaves] / tree[1], -importanceExponent);
+			max = Math.max(max, weights[i]);
+		}
+		for (int i = 0; i < indices.length; i++)
+			weights[i] /= max;
+	}
+
+	/**
+	 *
+	 * @return the priority of transition {@code index}, or 1 if the buffer is not prioritised
+	 */
+	public double getPriority(int index) {
+		return prioritised ? tree[index + leaves] : 1.0;
+	}
+
+	/**
+	 * Sets the priority of transition {@code index} from its latest TD error. Ignored if the buffer is not
+	 * prioritised.
+	 */
+	public void updatePriority(int index, double tdError) {
+		if (!prioritised)
+			return;
+
+		double p = Math.pow(Math.abs(tdError) + minPriority, priorityExponent);
+		maxPriority = Math.max(maxPriority, p);
+		setPriority(index, p);
+	}
+
+	private void setPriority(int index, double p) {
+		int node = index + leaves;
+		tree[node] = p;
+		for (node /= 2; node >= 1; node /= 2)
+			tree[node] = tree[2 * node] + tree[2 * node + 1];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return states.length;
+	}
+
+	public boolean isPrioritised() {
+		return prioritised;
+	}
+
+	public int getState(int index) {
+		return states[index];
+	}
+
+	public int getAction(int index) {
+		return actions[index];
+	}
+
+	public double getReward(int index) {
+		return rewards[index];
+	}
+
+	public int getNextState(int index) {
+		return nextStates[index];
+	}
+
+	public boolean isDone(int index) {
+		return done[index];
+	}
+
+}
@@ -0,0 +1,165 @@
+package ticTacToe;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A Q-Learning agent that learns by playing against a lagged copy of itself in a {@link SelfPlayEnvironment}, instead
+ * of against a fixed opponent like {@link QLearningAgent}. It alternates between playing X and O, and learns a single
+ * side-agnostic q-table over states seen from the mover's point of view, so one training run gives a policy for both
+ * sides: the agent can be used as either the X or the O agent of a {@link Game}.
+ *
+ * The q-value updates use negamax-style targets: the value of a move that doesn't end the game is minus the
+ * (discounted) value of the opponent's best move in the resulting state, read from the same table. Every
+ * {@link #lag} episodes the opponent's snapshot of the table is refreshed, so the learner always faces a slightly
+ * weaker version of itself that gets stronger as training goes on.
+ *
+ * @author ae187
+ *
+ */
+public class SelfPlayAgent extends Agent {
+
+	/**
+	 * The learning rate, between 0 and 1.
+	 */
+	double alpha = 0.1;
+
+	/**
+	 * The number of episodes to train for
+	 */
+	int numEpisodes = 500000;
+
+	/**
+	 * The discount factor (gamma)
+	 */
+	double discount = 0.9;
+
+	/**
+	 * The epsilon in the epsilon greedy policy used during training, by both the
+	 * learner and the lagged copy. Two greedy players keep playing the same few
+	 * games, so this is much higher than in {@link QLearningAgent}: without plenty
+	 * of exploration the states that weaker opponents lead to are never learned.
+	 */
+	double epsilon = 0.5;
+
+	/**
+	 * The number of episodes between two refreshes of the opponent's copy of the q-table
+	 */
+	int lag = 1000;
+
+	/**
+	 * The side-agnostic q-table, over states seen from the mover's point of view.
+	 */
+	ArrayQTable qTable = new ArrayQTable();
+
+	/**
+	 * This agent's random number stream
+	 */
+	SplittableRandom random = RandomStreams.newStream();
+
+	/**
+	 * Trains with the default parameters.
+	 */
+	public SelfPlayAgent() {
+		super();
+		train();
+	}
+
+	/**
+	 *
+	 * @param learningRate the rate at which the agent learns. Alpha from your lectures.
+	 * @param numEpisodes  the number of episodes (games) to train for
+	 * @param discount     the discount factor
+	 * @param lag          the number of episodes between two refreshes of the opponent's copy of the q-table
+	 */
+	public SelfPlayAgent(double learningRate, int numEpisodes, double discount, int lag) {
+		super();
+		this.alpha = learningRate;
+		this.numEpisodes = numEpisodes;
+		this.discount = discount;
+		this.lag = lag;
+		train();
+	}
+
+	/**
+	 * Plays {@code this.numEpisodes} episodes against the lagged copy, as X and O
+	 * in turn, then extracts the policy. Every move of the game - the learner's
+	 * and the lagged copy's - updates the q-table with a negamax target: Q-Learning
+	 * is off-policy, so the opponent's moves are as good a source of experience as
+	 * the learner's own, and they cover states the learner's own greedy play would
+	 * rarely reach.
+	 */
+	public void train() {
+		SelfPlayEnvironment env = new SelfPlayEnvironment();
+		ArrayQTable opponent = new ArrayQTable();
+		StepResult step = new StepResult();
+
+		for (int episode = 0; episode < numEpisodes; episode++) {
+			if (episode % lag == 0)
+				System.arraycopy(qTable.values, 0, opponent.values, 0, qTable.values.length);
+
+			boolean learnerIsX = episode % 2 == 0;
+			env.reset();
+			while (!env.isTerminal()) {
+				int state = env.getState();
+				int moves = env.getPossibleMoves();
+				int cell;
+				if (random.nextDouble() < epsilon)
+					cell = BitBoard.nthCell(moves, random.nextInt(Integer.bitCount(moves)));
+				else if (env.isXToMove() == learnerIsX)
+					cell = qTable.bestCell(state, moves);
+				else
+					cell = opponent.bestCell(state, moves);
+
+				try {
+					env.step(cell, step);
+				} catch (IllegalMoveException e) {
+					System.out.print("Illegal Move!!!!!!!!");
+					break;
+				}
+
+				// negamax: the other player moves next, and its gain is our loss
+				double sample = step.reward;
+				if (!step.done)
+					sample -= discount * qTable.maxQValue(step.nextState, BitBoard.empty(step.nextState));
+
+				qTable.setQValue(state, cell, (1 - alpha) * qTable.getQValue(state, cell) + alpha * sample);
+			}
+		}
+
+		setPolicy(extractPolicy());
+	}
+
+	/**
+	 *
+	 * @return a policy for every non-terminal game, with either X or O to move, that plays the greedy move according
+	 *         to the q-table.
+	 */
+	public Policy extractPolicy() {
+		Policy p = new Policy();
+		for (char side : new char[] { 'X', 'O' }) {
+			List<Game> games = Game.generateAllValidGames(side);
+			for (Game g : games) {
+				if (g.isTerminal() || g.whoseTurn.getName() != side)
+					continue;
+
+				int own = BitBoard.bits(g, side);
+				int other = BitBoard.bits(g, side == 'X' ? 'O' : 'X');
+				int cell = qTable.bestCell(BitBoard.code(own, other, true), BitBoard.empty(g));
+				p.policy.put(g, new Move(g.whoseTurn, cell / 3, cell % 3));
+			}
+		}
+
+		return p;
+	}
+
+	public static void main(String a[]) throws IllegalMoveException {
+		// Test method to play the agent, as O, against a human agent.
+		SelfPlayAgent agent = new SelfPlayAgent();
+		HumanAgent d = new HumanAgent();
+		Game g = new Game(d, agent, d);
+		g.playOut();
+
+	}
+
+}
@@ -0,0 +1,107 @@
+package ticTacToe;
+
+/**
+ * A Reinforcement Learning environment for self-play, for use by {@link SelfPlayAgent}. Unlike
+ * {@link TTTEnvironment}, the opponent is not part of the environment: every {@link #step} is a single move by
+ * whichever side is to move, X or O, so one learner can play both seats.
+ *
+ * Everything is seen from the point of view of the player to move: a state is the {@link Game#hashCode} of the board
+ * with the mover's pieces written as X's and the other player's as O's, with X to move. A single side-agnostic
+ * {@link ArrayQTable} over these states therefore serves both sides.
+ *
+ * Rewards are zero-sum: {@link #winReward} to the player completing a line (so minus that for the other one),
+ * {@link #drawReward} for a draw and nothing otherwise.
+ *
+ * @author ae187
+ *
+ */
+public class SelfPlayEnvironment {
+
+	/**
+	 * the pieces of the player to move, and of the other player
+	 */
+	int moverBits;
+	int otherBits;
+
+	boolean xToMove = true;
+	boolean terminal;
+
+	double winReward = 1.0;
+	double drawReward = 0.0;
+
+	public SelfPlayEnvironment() {
+	}
+
+	public SelfPlayEnvironment(double winReward, double drawReward) {
+		this.winReward = winReward;
+		this.drawReward = drawReward;
+	}
+
+	/**
+	 * Starts a new game with an empty board and X to move.
+	 */
+	public void reset() {
+		moverBits = 0;
+		otherBits = 0;
+		xToMove = true;
+		terminal = false;
+	}
+
+	/**
+	 *
+	 * @return the current state, from the point of view of the player to move.
+	 */
+	public int getState() {
+		return BitBoard.code(moverBits, otherBits, true);
+	}
+
+	/**
+	 *
+	 * @return the mask of the empty cells, bit {@code 3*x+y} for cell (x,y)
+	 */
+	public int getPossibleMoves() {
+		return ~(moverBits | otherBits) & BitBoard.FULL;
+	}
+
+	public boolean isXToMove() {
+		return xToMove;
+	}
+
+	public boolean isTerminal() {
+		return terminal;
+	}
+
+	/**
+	 * Plays move {@code cell} for the player to move, and passes the turn to the other player. The {@code result}'s
+	 * next state is the state after the move seen from the other player's point of view, i.e. the state that player
+	 * now has to move in. Its reward is the mover's reward for this move alone, so it's 0 unless the move ended the
+	 * game: what happens next is worth minus the value of the other player's best move in the next state (negamax).
+	 *
+	 * @param cell   the move, {@code 3*x+y}
+	 * @param result filled with the reward, next state and whether the game is over
+	 * @throws IllegalMoveException if the cell isn't empty or the game is over
+	 */
+	public void step(int cell, StepResult result) throws IllegalMoveException {
+		if (terminal || (getPossibleMoves() & (1 << cell)) == 0)
+			throw new IllegalMoveException("Illegal Move: cell " + cell + " on:" + getState());
+
+		int mover = moverBits | (1 << cell);
+		if (BitBoard.hasLine(mover)) {
+			result.reward = winReward;
+			terminal = true;
+		} else if ((mover | otherBits) == BitBoard.FULL) {
+			result.reward = drawReward;
+			terminal = true;
+		} else {
+			result.reward = 0.0;
+		}
+		result.done = terminal;
+
+		// the other player moves next
+		moverBits = otherBits;
+		otherBits = mover;
+		xToMove = !xToMove;
+		result.nextState = getState();
+	}
+
+}
@@ -0,0 +1,316 @@
+package ticTacToe;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A process-wide cache of solved models - a policy, and the values it was extracted from if there are any - so that
+ * agents solved with the same parameters are only solved once per process, see e.g.
+ * {@link ValueIterationAgent#cached()}. Models are keyed by everything that determines them, see {@link Key}.
+ *
+ * The cache is safe to use from several threads. The first thread asking for a missing model solves it; other threads
+ * asking for the same model meanwhile wait for that solve rather than starting their own, and threads asking for other
+ * models aren't held up. A solve that fails isn't cached, so it is tried again next time.
+ *
+ * The cache is bounded by an estimate of the memory its models take, {@link Model#bytes}. When a new model takes the
+ * total over the budget, the least recently used models are evicted until it fits again. Evicted models stay valid
+ * for the agents using them, the cache just forgets them. Policies and values handed out by the cache are shared, so
+ * they must not be modified: the values are read only, and agents copy them, and their policy's moves, before
+ * training further.
+ *
+ * @author ae187
+ *
+ */
+public final class SolvedModelCache {
+
+	/**
+	 * The parameters that determine a solved model
+	 */
+	public static final class Key {
+
+		/**
+		 * the algorithm and any of its own parameters, e.g. "q-learning alpha=0.1 episodes=50000"
+		 */
+		final String algorithm;
+		final double discount;
+		final double winReward;
+		final double loseReward;
+		final double livingReward;
+		final double drawReward;
+
+		/**
+		 * the opponent the model was solved against, e.g. the class of the opponent agent
+		 */
+		final String opponent;
+
+		/**
+		 * the number of cells on a side of the board
+		 */
+		final int boardSize;
+
+		/**
+		 * the seed of the random numbers the model was solved with, 0 for algorithms whose result doesn't depend on
+		 * them
+		 */
+		final long seed;
+
+		public Key(String algorithm, double discount, double winReward, double loseReward, double livingReward,
+				double drawReward, String opponent, int boardSize) {
+			this(algorithm, discount, winReward, loseReward, livingReward, drawReward, opponent, boardSize, 0);
+		}
+
+		public Key(String algorithm, double discount, double winReward, double loseReward, double livingReward,
+				double drawReward, String opponent, int boardSize, long seed) {
+			this.algorithm = algorithm;
+			this.discount = discount;
+			this.winReward = winReward;
+			this.loseReward = loseReward;
+			this.livingReward = livingReward;
+			this.drawReward = drawReward;
+			this.opponent = opponent;
+			this.boardSize = boardSize;
+			this.seed = seed;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key))
+				return false;
+
+			Key k = (Key) other;
+			return algorithm.equals(k.algorithm) && Double.compare(discount, k.discount) == 0
+					&& Double.compare(winReward, k.winReward) == 0 && Double.compare(loseReward, k.loseReward) == 0
+					&& Double.compare(livingReward, k.livingReward) == 0
+					&& Double.compare(drawReward, k.drawReward) == 0 && opponent.equals(k.opponent)
+					&& boardSize == k.boardSize && seed == k.seed;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = algorithm.hashCode();
+			h = 31 * h + Double.hashCode(discount);
+			h = 31 * h + Double.hashCode(winReward);
+			h = 31 * h + Double.hashCode(loseReward);
+			h = 31 * h + Double.hashCode(livingReward);
+			h = 31 * h + Double.hashCode(drawReward);
+			h = 31 * h + opponent.hashCode();
+			h = 31 * h + boardSize;
+			return 31 * h + Long.hashCode(seed);
+		}
+
+		@Override
+		public String toString() {
+			return algorithm + " discount=" + discount + " rewards=" + winReward + "/" + loseReward + "/" + livingReward
+					+ "/" + drawReward + " opponent=" + opponent + " board=" + boardSize + "x" + boardSize + " seed=" + seed;
+		}
+
+	}
+
+	/**
+	 * A solved model. Neither the policy nor the values may be modified once cached.
+	 */
+	public static final class Model {
+
+		public final Policy policy;
+
+		/**
+		 * the values of the states, or null. The map can't be modified.
+		 */
+		public final Map<Game, Double> values;
+
+		/**
+		 * an estimate of the memory taken by the model, in bytes
+		 */
+		final long bytes;
+
+		public Model(Policy policy, Map<Game, Double> values) {
+			this.policy = policy;
+			this.values = values == null ? null : Collections.unmodifiableMap(values);
+			this.bytes = ENTRY_BYTES * (policy.policy.size() + (values == null ? 0 : values.size()));
+		}
+
+	}
+
+	/**
+	 * A rough estimate of the memory taken by one entry of a map from games: the map's node, the game and the move or
+	 * boxed value
+	 */
+	static final long ENTRY_BYTES = 256;
+
+	/**
+	 * The default memory budget of the process-wide cache
+	 */
+	static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+	private static final SolvedModelCache global = new SolvedModelCache(
+			Long.getLong("ttt.cache.bytes", DEFAULT_MAX_BYTES));
+
+	/**
+	 * A cached model, or a solve in progress
+	 */
+	static final class Entry {
+
+		final FutureTask<Model> task;
+
+		/**
+		 * the time of the last use, on {@link SolvedModelCache#clock}
+		 */
+		volatile long lastUsed;
+
+		/**
+		 * whether the model is counted in {@link SolvedModelCache#bytes}, guarded by the cache
+		 */
+		boolean counted;
+
+		Entry(FutureTask<Model> task) {
+			this.task = task;
+		}
+
+	}
+
+	final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+
+	/**
+	 * The memory budget, and the estimated memory taken by the solved models in the cache
+	 */
+	final long maxBytes;
+	final AtomicLong bytes = new AtomicLong();
+
+	/**
+	 * Counts uses, to order entries from least to most recently used
+	 */
+	final AtomicLong clock = new AtomicLong();
+
+	/**
+	 *
+	 * @param maxBytes the memory budget
+	 */
+	public SolvedModelCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 *
+	 * @return the process-wide cache, whose budget is set by the {@code ttt.cache.bytes} system property, 64MB by
+	 *         default
+	 */
+	public static SolvedModelCache global() {
+		return global;
+	}
+
+	/**
+	 * Returns the model for {@code key}, calling {@code solver} in this thread to solve it if it isn't in the cache and
+	 * isn't being solved by another thread already.
+	 *
+	 * @throws IllegalStateException if the solve failed, in this thread or another one
+	 */
+	public Model get(Key key, Callable<Model> solver) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			Entry created = new Entry(new FutureTask<Model>(solver));
+			entry = entries.putIfAbsent(key, created);
+			if (entry == null) {
+				entry = created;
+				entry.task.run();
+				if (!failed(entry))
+					admit(key, entry);
+			}
+		}
+
+		entry.lastUsed = clock.incrementAndGet();
+		return model(key, entry);
+	}
+
+	private boolean failed(Entry entry) {
+		try {
+			entry.task.get();
+			return false;
+		} catch (ExecutionException e) {
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return true;
+		}
+	}
+
+	/**
+	 * Waits for the model of {@code entry}, forgetting the entry if its solve failed.
+	 */
+	private Model model(Key key, Entry entry) {
+		try {
+			return entry.task.get();
+		} catch (ExecutionException e) {
+			entries.remove(key, entry);
+			throw new IllegalStateException("Could not solve " + key, e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for " + key + " to be solved", e);
+		}
+	}
+
+	/**
+	 * Counts the newly solved model of {@code entry}, unless the entry was cleared while solving, then evicts the least
+	 * recently used other models until the cache fits in its budget.
+	 */
+	private synchronized void admit(Key key, Entry entry) {
+		if (entries.get(key) != entry)
+			return;
+
+		entry.counted = true;
+		entry.lastUsed = clock.incrementAndGet();
+		bytes.addAndGet(model(key, entry).bytes);
+		while (bytes.get() > maxBytes) {
+			Key oldest = null;
+			long oldestUse = Long.MAX_VALUE;
+			for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+				if (e.getValue() != entry && e.getValue().counted && e.getValue().lastUsed < oldestUse) {
+					oldest = e.getKey();
+					oldestUse = e.getValue().lastUsed;
+				}
+			}
+			if (oldest == null)
+				return;
+
+			forget(oldest);
+		}
+	}
+
+	/**
+	 * Removes the entry for {@code key}, and its model from the estimated memory if it was counted.
+	 */
+	private void forget(Key key) {
+		Entry removed = entries.remove(key);
+		if (removed != null && removed.counted)
+			bytes.addAndGet(-model(key, removed).bytes);
+	}
+
+	/**
+	 *
+	 * @return the number of models in the cache, including those being solved
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 *
+	 * @return the estimated memory taken by the solved models in the cache, in bytes
+	 */
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * Forgets every model.
+	 */
+	public synchronized void clear() {
+		for (Key key : entries.keySet())
+			forget(key);
+	}
+
+}
@@ -0,0 +1,21 @@
+package ticTacToe;
+
+/**
+ * The result of one environment step: the reward received, the {@link Game#hashCode} of the next state, and whether
+ * the game is over. Unlike an {@link Outcome}, a StepResult is owned by the caller and filled in again by every step,
+ * so that stepping an environment doesn't need to allocate anything.
+ *
+ * @author ae187
+ *
+ */
+public class StepResult {
+
+	public double reward = 0.0;
+	public int nextState;
+	public boolean done;
+
+	public String toString() {
+		return "Reward = " + reward + ", next state = " + nextState + (done ? " (terminal)" : "");
+	}
+
+}
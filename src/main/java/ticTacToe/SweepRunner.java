@@ -0,0 +1,335 @@
+package ticTacToe;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves a grid of agent configurations in parallel and compares them: value iteration, policy iteration and
+ * Q-Learning, each with its own discount, rewards and, for Q-Learning, learning rate, exploration rate and number of
+ * episodes. Every configuration is solved from scratch on a bounded pool of {@link #numThreads} threads, then plays
+ * {@link #games} games against each of the random, aggressive and defensive agents, and the results are summed up in
+ * a table (see {@link #table}) of solve time, memory and win, draw and loss rates.
+ *
+ * Value and policy iteration are solved with {@code resolve} on {@link CompiledTTTMDP#shared()}, so all their
+ * configurations share one compiled MDP and state index, which is compiled once rather than once per configuration.
+ * They are solved to convergence, so they play the policies that the agents' own {@code train()} would.
+ * The memory of a configuration is measured as the bytes allocated by the thread solving it, where the JVM can tell
+ * (see {@link com.sun.management.ThreadMXBean}), and -1 otherwise, along with an estimate of the size of the solved
+ * model, see {@link SolvedModelCache.Model}.
+ *
+ * The defensive opponent is made quiet, so that the games don't print their moves out.
+ *
+ * @author ae187
+ *
+ */
+public class SweepRunner {
+
+	public static final String VALUE_ITERATION = "vi";
+	public static final String POLICY_ITERATION = "pi";
+	public static final String Q_LEARNING = "ql";
+
+	/**
+	 * One configuration of an agent. The learning rate, exploration rate and number of episodes only apply to
+	 * Q-Learning.
+	 */
+	public static final class Config {
+
+		final String algorithm;
+		final double discount;
+		final double winReward;
+		final double loseReward;
+		final double livingReward;
+		final double drawReward;
+		final double alpha;
+		final double epsilon;
+		final int episodes;
+
+		Config(String algorithm, double discount, double winReward, double loseReward, double livingReward,
+				double drawReward, double alpha, double epsilon, int episodes) {
+			this.algorithm = algorithm;
+			this.discount = discount;
+			this.winReward = winReward;
+			this.loseReward = loseReward;
+			this.livingReward = livingReward;
+			this.drawReward = drawReward;
+			this.alpha = alpha;
+			this.epsilon = epsilon;
+			this.episodes = episodes;
+		}
+
+		public static Config valueIteration(double discount, double winReward, double loseReward,
+				double livingReward, double drawReward) {
+			return new Config(VALUE_ITERATION, discount, winReward, loseReward, livingReward, drawReward, 0, 0, 0);
+		}
+
+		public static Config policyIteration(double discount, double winReward, double loseReward,
+				double livingReward, double drawReward) {
+			return new Config(POLICY_ITERATION, discount, winReward, loseReward, livingReward, drawReward, 0, 0, 0);
+		}
+
+		/**
+		 * A Q-Learning agent trained against a random agent
+		 */
+		public static Config qLearning(double discount, double winReward, double loseReward, double livingReward,
+				double drawReward, double alpha, double epsilon, int episodes) {
+			return new Config(Q_LEARNING, discount, winReward, loseReward, livingReward, drawReward, alpha, epsilon,
+					episodes);
+		}
+
+		@Override
+		public String toString() {
+			String s = algorithm + " discount=" + discount + " rewards=" + winReward + "/" + loseReward + "/"
+					+ livingReward + "/" + drawReward;
+			if (algorithm.equals(Q_LEARNING))
+				s += " alpha=" + alpha + " epsilon=" + epsilon + " episodes=" + episodes;
+			return s;
+		}
+
+	}
+
+	/**
+	 * The outcome of one configuration. The games are summed over the three opponents.
+	 */
+	public static final class Result {
+
+		public final Config config;
+		public final long solveNanos;
+
+		/**
+		 * the bytes allocated while solving, or -1 if unknown
+		 */
+		public final long allocatedBytes;
+
+		/**
+		 * an estimate of the memory taken by the solved policy and values
+		 */
+		public final long modelBytes;
+
+		public final int wins;
+		public final int draws;
+		public final int losses;
+
+		Result(Config config, long solveNanos, long allocatedBytes, long modelBytes, int wins, int draws,
+				int losses) {
+			this.config = config;
+			this.solveNanos = solveNanos;
+			this.allocatedBytes = allocatedBytes;
+			this.modelBytes = modelBytes;
+			this.wins = wins;
+			this.draws = draws;
+			this.losses = losses;
+		}
+
+		public int games() {
+			return wins + draws + losses;
+		}
+
+	}
+
+	/**
+	 * The number of threads solving configurations
+	 */
+	int numThreads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The number of games played against each opponent
+	 */
+	int games = 100;
+
+	public SweepRunner() {
+	}
+
+	public SweepRunner(int numThreads, int games) {
+		this.numThreads = numThreads;
+		this.games = games;
+	}
+
+	/**
+	 *
+	 * @return every combination of the discounts and the rewards, for value and policy iteration, with the default
+	 *         win, living and draw rewards of {@link TTTMDP}
+	 */
+	public static List<Config> grid(double[] discounts, double[] loseRewards) {
+		TTTMDP d = new TTTMDP();
+		List<Config> grid = new ArrayList<Config>();
+		for (double discount : discounts) {
+			for (double lose : loseRewards) {
+				grid.add(Config.valueIteration(discount, d.winReward, lose, d.livingReward, d.drawReward));
+				grid.add(Config.policyIteration(discount, d.winReward, lose, d.livingReward, d.drawReward));
+			}
+		}
+		return grid;
+	}
+
+	/**
+	 *
+	 * @return every combination of the learning rates, exploration rates and numbers of episodes, for Q-Learning with
+	 *         the default rewards and discount
+	 */
+	public static List<Config> qLearningGrid(double[] alphas, double[] epsilons, int[] episodes) {
+		TTTMDP d = new TTTMDP();
+		List<Config> grid = new ArrayList<Config>();
+		for (double alpha : alphas)
+			for (double epsilon : epsilons)
+				for (int n : episodes)
+					grid.add(Config.qLearning(0.9, d.winReward, d.loseReward, d.livingReward, d.drawReward, alpha,
+							epsilon, n));
+		return grid;
+	}
+
+	/**
+	 * Solves and plays every configuration, in parallel.
+	 *
+	 * @return the results, in the order of {@code configs}
+	 * @throws IllegalStateException if a configuration fails
+	 */
+	public List<Result> run(List<Config> configs) {
+		// compiling the shared MDP up front, rather than in whichever solve gets there first
+		CompiledTTTMDP.shared();
+
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<Future<Result>> futures = new ArrayList<Future<Result>>();
+			for (final Config config : configs) {
+				futures.add(pool.submit(new Callable<Result>() {
+					public Result call() {
+						return run(config);
+					}
+				}));
+			}
+
+			List<Result> results = new ArrayList<Result>();
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Could not solve " + configs.get(i), e.getCause());
+				}
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the sweep", e);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Solves and plays one configuration, in this thread.
+	 */
+	Result run(Config config) {
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		Agent agent;
+		SolvedModelCache.Model model;
+		if (config.algorithm.equals(VALUE_ITERATION)) {
+			ValueIterationAgent vi = new ValueIterationAgent(config.discount, config.winReward, config.loseReward,
+					config.livingReward, config.drawReward);
+			vi.resolve(config.discount, config.winReward, config.loseReward, config.livingReward, config.drawReward);
+			agent = vi;
+			model = new SolvedModelCache.Model(vi.getPolicy(), vi.valueFunction);
+		} else if (config.algorithm.equals(POLICY_ITERATION)) {
+			PolicyIterationAgent pi = new PolicyIterationAgent(config.discount, config.winReward, config.loseReward,
+					config.livingReward, config.drawReward, false);
+			pi.resolve(config.discount, config.winReward, config.loseReward, config.livingReward, config.drawReward);
+			agent = pi;
+			model = new SolvedModelCache.Model(pi.getPolicy(), pi.policyValues);
+		} else if (config.algorithm.equals(Q_LEARNING)) {
+			QLearningAgent ql = new QLearningAgent(new RandomAgent(), config.alpha, config.episodes, config.discount,
+					false);
+			ql.env = new TTTEnvironment(new RandomAgent(), config.winReward, config.loseReward, config.livingReward,
+					config.drawReward);
+			ql.epsilon = config.epsilon;
+			ql.train();
+			agent = ql;
+			model = new SolvedModelCache.Model(ql.getPolicy(), null);
+		} else {
+			throw new IllegalArgumentException("Unknown algorithm " + config.algorithm);
+		}
+		long solveNanos = System.nanoTime() - start;
+		if (allocated >= 0)
+			allocated = allocatedBytes() - allocated;
+
+		int[] results = new int[3];
+		for (Agent opponent : new Agent[] { new RandomAgent(), new AggressiveAgent(), new DefensiveAgent(false) })
+			play(agent, opponent, games, results);
+
+		return new Result(config, solveNanos, allocated, model.bytes, results[0], results[2], results[1]);
+	}
+
+	/**
+	 * Plays {@code games} games of {@code x} against {@code o}, with X starting, adding up the wins, losses and draws
+	 * of X in {@code results}.
+	 */
+	static void play(Agent x, Agent o, int games, int[] results) {
+		try {
+			for (int i = 0; i < games; i++) {
+				Game g = new Game(x, o, x);
+				while (!g.isTerminal())
+					g.executeMove(g.whoseTurn.getMove(g));
+
+				if (g.getState() == Game.X_WON)
+					results[0]++;
+				else if (g.getState() == Game.O_WON)
+					results[1]++;
+				else
+					results[2]++;
+			}
+		} catch (IllegalMoveException e) {
+			throw new IllegalStateException("Policy returned illegal move", e);
+		}
+	}
+
+	/**
+	 *
+	 * @return the bytes allocated by this thread so far, or -1 if the JVM can't tell
+	 */
+	static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return -1;
+
+		com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+		if (!hotspot.isThreadAllocatedMemorySupported() || !hotspot.isThreadAllocatedMemoryEnabled())
+			return -1;
+
+		return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 *
+	 * @return the results as a table, one row per configuration
+	 */
+	public static String table(List<Result> results) {
+		StringBuilder table = new StringBuilder(String.format("%-90s %10s %12s %10s %7s %7s %7s%n", "configuration",
+				"solve (ms)", "alloc (MB)", "model (KB)", "win %", "draw %", "loss %"));
+		for (Result r : results) {
+			table.append(String.format("%-90s %10.1f %12s %10d %7.1f %7.1f %7.1f%n", r.config, r.solveNanos / 1e6,
+					r.allocatedBytes < 0 ? "?" : String.format("%.1f", r.allocatedBytes / 1e6), r.modelBytes / 1024,
+					100.0 * r.wins / r.games(), 100.0 * r.draws / r.games(), 100.0 * r.losses / r.games()));
+		}
+		return table.toString();
+	}
+
+	public static void main(String[] args) {
+		List<Config> configs = grid(new double[] { 0.5, 0.7, 0.9, 0.99 }, new double[] { -10, -50, -100 });
+		configs.addAll(qLearningGrid(new double[] { 0.05, 0.1, 0.2 }, new double[] { 0.05, 0.1, 0.2 },
+				new int[] { 10000, 50000 }));
+
+		SweepRunner runner = new SweepRunner();
+		long start = System.nanoTime();
+		List<Result> results = runner.run(configs);
+		System.out.print(table(results));
+		System.out.println(configs.size() + " configurations on " + runner.numThreads + " threads in "
+				+ String.format("%.2f", (System.nanoTime() - start) / 1e9) + "s");
+	}
+
+}
@@ -0,0 +1,78 @@
+package ticTacToe;
+
+/**
+ * The 8 symmetries of the board - the 4 rotations, each with or without a reflection - acting on the 9 bit masks of
+ * {@link BitBoard}. Symmetric boards are worth the same, and so are symmetric moves in them, so a learner can map every
+ * board to a canonical one before looking it up, and only has to learn about one board in each group of up to 8.
+ *
+ * @author ae187
+ *
+ */
+final class Symmetries {
+
+	/**
+	 * {@code CELL[t][cell]} is the cell that {@code cell} is moved to by symmetry {@code t}.
+	 */
+	static final int[][] CELL = new int[8][9];
+
+	static {
+		for (int t = 0; t < 8; t++) {
+			for (int x = 0; x < 3; x++) {
+				for (int y = 0; y < 3; y++) {
+					int i = x;
+					int j = y;
+					if (t >= 4) {
+						// reflect in the main diagonal
+						int swap = i;
+						i = j;
+						j = swap;
+					}
+					for (int r = 0; r < (t & 3); r++) {
+						// rotate by a quarter turn
+						int turn = i;
+						i = j;
+						j = 2 - turn;
+					}
+					CELL[t][3 * x + y] = 3 * i + j;
+				}
+			}
+		}
+	}
+
+	private Symmetries() {
+	}
+
+	/**
+	 *
+	 * @return the mask of the cells of {@code bits} moved by symmetry {@code t}
+	 */
+	static int apply(int t, int bits) {
+		int moved = 0;
+		for (; bits != 0; bits &= bits - 1)
+			moved |= 1 << CELL[t][Integer.numberOfTrailingZeros(bits)];
+
+		return moved;
+	}
+
+	/**
+	 *
+	 * @param mover the cells of the player to move
+	 * @param other the cells of the other player
+	 * @return the symmetry that maps the board to its canonical form: the one with the smallest {@link BitBoard#code}
+	 *         among the 8 symmetric boards
+	 */
+	static int canonical(int mover, int other) {
+		int best = 0;
+		int min = Integer.MAX_VALUE;
+		for (int t = 0; t < 8; t++) {
+			int code = BitBoard.code(apply(t, mover), apply(t, other), true);
+			if (code < min) {
+				min = code;
+				best = t;
+			}
+		}
+
+		return best;
+	}
+
+}
@@ -3,13 +3,15 @@ package ticTacToe;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.SplittableRandom;
 
 /**
  * This is a Reinforcement Learning environment for TicTacToe, to be used in conjunction with Reinforcement Learning (RL) agents. Like everywhere else, 
  * the opponent here is modeled as part of the environment, is by default a {@link RandomAgent} and is always assigned as the 'O' agent;
  * whereas the RL agent (e.g. {@link QLearningAgent}) interacting with this environment always plays as 'X'. The key method to be used from this class
  * is the {@link TTTEnvironment#executeMove} method which takes a move (from X) and returns an {@link Outcome} object containing reward received as well
- * as the target state.
+ * as the target state. Training loops that play many games can use {@link TTTEnvironment#step} and {@link TTTEnvironment#reset}
+ * instead, which reuse the same game and a caller-owned {@link StepResult} so that no objects are allocated per move.
  * @author ae187
  *
  */
@@ -34,7 +36,16 @@ public class TTTEnvironment {
 	 */
 	public TTTEnvironment()
 	{
-		game=new Game(new Agent(), new RandomAgent());
+		this(RandomStreams.newStream());
+	}
+	
+	/**
+	 * An environment with a random opponent that draws its moves from {@code random}
+	 * @param random
+	 */
+	public TTTEnvironment(SplittableRandom random)
+	{
+		game=new Game(new Agent(), new RandomAgent(random));
 	}
 	
 	public TTTEnvironment(Agent opponent)
@@ -130,6 +141,58 @@ public class TTTEnvironment {
 		
 	}
 	
+	/**
+	 * An allocation-free version of {@link #executeMove}, for training loops that play many episodes. Performs X's move
+	 * at cell {@code cell} ({@code 3*x+y}) followed, unless X's move ended the game, by the opponent's reply, and
+	 * writes the reward received, the {@link Game#hashCode} of the resulting state and whether it is terminal into
+	 * {@code result}. No {@link Outcome} is created and the previous state isn't copied: the game returned by
+	 * {@link #getCurrentGameState()} is simply updated. A random opponent picks its move without creating a
+	 * {@link Move} either.
+	 * @param cell the cell X plays in
+	 * @param result filled in with the reward, next state and whether the game is over
+	 * @throws IllegalMoveException if the cell isn't empty, it isn't X's turn or the game is over
+	 */
+	public void step(int cell, StepResult result) throws IllegalMoveException
+	{
+		if (cell<0 || cell>8 || game.isTerminal() || game.whoseTurn!=game.x || game.board[cell/3][cell%3]!=' ')
+			throw new IllegalMoveException("Illegal Move: cell "+cell+" on:"+game);
+		
+		game.play(cell/3, cell%3);
+		
+		if (game.getState()==Game.X_WON)
+			result.reward=this.winReward;
+		else if (game.getState()==Game.DRAW)
+			result.reward=this.drawReward;
+		else
+		{
+			//the game is ongoing, so now it's the opponent's turn to play.
+			Policy p=game.o.getPolicy();
+			if (p instanceof RandomPolicy)
+			{
+				int oCell=((RandomPolicy)p).getCell(game);
+				game.play(oCell/3, oCell%3);
+			}
+			else
+			{
+				Move oMove=game.o.getMove(game);
+				if (!game.isLegal(oMove))
+					throw new IllegalMoveException("Illegal Move:"+oMove+" on:"+game);
+				
+				game.executeMove(oMove);
+			}
+			
+			if (game.getState()==Game.O_WON)
+				result.reward=this.loseReward;
+			else if (game.getState()==Game.DRAW)
+				result.reward=this.drawReward;
+			else
+				result.reward=this.livingReward;
+		}
+		
+		result.nextState=game.hashCode();
+		result.done=game.isTerminal();
+	}
+	
 	public boolean isTerminal()
 	{
 		return game.isTerminal();
@@ -137,11 +200,50 @@ public class TTTEnvironment {
 	
 	
 	/**
-	 * Resets current game state to a new game state (empty board)
+	 * Resets current game state to a new game state (empty board). The game object and the opponent are reused, so
+	 * every episode is played against the same opponent and nothing is allocated.
 	 */
 	public void reset()
 	{
-		this.game=new Game(new Agent(), new RandomAgent());
+		game.restart();
+	}
+	
+	/**
+	 * A new environment with the same rewards, against a new instance of this environment's opponent's class whose
+	 * random stream, if it has one, starts from {@code seed} (see {@link #reseedOpponent}). Opponents aren't
+	 * thread-safe, so every training thread needs an environment of its own.
+	 * @param seed
+	 * @return the new environment
+	 * @throws IllegalStateException if the opponent's class has no public constructor without arguments
+	 */
+	public TTTEnvironment copy(long seed)
+	{
+		Agent opponent;
+		try {
+			opponent=game.o.getClass().getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot create an opponent of class "+game.o.getClass().getName(), e);
+		}
+		
+		TTTEnvironment copy=new TTTEnvironment(opponent, winReward, loseReward, livingReward, drawReward);
+		copy.reseedOpponent(seed);
+		return copy;
+	}
+	
+	/**
+	 * Restarts the opponent's random stream from {@code seed}, if it has one, i.e. if it plays a {@link RandomPolicy},
+	 * an {@link AggressivePolicy} or a {@link DefensivePolicy}. Used to make training resumable from a checkpoint.
+	 * @param seed
+	 */
+	public void reseedOpponent(long seed)
+	{
+		Policy p=game.o.getPolicy();
+		if (p instanceof RandomPolicy)
+			((RandomPolicy) p).r=new SplittableRandom(seed);
+		else if (p instanceof AggressivePolicy)
+			((AggressivePolicy) p).r=new SplittableRandom(seed);
+		else if (p instanceof DefensivePolicy)
+			((DefensivePolicy) p).r=new SplittableRandom(seed);
 	}
 	
 	
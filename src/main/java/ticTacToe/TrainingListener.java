@@ -0,0 +1,22 @@
+package ticTacToe;
+
+/**
+ * Receives progress reports from the convergence checks made while an agent trains, e.g. by
+ * {@link QLearningAgent#train}.
+ * 
+ * @author ae187
+ *
+ */
+public interface TrainingListener {
+
+	/**
+	 * Called at every convergence check.
+	 * 
+	 * @param episode       the number of episodes played so far
+	 * @param policyChanges the number of states whose greedy move changed since the previous check, among those that
+	 *                      the greedy policy can reach
+	 * @param maxDelta      the largest change of a q-value since the previous check
+	 */
+	void onProgress(int episode, int policyChanges, double maxDelta);
+
+}
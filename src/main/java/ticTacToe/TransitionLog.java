@@ -0,0 +1,92 @@
+package ticTacToe;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * An append-only binary log of (s, a, r, s', done) transitions, for training offline with {@link FittedQIteration}
+ * instead of playing against the environment again. Every record takes {@link #RECORD_SIZE} bytes, big endian: the
+ * {@link Game#hashCode} of the state (int), the cell of the move (int), the reward (double), the hash of the next
+ * state (int) and 1 if the next state is terminal, 0 otherwise (int). Fixed-width records mean that a reader can map
+ * the file and go straight to any record, or split the file into chunks at record boundaries.
+ *
+ * Opening a log on an existing file appends to it, so transitions from several runs can be collected in one file.
+ * Appending is synchronized, so the workers of {@link QLearningAgent#trainParallel} can share one log.
+ *
+ * @author ae187
+ *
+ */
+public class TransitionLog implements Closeable {
+
+	/**
+	 * The size of a record, in bytes
+	 */
+	public static final int RECORD_SIZE = 24;
+
+	final DataOutputStream out;
+
+	/**
+	 * the number of records appended since the log was opened
+	 */
+	long appended = 0;
+
+	/**
+	 * Opens the log in {@code file}, appending to the records already there if the file exists.
+	 */
+	public TransitionLog(File file) throws IOException {
+		if (file.exists() && file.length() % RECORD_SIZE != 0)
+			throw new IOException(file + " is not a transition log: its length isn't a multiple of " + RECORD_SIZE);
+
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16));
+	}
+
+	public synchronized void append(int state, int action, double reward, int nextState, boolean done)
+			throws IOException {
+		out.writeInt(state);
+		out.writeInt(action);
+		out.writeDouble(reward);
+		out.writeInt(nextState);
+		out.writeInt(done ? 1 : 0);
+		appended++;
+	}
+
+	/**
+	 * Plays {@code games} games of {@code player}, as X, against the opponent in {@code env}, and appends X's
+	 * transitions - with the environment's rewards - to the log. This records e.g. tournament games between fixed
+	 * agents.
+	 */
+	public void logGames(Agent player, TTTEnvironment env, int games) throws IOException, IllegalMoveException {
+		StepResult step = new StepResult();
+		for (int i = 0; i < games; i++) {
+			env.reset();
+			Game game = env.getCurrentGameState();
+			while (!env.isTerminal()) {
+				int state = game.hashCode();
+				Move m = player.getMove(game);
+				env.step(3 * m.x + m.y, step);
+				append(state, 3 * m.x + m.y, step.reward, step.nextState, step.done);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of records appended since the log was opened
+	 */
+	public synchronized long getAppended() {
+		return appended;
+	}
+
+	public synchronized void flush() throws IOException {
+		out.flush();
+	}
+
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+
+}
@@ -0,0 +1,96 @@
+package ticTacToe;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size transposition table for {@link AlphaBetaSearch}, keyed on the base-3 code of a position (see
+ * {@link AlphaBetaSearch#key()}). Each slot holds the score of a position searched, whether the score is exact or a
+ * bound, the depth it was searched to and the best move found.
+ *
+ * The table is lock-free, so several searches can share it from different threads. A slot is two longs of an
+ * {@link AtomicLongArray}: the entry's data, and its key xor its data. A reader only accepts a slot whose two longs
+ * match the key it looks for, so a slot torn by two threads writing it at once reads as a miss rather than as a wrong
+ * entry. New entries always replace old ones.
+ *
+ * @author ae187
+ *
+ */
+public final class TranspositionTable {
+
+	/**
+	 * The kinds of scores stored: exact, or a lower or an upper bound of the score
+	 */
+	static final int EXACT = 1;
+	static final int LOWER = 2;
+	static final int UPPER = 3;
+
+	/**
+	 * The depth stored for positions searched to the end of the game, whose scores don't depend on the depth
+	 */
+	static final int SOLVED = 255;
+
+	final AtomicLongArray slots;
+	final int mask;
+
+	/**
+	 *
+	 * @param bits the table has {@code 2^bits} entries, of 16 bytes each
+	 */
+	public TranspositionTable(int bits) {
+		if (bits < 1 || bits > 28)
+			throw new IllegalArgumentException("Can't have 2^" + bits + " entries");
+
+		slots = new AtomicLongArray(2 << bits);
+		mask = (1 << bits) - 1;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return 2 * ((int) (h >>> 32) & mask);
+	}
+
+	/**
+	 *
+	 * @return the data stored for {@code key}, or 0 if there is none
+	 */
+	long probe(long key) {
+		int i = slot(key);
+		long data = slots.get(i + 1);
+		if (data == 0 || (slots.get(i) ^ data) != key)
+			return 0;
+
+		return data;
+	}
+
+	void store(long key, int score, int bound, int depth, int move) {
+		long data = (move + 1L) | (long) (score & 0xffff) << 16 | (long) depth << 32 | (long) bound << 40;
+		int i = slot(key);
+		slots.set(i + 1, data);
+		slots.set(i, key ^ data);
+	}
+
+	static int move(long data) {
+		return (int) (data & 0xffff) - 1;
+	}
+
+	static int score(long data) {
+		return (short) (data >>> 16);
+	}
+
+	static int depth(long data) {
+		return (int) (data >>> 32) & 0xff;
+	}
+
+	static int bound(long data) {
+		return (int) (data >>> 40) & 0x3;
+	}
+
+	/**
+	 * Forgets every entry.
+	 */
+	public void clear() {
+		for (int i = 0; i < slots.length(); i++)
+			slots.set(i, 0);
+	}
+
+}
@@ -1,8 +1,10 @@
 package ticTacToe;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * A Value Iteration Agent, only very partially implemented. The methods to
@@ -22,6 +24,13 @@ public class ValueIterationAgent extends Agent {
 	 */
 	Map<Game, Double> valueFunction = new HashMap<Game, Double>();
 
+	/**
+	 * Whether {@link #valueFunction} is shared with other agents through
+	 * {@link SolvedModelCache}, see {@link #cached()}. A shared map is copied
+	 * before this agent modifies it, see {@link #unshare()}.
+	 */
+	boolean shared = false;
+
 	/**
 	 * the discount factor
 	 */
@@ -38,6 +47,17 @@ public class ValueIterationAgent extends Agent {
 	 */
 	int k = 10;
 
+	/**
+	 * {@link #train(Duration)} stops early once the Bellman residual is at most
+	 * this
+	 */
+	double tolerance = 1e-6;
+
+	/**
+	 * The largest number of steps of {@link #resolve}
+	 */
+	static final int MAX_SWEEPS = 1000;
+
 	/**
 	 * This constructor trains the agent offline first and sets its policy
 	 */
@@ -59,6 +79,107 @@ public class ValueIterationAgent extends Agent {
 
 	}
 
+	/**
+	 * 
+	 * @return an agent playing the policy solved at build time with the default
+	 *         parameters (see {@link PrecomputedPolicies}), or a newly solved
+	 *         agent if there is none. Only the policy is loaded: the agent has no
+	 *         values.
+	 */
+	public static ValueIterationAgent precomputed() {
+		Policy p = PrecomputedPolicies.load(PrecomputedPolicies.VALUE_ITERATION);
+		return p != null ? new ValueIterationAgent(p) : new ValueIterationAgent();
+	}
+
+	/**
+	 * 
+	 * @return an agent with the default parameters, sharing the policy and values
+	 *         of every other such agent in the process through
+	 *         {@link SolvedModelCache#global()}: only the first one is solved.
+	 */
+	public static ValueIterationAgent cached() {
+		TTTMDP d = new TTTMDP();
+		return cached(0.9, d.winReward, d.loseReward, d.livingReward, d.drawReward);
+	}
+
+	/**
+	 * 
+	 * @return an agent with the given parameters, sharing the policy and values
+	 *         of every other agent with the same parameters in the process through
+	 *         {@link SolvedModelCache#global()}. Training or re-solving the agent
+	 *         first gives it its own copy of the values, so other agents are
+	 *         unaffected.
+	 */
+	public static ValueIterationAgent cached(final double discountFactor, final double winReward,
+			final double loseReward, final double livingReward, final double drawReward) {
+		SolvedModelCache.Key key = new SolvedModelCache.Key("value-iteration k=10", discountFactor, winReward,
+				loseReward, livingReward, drawReward, "uniform random", 3);
+		SolvedModelCache.Model model = SolvedModelCache.global().get(key, new Callable<SolvedModelCache.Model>() {
+			public SolvedModelCache.Model call() {
+				ValueIterationAgent solved = new ValueIterationAgent(discountFactor, winReward, loseReward,
+						livingReward, drawReward);
+				solved.initValues();
+				solved.train();
+				return new SolvedModelCache.Model(solved.policy, solved.valueFunction);
+			}
+		});
+
+		ValueIterationAgent agent = new ValueIterationAgent(model.policy);
+		agent.discount = discountFactor;
+		agent.mdp = new TTTMDP(winReward, loseReward, livingReward, drawReward);
+		agent.valueFunction = model.values;
+		agent.shared = true;
+		return agent;
+	}
+
+	/**
+	 * Copies {@link #valueFunction} if it is shared, so that this agent can
+	 * modify it. Every method modifying it calls this first.
+	 */
+	void unshare() {
+		if (!shared)
+			return;
+
+		valueFunction = new HashMap<Game, Double>(valueFunction);
+		shared = false;
+	}
+
+	/**
+	 * 
+	 * @return an agent with the default parameters that solves in the background
+	 *         (see {@link Agent#trainInBackground}), playing the policy solved at
+	 *         build time meanwhile if there is one, or an
+	 *         {@link AggressivePolicy} otherwise
+	 */
+	public static ValueIterationAgent background() {
+		Policy stale = PrecomputedPolicies.load(PrecomputedPolicies.VALUE_ITERATION);
+		TTTMDP d = new TTTMDP();
+		return background(0.9, d.winReward, d.loseReward, d.livingReward, d.drawReward,
+				stale != null ? stale : new AggressivePolicy());
+	}
+
+	/**
+	 * 
+	 * @return an agent with the given parameters that solves in the background,
+	 *         playing {@code fallback} meanwhile. The policy extracted after each
+	 *         of the {@link #k} iterations is published as soon as it is ready.
+	 */
+	public static ValueIterationAgent background(double discountFactor, double winReward, double loseReward,
+			double livingReward, double drawReward, Policy fallback) {
+		final ValueIterationAgent agent = new ValueIterationAgent(discountFactor, winReward, loseReward, livingReward,
+				drawReward);
+		agent.trainInBackground(fallback, new Runnable() {
+			public void run() {
+				agent.initValues();
+				for (int i = 0; i < agent.k; i++) {
+					agent.sweep();
+					agent.setPolicy(agent.extractPolicy());
+				}
+			}
+		});
+		return agent;
+	}
+
 	public ValueIterationAgent(double discountFactor) {
 
 		this.discount = discountFactor;
@@ -75,6 +196,7 @@ public class ValueIterationAgent extends Agent {
 	 * 
 	 */
 	public void initValues() {
+		unshare();
 
 		List<Game> allGames = Game.generateAllValidGames('X');// all valid games where it is X's turn, or it's terminal.
 		for (Game g : allGames)
@@ -102,40 +224,141 @@ public class ValueIterationAgent extends Agent {
 	public void iterate() {
 	    // Iterating 'k' times
 	    for (int i = 0; i < k; i++) {
-	        
-	        // For each 'state' in the key set of 'valueFunction'
-	        for (Game state : valueFunction.keySet()) {
+	        sweep();
+	    }
+	}
 
-	            // Checking if the current state is not terminal
-	            if (!state.isTerminal()) {
+	/**
+	 * Performs one value iteration step, updating the values in place.
+	 * 
+	 * @return the Bellman residual of the step: the largest change of a value
+	 */
+	double sweep() {
+		unshare();
+	    double residual = 0;
 
-	                // Initializing 'vNext' to negative infinity
-	                double vNext = Double.NEGATIVE_INFINITY;
+	    // For each 'state' in the key set of 'valueFunction'
+	    for (Game state : valueFunction.keySet()) {
 
-	                // For each possible 'move' in the current 'state'
-	                for (Move m : state.getPossibleMoves()) {
+	        // Checking if the current state is not terminal
+	        if (!state.isTerminal()) {
 
-	                    // Initializing 'qValue' to 0
-	                    double qValue = 0;
+	            double vPrevious = valueFunction.get(state);
 
-	                    // Value Iteration Bellman's Equation
-	                    for (TransitionProb t : mdp.generateTransitions(state, m)) {
-	                        qValue += t.prob * (t.outcome.localReward + discount * valueFunction.get(t.outcome.sPrime));
+	            // Initializing 'vNext' to negative infinity
+	            double vNext = Double.NEGATIVE_INFINITY;
 
-	                        // Updating 'vNext' to be the maximum of 'vNext' and 'qValue'
-	                        vNext = Math.max(vNext, qValue);
-	                    }
+	            // For each possible 'move' in the current 'state'
+	            for (Move m : state.getPossibleMoves()) {
 
-	                    // Updating the value function of the current 'state' to be 'vNext'
-	                    valueFunction.put(state, vNext);
-	                }
+	                // Initializing 'qValue' to 0
+	                double qValue = 0;
+
+	                // Value Iteration Bellman's Equation
+	                for (TransitionProb t : mdp.generateTransitions(state, m))
+	                    qValue += t.prob * (t.outcome.localReward + discount * valueFunction.get(t.outcome.sPrime));
+
+	                // Updating 'vNext' to be the maximum of 'vNext' and the q-value of the whole move, not of part of
+	                // its transitions
+	                vNext = Math.max(vNext, qValue);
 	            }
+
+	            // Updating the value function of the current 'state' to be 'vNext'
+	            valueFunction.put(state, vNext);
+
+	            residual = Math.max(residual, Math.abs(valueFunction.get(state) - vPrevious));
 	        }
 	    }
+	    return residual;
+	}
+
+	/**
+	 * Solves for at most {@code budget} of wall-clock time, then extracts and
+	 * sets the policy, as {@link #train()} does. Value iteration steps are
+	 * performed, refining the current values (or values of 0 if there are none
+	 * yet), for as long as there is time left for another step and for the
+	 * policy extraction, or until the Bellman residual drops to
+	 * {@link #tolerance}. At least one step is always performed, so the budget
+	 * may be overrun by about the time of one step when it is very short.
+	 * 
+	 * @param budget the time to solve for
+	 * @return the policy, the number of steps and the residual of the last step
+	 */
+	public AnytimeResult train(Duration budget) {
+		long start = System.nanoTime();
+		long deadline = start + budget.toNanos();
+		if (valueFunction.isEmpty())
+			initValues();
+
+		int sweeps = 0;
+		double residual;
+		long sweepNanos;
+		// the policy extraction takes about as long as a step
+		do {
+			long sweepStart = System.nanoTime();
+			residual = sweep();
+			sweeps++;
+			sweepNanos = System.nanoTime() - sweepStart;
+		} while (residual > tolerance && System.nanoTime() + 2 * sweepNanos <= deadline);
+
+		Policy p = extractPolicy();
+		setPolicy(p);
+		AnytimeResult result = new AnytimeResult(p, sweeps, residual, -1, residual <= tolerance,
+				System.nanoTime() - start);
+		return result;
 	}
 
 	
 
+	/**
+	 * Re-solves for new rewards and discount, warm-starting from this agent's
+	 * current values rather than from 0 (unless it has none yet), on the
+	 * transitions of {@link CompiledTTTMDP#shared()}: only the reward vector and
+	 * the discount change, the transitions are never generated again. The steps
+	 * are the same Bellman backups as {@link #sweep()}, so the values and policy
+	 * are those {@link #train()} reaches. After a small change of the parameters
+	 * the old values are close to the new ones, so a fraction of the steps of a
+	 * cold solve are needed. Steps are performed until the Bellman residual drops
+	 * to {@link #tolerance}, then the values and the policy are set as
+	 * {@link #train()} would.
+	 * 
+	 * @return the policy, the number of steps, the residual of the last step and
+	 *         the number of states whose move changed from the previous policy
+	 */
+	public AnytimeResult resolve(double discountFactor, double winReward, double loseReward, double livingReward,
+			double drawReward) {
+		long start = System.nanoTime();
+		CompiledTTTMDP compiled = CompiledTTTMDP.shared().with(discountFactor, winReward, loseReward, livingReward,
+				drawReward);
+		int[] before = policy != null ? compiled.moves(policy) : null;
+		if (valueFunction.isEmpty())
+			initValues();
+		double[] values = compiled.values(valueFunction);
+
+		int sweeps = 0;
+		double residual;
+		do {
+			residual = compiled.sweep(values);
+			sweeps++;
+		} while (residual > tolerance && sweeps < MAX_SWEEPS);
+
+		int[] after = compiled.greedy(values);
+		int changes = 0;
+		for (int s = 0; s < after.length; s++)
+			if (after[s] >= 0 && (before == null || after[s] != before[s]))
+				changes++;
+
+		this.discount = discountFactor;
+		this.mdp = new TTTMDP(winReward, loseReward, livingReward, drawReward);
+		unshare();
+		compiled.copyTo(values, valueFunction);
+		Policy p = new Policy(compiled.toMap(after));
+		setPolicy(p);
+		AnytimeResult result = new AnytimeResult(p, sweeps, residual, changes, residual <= tolerance,
+				System.nanoTime() - start);
+		return result;
+	}
+
 	/**
 	 * This method should be run AFTER the train method to extract a policy
 	 * according to {@link ValueIterationAgent#valueFunction} You will need to do a
@@ -187,6 +410,19 @@ public class ValueIterationAgent extends Agent {
 	    return p;
 	}
 
+	/**
+	 *
+	 * @return the q-value of {@code m} in {@code g}, by a single step of
+	 *         expectimax over {@link ValueIterationAgent#valueFunction}
+	 */
+	public double getQValue(Game g, Move m) {
+		double q = 0;
+		for (TransitionProb t : mdp.generateTransitions(g, m))
+			q += t.prob * (t.outcome.localReward + discount * valueFunction.get(t.outcome.sPrime));
+
+		return q;
+	}
+
 
 	/**
 	 * This method solves the mdp using your implementation of
@@ -204,7 +440,7 @@ public class ValueIterationAgent extends Agent {
 		 * 
 		 */
 
-		super.policy = extractPolicy();
+		setPolicy(extractPolicy());
 
 		if (this.policy == null) {
 			System.out.println("Unimplemented methods! First implement the iterate() & extractPolicy() methods");
@@ -0,0 +1,48 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ticTacToe.AfterstateAgent;
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+
+public class TestAfterstate {
+
+	@Before
+	public void seed() {
+		RandomStreams.setSeed(42);
+	}
+	@Test
+	public void testDefensive() {
+		System.out.println("Afterstates, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new AfterstateAgent(), new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testAggressive() {
+		System.out.println("Afterstates, against Aggressive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new AfterstateAgent(), new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testRandom() {
+		System.out.println("Afterstates, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new AfterstateAgent(), new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+}
@@ -0,0 +1,104 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+import ticTacToe.AggressiveAgent;
+import ticTacToe.AlphaBetaAgent;
+import ticTacToe.AlphaBetaSearch;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.MinimaxValueIterationAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.TranspositionTable;
+
+public class TestAlphaBeta {
+
+	@Test
+	public void testDefensive() {
+		System.out.println("Alpha-beta search, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new AlphaBetaAgent(), new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testAggressive() {
+		System.out.println("Alpha-beta search, against Aggressive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new AlphaBetaAgent(), new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testRandom() {
+		System.out.println("Alpha-beta search, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new AlphaBetaAgent(), new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testPerfect() {
+		AlphaBetaAgent agent = new AlphaBetaAgent();
+		// against minimax as O, and as O against minimax, every game is a draw
+		MinimaxValueIterationAgent minimax = new MinimaxValueIterationAgent();
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, minimax.opponent(), 10);
+		System.out.println("Alpha-beta against minimax O, Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(10, results[2]);
+		assertTrue(agent.isSolved());
+
+		results=TestPolicyIterationAgent.playAgainstEachOther(minimax, agent, 10);
+		System.out.println("Minimax against alpha-beta O, Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(10, results[2]);
+	}
+
+	@Test
+	public void testKey() throws IllegalMoveException {
+		// on 3x3 the table is keyed on the game's own hash
+		Game g = new Game(new RandomAgent(), new RandomAgent());
+		AlphaBetaSearch search = new AlphaBetaSearch(3, 3, 3, new TranspositionTable(4));
+		assertEquals((long) g.hashCode(), search.key());
+		char who = 'X';
+		for (int cell : new int[] { 4, 0, 8, 2 }) {
+			g.executeMove(who, cell / 3, cell % 3);
+			who = who == 'X' ? 'O' : 'X';
+			search.make(cell);
+			assertEquals((long) g.hashCode(), search.key());
+		}
+		search.unmake(2);
+		search.unmake(8);
+		Game before = new Game(new RandomAgent(), new RandomAgent());
+		before.executeMove('X', 1, 1);
+		before.executeMove('O', 0, 0);
+		assertEquals((long) before.hashCode(), search.key());
+	}
+
+	@Test
+	public void testLargerBoard() {
+		// 5x5, 4 in a row, can't be searched to the end within the budget
+		AlphaBetaSearch search = new AlphaBetaSearch(5, 5, 4, new TranspositionTable(18));
+		int cell = search.bestMove(Duration.ofMillis(200));
+		System.out.println("5x5: played " + cell + " at depth " + search.getDepth() + ", " + search.getNodes()
+				+ " nodes");
+		assertTrue(cell >= 0);
+		assertTrue(search.getDepth() > 1);
+		// the search stopped at the deadline, having played the move of the last depth it completed
+		assertTrue(search.isAborted());
+		assertFalse(search.isSolved());
+		assertTrue(search.getNodes() > 0);
+
+		// a win in one is found, and a win of the opponent blocked
+		AlphaBetaSearch win = new AlphaBetaSearch(5, 5, 4, new TranspositionTable(12));
+		for (int c : new int[] { 0, 5, 1, 6, 2, 7 })
+			win.make(c);
+		assertEquals(3, win.bestMove(Duration.ofMillis(100)));
+		win.make(8);
+		assertEquals(3, win.bestMove(Duration.ofMillis(100)));
+	}
+
+}
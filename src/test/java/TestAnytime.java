@@ -0,0 +1,88 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.AggressiveAgent;
+import ticTacToe.AnytimeResult;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.PolicyIterationAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.ValueIterationAgent;
+
+public class TestAnytime {
+
+	static Agent[] agents;
+
+	@BeforeClass
+	public static void solve() {
+		ValueIterationAgent vi = new ValueIterationAgent(0.9, 10, -50, -1, 0);
+		PolicyIterationAgent pi = new PolicyIterationAgent(0.9, 10, -50, -1, 0, false);
+		// a generous budget: the solves should converge well before it
+		AnytimeResult result = vi.train(Duration.ofSeconds(30));
+		System.out.println("Value iteration: " + result);
+		assertTrue(result.converged);
+		assertEquals(0.0, result.residual, 1e-6);
+		result = pi.train(Duration.ofSeconds(30));
+		System.out.println("Policy iteration: " + result);
+		assertTrue(result.converged);
+		assertEquals(0, result.policyChanges);
+
+		agents = new Agent[] { vi, pi };
+	}
+
+	@Test
+	public void testDefensive() {
+		for (Agent agent : agents) {
+			System.out.println("Anytime " + agent.getClass().getSimpleName() + ", against Defensive Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testAggressive() {
+		for (Agent agent : agents) {
+			System.out.println("Anytime " + agent.getClass().getSimpleName() + ", against Aggressive Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new AggressiveAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testRandom() {
+		for (Agent agent : agents) {
+			System.out.println("Anytime " + agent.getClass().getSimpleName() + ", against Random Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testDeadline() {
+		// too short to converge: the solve stops after its first iteration, with a policy for every state anyway
+		ValueIterationAgent vi = new ValueIterationAgent(0.9, 10, -50, -1, 0);
+		AnytimeResult result = vi.train(Duration.ofNanos(1));
+		assertFalse(result.converged);
+		assertEquals(1, result.iterations);
+		assertTrue(result.residual > 0);
+		assertNotNull(vi.getMove(new Game('X')));
+
+		PolicyIterationAgent pi = new PolicyIterationAgent(0.9, 10, -50, -1, 0, false);
+		result = pi.train(Duration.ofNanos(1));
+		assertFalse(result.converged);
+		assertEquals(1, result.iterations);
+		assertTrue(result.policyChanges > 0);
+	}
+
+}
@@ -0,0 +1,82 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.AggressiveAgent;
+import ticTacToe.AggressivePolicy;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.HotSwapPolicy;
+import ticTacToe.Policy;
+import ticTacToe.PolicyIterationAgent;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+import ticTacToe.ValueIterationAgent;
+
+public class TestBackgroundTraining {
+
+	/**
+	 * The agents, trained once for all the tests
+	 */
+	static Agent[] trained;
+
+	static synchronized Agent[] agents() {
+		if (trained != null)
+			return trained;
+
+		RandomStreams.setSeed(42);
+		Agent[] agents = { ValueIterationAgent.background(0.9, 10, -50, -1, 0, new AggressivePolicy()),
+				PolicyIterationAgent.background(0.9, 10, -50, -1, 0, new AggressivePolicy()),
+				QLearningAgent.background(new RandomAgent(), 0.1, 50000, 0.9, new AggressivePolicy()) };
+		for (Agent agent : agents) {
+			// games can be played straight away, from the fallback or whatever training has published so far
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 20);
+			System.out.println(agent.getClass().getSimpleName() + " while training, trained: " + agent.isTrained()
+					+ " Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		}
+		for (Agent agent : agents) {
+			Policy last = agent.awaitTraining();
+			HotSwapPolicy live = (HotSwapPolicy) agent.getPolicy();
+			System.out.println(agent.getClass().getSimpleName() + " published " + live.getPublished() + " policies");
+			assertTrue(agent.isTrained());
+			assertTrue(live.getPublished() > 0);
+			assertSame(last, live.current());
+		}
+		trained = agents;
+		return agents;
+	}
+
+	@Test
+	public void testDefensive() {
+		for (Agent agent : agents()) {
+			System.out.println("Background " + agent.getClass().getSimpleName() + ", against Defensive Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testAggressive() {
+		for (Agent agent : agents()) {
+			System.out.println("Background " + agent.getClass().getSimpleName() + ", against Aggressive Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new AggressiveAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testRandom() {
+		for (Agent agent : agents()) {
+			System.out.println("Background " + agent.getClass().getSimpleName() + ", against Random Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+}
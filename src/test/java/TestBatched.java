@@ -0,0 +1,130 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ticTacToe.AggressiveAgent;
+import ticTacToe.BatchTTTEnvironment;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+import ticTacToe.StepResult;
+import ticTacToe.TTTEnvironment;
+
+public class TestBatched {
+
+	static QLearningAgent agent;
+
+	@BeforeClass
+	public static void train() {
+		RandomStreams.setSeed(42);
+		agent = new QLearningAgent(new RandomAgent(), 0.1, 50000, 0.9, false);
+		agent.trainBatched(16);
+	}
+
+	@Test
+	public void testDefensive() {
+		System.out.println("Batched Q-Learning, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testAggressive() {
+		System.out.println("Batched Q-Learning, against Aggressive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testRandom() {
+		System.out.println("Batched Q-Learning, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	/**
+	 * @return a random cell of {@code empty}, a mask with bit {@code 3*x+y} set for each empty cell
+	 */
+	static int randomCell(int empty, SplittableRandom r) {
+		int k = r.nextInt(Integer.bitCount(empty));
+		for (int i = 0; i < k; i++)
+			empty &= empty - 1;
+		return Integer.numberOfTrailingZeros(empty);
+	}
+
+	@Test
+	public void testSameAsTTTEnvironment() throws IllegalMoveException {
+		// with the same random stream, one batched game plays exactly like a TTTEnvironment
+		BatchTTTEnvironment batch = new BatchTTTEnvironment(1, new SplittableRandom(7));
+		TTTEnvironment env = new TTTEnvironment(new SplittableRandom(7));
+		SplittableRandom moves = new SplittableRandom(8);
+		int emptyBoard = new Game('X').hashCode();
+
+		int[] action = new int[1];
+		double[] reward = new double[1];
+		int[] nextState = new int[1];
+		boolean[] done = new boolean[1];
+		int[] state = new int[1];
+		StepResult step = new StepResult();
+		int games = 0;
+		for (int i = 0; i < 10000; i++) {
+			batch.getStates(state);
+			assertEquals(env.getCurrentGameState().hashCode(), state[0]);
+
+			action[0] = randomCell(batch.getPossibleMoves(0), moves);
+			batch.step(action, reward, nextState, done);
+			env.step(action[0], step);
+			assertEquals(step.reward, reward[0], 0);
+			assertEquals(step.nextState, nextState[0]);
+			assertEquals(step.done, done[0]);
+
+			if (done[0]) {
+				// finished games start again straight away
+				games++;
+				batch.getStates(state);
+				assertEquals(emptyBoard, state[0]);
+				assertEquals(0x1FF, batch.getPossibleMoves(0));
+				env.reset();
+			}
+		}
+		System.out.println("Batched and single environments agreed over " + games + " games");
+		assertTrue(games > 1000);
+	}
+
+	@Test
+	public void testReset() throws IllegalMoveException {
+		// every game of a batch is reset on its own, when it ends
+		BatchTTTEnvironment batch = new BatchTTTEnvironment(8, new SplittableRandom(3));
+		SplittableRandom moves = new SplittableRandom(4);
+		int emptyBoard = new Game('X').hashCode();
+		int[] actions = new int[8];
+		double[] rewards = new double[8];
+		int[] nextStates = new int[8];
+		boolean[] done = new boolean[8];
+		int[] states = new int[8];
+		int[] turns = new int[8];
+		for (int step = 0; step < 1000; step++) {
+			for (int i = 0; i < 8; i++)
+				actions[i] = randomCell(batch.getPossibleMoves(i), moves);
+			batch.step(actions, rewards, nextStates, done);
+			batch.getStates(states);
+			for (int i = 0; i < 8; i++) {
+				turns[i] = done[i] ? 0 : turns[i] + 1;
+				// X and O have played a move each per step in games still going
+				assertEquals(9 - 2 * turns[i], Integer.bitCount(batch.getPossibleMoves(i)));
+				assertEquals(done[i] ? emptyBoard : nextStates[i], states[i]);
+			}
+		}
+	}
+
+}
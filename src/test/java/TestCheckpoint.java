@@ -0,0 +1,99 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.QLearningAgent;
+import ticTacToe.QTableCheckpoint;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+
+public class TestCheckpoint {
+
+	static QLearningAgent first;
+	static QLearningAgent agent;
+	static File saved;
+
+	@BeforeClass
+	public static void train() throws IOException {
+		// Training for 20000 episodes with checkpoints, then resuming up to 50000 from the last one
+		File file = File.createTempFile("checkpoint", ".bin");
+		file.deleteOnExit();
+		RandomStreams.setSeed(42);
+		first = new QLearningAgent(new RandomAgent(), 0.1, 20000, 0.9, false);
+		first.setCheckpoints(file, 5000);
+		first.train();
+		assertEquals(first.getEpisodesTrained(), QTableCheckpoint.read(file).getEpisode());
+		saved = File.createTempFile("checkpoint", ".bin");
+		saved.deleteOnExit();
+		Files.copy(file.toPath(), saved.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		agent = new QLearningAgent(new RandomAgent(), 0.1, 50000, 0.9, file);
+	}
+
+	@Test
+	public void testRestore() throws IOException {
+		// resuming with no episodes left to play restores the saved q-values as they were
+		QLearningAgent restored = new QLearningAgent(new RandomAgent(), 0.1, first.getEpisodesTrained(), 0.9, saved);
+		assertEquals(first.getEpisodesTrained(), restored.getEpisodesTrained());
+		assertEquals(first.getQTable(), restored.getQTable());
+	}
+
+	@Test
+	public void testSameAsUninterrupted() throws IOException {
+		// stopping and resuming from a checkpoint learns exactly what training in one go does. The convergence checks
+		// start over when resuming, so both runs are too short to stop early: that takes 10 quiet checks in a row, and
+		// the first check of a run never is.
+		File file = File.createTempFile("checkpoint", ".bin");
+		file.deleteOnExit();
+		RandomStreams.setSeed(42);
+		QLearningAgent interrupted = new QLearningAgent(new RandomAgent(), 0.1, 5000, 0.9, false);
+		interrupted.setCheckpoints(file, 2500);
+		interrupted.train();
+		QLearningAgent resumed = new QLearningAgent(new RandomAgent(), 0.1, 10000, 0.9, file);
+
+		// The same training in one go, with checkpoints at the same episodes
+		File other = File.createTempFile("checkpoint", ".bin");
+		other.deleteOnExit();
+		RandomStreams.setSeed(42);
+		QLearningAgent uninterrupted = new QLearningAgent(new RandomAgent(), 0.1, 10000, 0.9, false);
+		uninterrupted.setCheckpoints(other, 2500);
+		uninterrupted.train();
+
+		assertEquals(10000, uninterrupted.getEpisodesTrained());
+		assertEquals(uninterrupted.getEpisodesTrained(), resumed.getEpisodesTrained());
+		assertEquals(uninterrupted.getQTable(), resumed.getQTable());
+	}
+
+	@Test
+	public void testDefensive() {
+		System.out.println("Resumed Q-Learning, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testAggressive() {
+		System.out.println("Resumed Q-Learning, against Aggressive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testRandom() {
+		System.out.println("Resumed Q-Learning, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+}
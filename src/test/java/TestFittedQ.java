@@ -0,0 +1,120 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ticTacToe.FittedQIteration;
+import ticTacToe.Game;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.Move;
+import ticTacToe.Policy;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+import ticTacToe.TTTEnvironment;
+import ticTacToe.TransitionLog;
+import ticTacToe.ValueIterationAgent;
+
+public class TestFittedQ {
+
+	static FittedQIteration fqi;
+	static Policy policy;
+	static long learnerTransitions;
+	static long transitions;
+
+	@BeforeClass
+	public static void fit() throws IOException, IllegalMoveException {
+		// Logging the training of a Q-Learning agent, and a few games of a random player, then learning from the log only
+		RandomStreams.setSeed(42);
+		File file = File.createTempFile("transitions", ".log");
+		file.deleteOnExit();
+		TransitionLog log = new TransitionLog(file);
+		QLearningAgent learner = new QLearningAgent(new RandomAgent(), 0.1, 50000, 0.9, false);
+		learner.setTransitionLog(log);
+		learner.setEarlyStopping(0, 0, Double.POSITIVE_INFINITY, 1);
+		learner.train();
+		learnerTransitions = log.getAppended();
+		log.logGames(new RandomAgent(), new TTTEnvironment(), 20000);
+		transitions = log.getAppended();
+		log.close();
+
+		fqi = new FittedQIteration(file);
+		policy = fqi.train();
+	}
+
+	@Test
+	public void testLog() {
+		System.out.println("Fitted Q-Iteration: " + learnerTransitions + " of " + transitions
+				+ " transitions logged by Q-Learning");
+		assertTrue(learnerTransitions > 0.6 * transitions);
+	}
+
+	@Test
+	public void testOptimal() {
+		// where every move was logged often enough, the fitted policy plays as well as value iteration's, which was
+		// solved for the same rewards and the same random opponent. Elsewhere it only knows what the log shows.
+		ValueIterationAgent optimal = new ValueIterationAgent();
+		int states = 0;
+		int same = 0;
+		double worst = 0;
+		for (Game g : Game.generateAllValidGames('X')) {
+			if (g.isTerminal())
+				continue;
+
+			boolean sampled = true;
+			double best = Double.NEGATIVE_INFINITY;
+			for (Move m : g.getPossibleMoves()) {
+				sampled &= fqi.getSamples(g, m) >= 50;
+				best = Math.max(best, optimal.getQValue(g, m));
+			}
+			if (!sampled)
+				continue;
+
+			states++;
+			double regret = best - optimal.getQValue(g, policy.getMove(g));
+			worst = Math.max(worst, regret);
+			if (regret < 1e-9)
+				same++;
+		}
+
+		System.out.println("Fitted Q-Iteration: optimal in " + same + " of " + states
+				+ " well sampled states, at worst " + worst + " below");
+		assertTrue(states > 40);
+		assertTrue(same > 0.9 * states);
+		assertTrue(worst < 2.0);
+	}
+
+	@Test
+	public void testLoggedMoves() {
+		// in a state that was logged, only logged moves are played
+		int logged = 0;
+		for (Game g : Game.generateAllValidGames('X')) {
+			if (g.isTerminal())
+				continue;
+
+			int samples = 0;
+			for (Move m : g.getPossibleMoves())
+				samples += fqi.getSamples(g, m);
+			if (samples > 0) {
+				logged++;
+				assertTrue(fqi.getSamples(g, policy.getMove(g)) > 0);
+			}
+		}
+		assertTrue(logged > 0);
+		assertEquals(transitions, totalSamples());
+	}
+
+	static long totalSamples() {
+		long total = 0;
+		for (Game g : Game.generateAllValidGames('X'))
+			if (!g.isTerminal())
+				for (Move m : g.getPossibleMoves())
+					total += fqi.getSamples(g, m);
+		return total;
+	}
+
+}
@@ -0,0 +1,63 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.LinearQAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+
+public class TestLinearQ {
+
+	@Before
+	public void seed() {
+		RandomStreams.setSeed(42);
+	}
+
+	@Test
+	public void testSeeds() {
+		// the approximation isn't exact, but with the default learning rate it loses no games whatever the seed
+		for (long seed = 0; seed < 10; seed++) {
+			RandomStreams.setSeed(seed);
+			LinearQAgent agent = new LinearQAgent();
+			for (Agent opponent : new Agent[] { new RandomAgent(), new AggressiveAgent(), new DefensiveAgent() }) {
+				int[] results = TestPolicyIterationAgent.playAgainstEachOther(agent, opponent, 50);
+				assertEquals(0, results[1]);
+			}
+		}
+	}
+
+	@Test
+	public void testDefensive() {
+		System.out.println("Linear Q-Learning, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new LinearQAgent(), new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testAggressive() {
+		System.out.println("Linear Q-Learning, against Aggressive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new LinearQAgent(), new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testRandom() {
+		System.out.println("Linear Q-Learning, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new LinearQAgent(), new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+}
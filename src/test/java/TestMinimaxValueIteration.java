@@ -0,0 +1,67 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.MinimaxValueIterationAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.ValueIterationAgent;
+
+public class TestMinimaxValueIteration {
+
+	static MinimaxValueIterationAgent minimax = new MinimaxValueIterationAgent();
+
+	@Test
+	public void testDefensive() {
+		System.out.println("Minimax Value Iteration, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(minimax, new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testAggressive() {
+		System.out.println("Minimax Value Iteration, against Aggressive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(minimax, new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testRandom() {
+		System.out.println("Minimax Value Iteration, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(minimax, new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testBothSides() {
+		// the same solve plays O: perfect play on both sides is a draw, and X can never beat it
+		Agent o = minimax.opponent();
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(minimax, o, 10);
+		System.out.println("Minimax against itself, Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(10, results[2]);
+
+		for (Agent x : new Agent[] { new RandomAgent(), new AggressiveAgent(), new ValueIterationAgent() }) {
+			results=TestPolicyIterationAgent.playAgainstEachOther(x, o, 50);
+			System.out.println(x.getClass().getSimpleName() + " against minimax O, Wins: " + results[0] + " Losses: "
+					+ results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[0]);
+		}
+	}
+
+	@Test
+	public void testBlend() {
+		MinimaxValueIterationAgent blended = new MinimaxValueIterationAgent(0.5);
+		System.out.println("Blended minimax, " + blended.getSweeps() + " sweeps");
+		assertTrue(blended.getSweeps() > 1);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(blended, new RandomAgent(), 50);
+		System.out.println("Blended minimax against Random Agent, Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+}
@@ -0,0 +1,66 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.MappedQTable;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+
+public class TestMultiProcess {
+
+	static QLearningAgent agent;
+
+	@BeforeClass
+	public static void train() throws IOException {
+		// Training in two worker processes sharing one memory-mapped q-table
+		File file = File.createTempFile("qtable", ".bin");
+		file.delete();
+		file.deleteOnExit();
+		File checkpoint = new File(file.getPath() + ".checkpoint");
+		checkpoint.deleteOnExit();
+		RandomStreams.setSeed(42);
+		agent = new QLearningAgent(new RandomAgent(), 0.1, 50000, 0.9, false);
+		agent.trainProcesses(2, file, checkpoint, 500);
+		assertEquals(file.length(), checkpoint.length());
+
+		// the workers' progress slots add up to all the episodes
+		MappedQTable table = new MappedQTable(file);
+		try {
+			assertEquals(50000L, table.getEpisodes(0) + table.getEpisodes(1));
+		} finally {
+			table.close();
+		}
+	}
+
+	@Test
+	public void testDefensive() {
+		System.out.println("Multi-process Q-Learning, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testAggressive() {
+		System.out.println("Multi-process Q-Learning, against Aggressive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testRandom() {
+		System.out.println("Multi-process Q-Learning, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+}
@@ -0,0 +1,124 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.NeuralQAgent;
+import ticTacToe.QNetwork;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+import ticTacToe.ValueIterationAgent;
+
+public class TestNeuralQ {
+
+	/**
+	 * Training the network takes a while, so all the tests play the same agent
+	 */
+	static NeuralQAgent agent;
+
+	@BeforeClass
+	public static void train() {
+		RandomStreams.setSeed(42);
+		agent=new NeuralQAgent();
+	}
+
+	@Test
+	public void testDefensive() {
+		System.out.println("Neural network, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testAggressive() {
+		System.out.println("Neural network, against Aggressive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testRandom() {
+		System.out.println("Neural network, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testFit() {
+		RandomStreams.setSeed(42);
+		ValueIterationAgent teacher = new ValueIterationAgent();
+		NeuralQAgent fitted = new NeuralQAgent(teacher, 128, 300);
+
+		// value iteration's q-values nearly tie between some moves, closer than the fit gets, so the network plays
+		// another move in some states
+		int same = 0;
+		int states = 0;
+		for (Game g : Game.generateAllValidGames('X')) {
+			if (g.isTerminal())
+				continue;
+			states++;
+			if (fitted.getPolicy().getMove(g).equals(teacher.getPolicy().getMove(g)))
+				same++;
+		}
+		System.out.println("Neural network fitted to value iteration plays its move in " + same + " of " + states + " states");
+		assertTrue(same > 0.8 * states);
+
+		System.out.println("Neural network fitted to value iteration, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(fitted, new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFitWithoutValues() {
+		// a teacher with only a policy, like a precomputed one, has nothing to fit
+		new NeuralQAgent(new ValueIterationAgent(new ValueIterationAgent().getPolicy()), 16, 1);
+	}
+
+	@Test
+	public void testParallel() {
+		// splitting a batch across threads gives the same outputs and the same steps as one thread
+		QNetwork sequential = new QNetwork(new int[] { QNetwork.NUM_INPUTS, 64, 32, QNetwork.NUM_OUTPUTS }, false,
+				new SplittableRandom(1));
+		QNetwork parallel = new QNetwork(new int[] { QNetwork.NUM_INPUTS, 64, 32, QNetwork.NUM_OUTPUTS }, true,
+				new SplittableRandom(2));
+		parallel.copyFrom(sequential);
+
+		int batch = 1000;
+		SplittableRandom r = new SplittableRandom(3);
+		float[] inputs = new float[batch * QNetwork.NUM_INPUTS];
+		float[] targets = new float[batch * QNetwork.NUM_OUTPUTS];
+		float[] mask = new float[batch * QNetwork.NUM_OUTPUTS];
+		for (int i = 0; i < batch; i++) {
+			int x = r.nextInt(512);
+			QNetwork.encode(x, r.nextInt(512) & ~x, inputs, i * QNetwork.NUM_INPUTS);
+			for (int j = 0; j < QNetwork.NUM_OUTPUTS; j++) {
+				targets[i * QNetwork.NUM_OUTPUTS + j] = (float) r.nextDouble();
+				mask[i * QNetwork.NUM_OUTPUTS + j] = r.nextInt(2);
+			}
+		}
+
+		for (int step = 0; step < 10; step++)
+			assertEquals(sequential.train(inputs, targets, mask, batch), parallel.train(inputs, targets, mask, batch), 0);
+		float[] expected = sequential.forward(inputs, batch);
+		float[] actual = parallel.forward(inputs, batch);
+		for (int i = 0; i < batch * QNetwork.NUM_OUTPUTS; i++)
+			assertEquals(expected[i], actual[i], 0f);
+	}
+
+}
@@ -0,0 +1,74 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ticTacToe.AggressiveAgent;
+import ticTacToe.CompiledTTTMDP;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.Move;
+import ticTacToe.OpponentModellingAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+
+public class TestOpponentModelling {
+
+	@Before
+	public void seed() {
+		RandomStreams.setSeed(42);
+	}
+
+	@Test
+	public void testDefensive() {
+		System.out.println("Opponent modelling agent, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new OpponentModellingAgent(), new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testAggressive() {
+		System.out.println("Opponent modelling agent, against Aggressive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new OpponentModellingAgent(), new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testRandom() {
+		System.out.println("Opponent modelling agent, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new OpponentModellingAgent(), new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	static int[] moves(OpponentModellingAgent agent, List<Game> games) {
+		int[] moves = new int[games.size()];
+		for (int i = 0; i < games.size(); i++) {
+			Move m = agent.getPolicy().getMove(games.get(i));
+			moves[i] = m == null ? -1 : 3 * m.x + m.y;
+		}
+		return moves;
+	}
+
+	@Test
+	public void testIncremental() {
+		OpponentModellingAgent agent = new OpponentModellingAgent();
+		TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 10);
+		System.out.println("States backed up after the last game: " + agent.getBackups() + " of "
+				+ CompiledTTTMDP.shared().size());
+		assertTrue(agent.getBackups() < CompiledTTTMDP.shared().size());
+
+		// re-planning incrementally gives the same plan as solving from scratch
+		List<Game> games = Game.generateAllValidGames('X');
+		String incremental = Arrays.toString(moves(agent, games));
+		agent.solve();
+		assertEquals(incremental, Arrays.toString(moves(agent, games)));
+	}
+
+}
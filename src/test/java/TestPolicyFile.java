@@ -0,0 +1,76 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.Move;
+import ticTacToe.Policy;
+import ticTacToe.RandomAgent;
+import ticTacToe.ValueIterationAgent;
+
+public class TestPolicyFile {
+
+	static ValueIterationAgent solved;
+
+	static File file;
+
+	static Agent agent;
+
+	@BeforeClass
+	public static void save() throws IOException {
+		// Storing the policy of a value iteration agent, then playing with the mapped file only
+		solved = new ValueIterationAgent();
+		file = File.createTempFile("policy", ".bin");
+		file.deleteOnExit();
+		solved.savePolicyToFile(file.getPath());
+		agent = new Agent();
+		agent.loadPolicyFromFile(file.getPath());
+	}
+
+	@Test
+	public void testLoadedPolicy() throws IOException {
+		Policy loaded = new Policy(file.getPath());
+		for (Game g : Game.generateAllValidGames('X')) {
+			if (g.isTerminal())
+				continue;
+
+			Move expected = solved.getMove(g);
+			Move move = loaded.getMove(g);
+			assertEquals(3 * expected.x + expected.y, 3 * move.x + move.y);
+			move = agent.getMove(g);
+			assertEquals(3 * expected.x + expected.y, 3 * move.x + move.y);
+		}
+	}
+
+	@Test
+	public void testDefensive() {
+		System.out.println("Mapped policy file, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testAggressive() {
+		System.out.println("Mapped policy file, against Aggressive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testRandom() {
+		System.out.println("Mapped policy file, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+}
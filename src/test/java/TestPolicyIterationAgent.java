@@ -75,7 +75,7 @@ public class TestPolicyIterationAgent {
 	@Test
 	public void testDefensive() {
 		System.out.println("Against Defensive Agent:");
-		int[] results=playAgainstEachOther(new PolicyIterationAgent(), new DefensiveAgent(), 50);
+		int[] results=playAgainstEachOther(PolicyIterationAgent.cached(), new DefensiveAgent(), 50);
 		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
 		assertEquals(0, results[1]);
 		
@@ -86,7 +86,7 @@ public class TestPolicyIterationAgent {
 	public void testAggressive() {
 		System.out.println("Against Aggressive Agent:");
 		
-		int[] results=playAgainstEachOther(new PolicyIterationAgent(), new AggressiveAgent(), 50);
+		int[] results=playAgainstEachOther(PolicyIterationAgent.cached(), new AggressiveAgent(), 50);
 		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
 		assertEquals(0, results[1]);
 		
@@ -104,7 +104,7 @@ public class TestPolicyIterationAgent {
 	@Test
 	public void testRandom() {
 		System.out.println("Against Random Agent:");
-		int[] results=playAgainstEachOther(new PolicyIterationAgent(), new RandomAgent(), 50);
+		int[] results=playAgainstEachOther(PolicyIterationAgent.cached(), new RandomAgent(), 50);
 		
 		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
 		assertEquals(0, results[1]);
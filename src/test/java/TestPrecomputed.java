@@ -0,0 +1,57 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.MappedPolicy;
+import ticTacToe.PolicyIterationAgent;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.ValueIterationAgent;
+
+public class TestPrecomputed {
+
+	static Agent[] agents() {
+		Agent[] agents = { ValueIterationAgent.precomputed(), PolicyIterationAgent.precomputed(),
+				QLearningAgent.precomputed() };
+		// the policies come from the resources written by the build, not from solving
+		for (Agent agent : agents)
+			assertTrue(agent.getPolicy() instanceof MappedPolicy);
+
+		return agents;
+	}
+
+	@Test
+	public void testDefensive() {
+		for (Agent agent : agents()) {
+			System.out.println("Precomputed " + agent.getClass().getSimpleName() + ", against Defensive Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testAggressive() {
+		for (Agent agent : agents()) {
+			System.out.println("Precomputed " + agent.getClass().getSimpleName() + ", against Aggressive Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new AggressiveAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testRandom() {
+		for (Agent agent : agents()) {
+			System.out.println("Precomputed " + agent.getClass().getSimpleName() + ", against Random Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+}
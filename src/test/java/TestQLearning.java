@@ -1,18 +1,51 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
+import ticTacToe.Agent;
 import ticTacToe.AggressiveAgent;
 import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.Move;
+import ticTacToe.Policy;
 import ticTacToe.QLearningAgent;
 import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+import ticTacToe.TrainingListener;
+
 import ticTacToe.ValueIterationAgent;
 
 public class TestQLearning {
+
+	/**
+	 * The agent trained with 4 threads, trained once for the whole class: its training isn't reproducible, so it can't be
+	 * cached by seed
+	 */
+	static QLearningAgent parallel;
+
+	@BeforeClass
+	public static void trainParallel() {
+		RandomStreams.setSeed(42);
+		parallel = new QLearningAgent(new RandomAgent(), 0.1, 50000, 0.9, 4);
+	}
+
+	@Before
+	public void seed() {
+		RandomStreams.setSeed(42);
+	}
+
 	@Test
 	public void testDefensive() {
 		System.out.println("Against Defensive Agent:");
-		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new QLearningAgent(), new DefensiveAgent(), 50);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(QLearningAgent.cached(), new DefensiveAgent(), 50);
 		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
 		assertEquals(0, results[1]);
 		
@@ -23,7 +56,7 @@ public class TestQLearning {
 	public void testAggressive() {
 		System.out.println("Against Aggressive Agent:");
 		
-		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new QLearningAgent(), new AggressiveAgent(), 50);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(QLearningAgent.cached(), new AggressiveAgent(), 50);
 		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
 		assertEquals(0, results[1]);
 		
@@ -34,8 +67,196 @@ public class TestQLearning {
 	@Test
 	public void testRandom() {
 		System.out.println("Against Random Agent:");
-		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new QLearningAgent(), new RandomAgent(), 50);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(QLearningAgent.cached(), new RandomAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testCached() {
+		// agents cached with the same seed share one trained policy
+		assertSame(QLearningAgent.cached().getPolicy(), QLearningAgent.cached(42).getPolicy());
+	}
+
+	@Test
+	public void testParallelDefensive() {
+		System.out.println("Parallel, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(parallel, new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testParallelAggressive() {
+		System.out.println("Parallel, against Aggressive Agent:");
+		
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(parallel, new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	
+	@Test
+	public void testParallelRandom() {
+		System.out.println("Parallel, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(parallel, new RandomAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
 		
+
+	}
+
+	/**
+	 * An opponent that plays in the first empty cell, counting the moves it is asked for across all its instances
+	 */
+	public static class CountingAgent extends Agent {
+		static final AtomicInteger moves = new AtomicInteger();
+
+		public CountingAgent() {
+			super(new Policy() {
+				@Override
+				public Move getMove(Game g) {
+					moves.incrementAndGet();
+					return g.getPossibleMoves().get(0);
+				}
+			});
+		}
+	}
+
+	@Test
+	public void testParallelOpponent() {
+		// the workers play the opponent the agent was given, not a random agent
+		CountingAgent.moves.set(0);
+		new QLearningAgent(new CountingAgent(), 0.1, 1000, 0.9, 4);
+		System.out.println("Parallel, moves asked of the training opponent: " + CountingAgent.moves.get());
+		assertTrue(CountingAgent.moves.get() > 1000);
+
+		System.out.println("Parallel, trained against Defensive Agent, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new QLearningAgent(new DefensiveAgent(), 0.1, 50000, 0.9, 4), new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+	}
+
+	@Test
+	public void testEarlyStopping() {
+		// against an opponent that always plays the first empty cell the greedy policy settles, and training stops
+		final List<int[]> checks = new ArrayList<int[]>();
+		QLearningAgent agent = new QLearningAgent(new CountingAgent(), 0.1, 100000, 0.9, new TrainingListener() {
+			@Override
+			public void onProgress(int episode, int policyChanges, double maxDelta) {
+				checks.add(new int[] { episode, policyChanges });
+			}
+		});
+		System.out.println("Stopped after " + agent.getEpisodesTrained() + " episodes, " + checks.size() + " checks");
+		assertTrue(agent.getEpisodesTrained() < 100000);
+
+		// a check every 1000 episodes, the last 10 without a single change of greedy move
+		assertEquals(agent.getEpisodesTrained() / 1000, checks.size());
+		for (int i = 0; i < checks.size(); i++)
+			assertEquals(1000 * (i + 1), checks.get(i)[0]);
+		for (int i = checks.size() - 10; i < checks.size(); i++)
+			assertEquals(0, checks.get(i)[1]);
+		assertTrue(checks.get(checks.size() - 11)[1] > 0);
+
+		System.out.println("Stopped early, against its training opponent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new CountingAgent(), 10);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(10, results[0]);
+	}
+
+	@Test
+	public void testDefaultEarlyStopping() {
+		// against a random opponent the greedy play settles too, well before the default 50000 episodes
+		QLearningAgent defaults = new QLearningAgent();
+		System.out.println("Default agent stopped after " + defaults.getEpisodesTrained() + " episodes");
+		assertTrue(defaults.getEpisodesTrained() < 40000);
+		for (Agent opponent : new Agent[] { new RandomAgent(), new AggressiveAgent(), new DefensiveAgent() }) {
+			int[] results = TestPolicyIterationAgent.playAgainstEachOther(defaults, opponent, 50);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEarlyStoppingParameters() {
+		new QLearningAgent(new RandomAgent(), 0.1, 1000, 0.9, false).setEarlyStopping(1000, 0, 1.0, 0);
+	}
+
+	@Test
+	public void testLambdaDefensive() {
+		System.out.println("Q(lambda), against Defensive Agent:");
+		QLearningAgent agent=new QLearningAgent(new RandomAgent(), 0.1, 10000, 0.9, false);
+		agent.trainLambda(0.8);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testLambdaAggressive() {
+		System.out.println("Q(lambda), against Aggressive Agent:");
+		QLearningAgent agent=new QLearningAgent(new RandomAgent(), 0.1, 10000, 0.9, false);
+		agent.trainLambda(0.8);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	
+	@Test
+	public void testLambdaRandom() {
+		System.out.println("Q(lambda), against Random Agent:");
+		QLearningAgent agent=new QLearningAgent(new RandomAgent(), 0.1, 10000, 0.9, false);
+		agent.trainLambda(0.8);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testDynaDefensive() {
+		System.out.println("Dyna-Q, against Defensive Agent:");
+		QLearningAgent agent=new QLearningAgent(new RandomAgent(), 0.1, 20000, 0.9, false);
+		agent.trainDyna(10, true);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testDynaAggressive() {
+		System.out.println("Dyna-Q, against Aggressive Agent:");
+		QLearningAgent agent=new QLearningAgent(new RandomAgent(), 0.1, 20000, 0.9, false);
+		agent.trainDyna(10, true);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	@Test
+	public void testDynaRandom() {
+		System.out.println("Dyna-Q, against Random Agent:");
+		QLearningAgent agent=new QLearningAgent(new RandomAgent(), 0.1, 20000, 0.9, false);
+		agent.trainDyna(10, true);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
 		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
 		assertEquals(0, results[1]);
 		
@@ -0,0 +1,56 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import ticTacToe.QLearningAgent;
+import ticTacToe.QTable;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+
+public class TestRandomStreams {
+
+	@Test
+	public void testSameSeedSameQTable() {
+		RandomStreams.setSeed(42);
+		QLearningAgent first = new QLearningAgent(new RandomAgent(), 0.1, 10000, 0.9);
+		RandomStreams.setSeed(42);
+		QLearningAgent second = new QLearningAgent(new RandomAgent(), 0.1, 10000, 0.9);
+
+		// bit for bit the same, not merely close
+		QTable q = first.getQTable();
+		System.out.println("Seed 42: " + q.size() + " states, " + first.getEpisodesTrained() + " episodes");
+		assertEquals(first.getEpisodesTrained(), second.getEpisodesTrained());
+		assertEquals(q, second.getQTable());
+
+		RandomStreams.setSeed(43);
+		QLearningAgent third = new QLearningAgent(new RandomAgent(), 0.1, 10000, 0.9);
+		assertFalse(q.equals(third.getQTable()));
+	}
+
+	@Test
+	public void testStreams() {
+		RandomStreams.setSeed(7);
+		SplittableRandom a = RandomStreams.newStream();
+		SplittableRandom b = RandomStreams.newStream();
+		assertEquals(7L, RandomStreams.global().getSeed());
+
+		// the same seed hands out the same streams, in the same order
+		RandomStreams.setSeed(7);
+		SplittableRandom a2 = RandomStreams.newStream();
+		SplittableRandom b2 = RandomStreams.newStream();
+		boolean different = false;
+		for (int i = 0; i < 1000; i++) {
+			long x = a.nextLong();
+			long y = b.nextLong();
+			assertEquals(x, a2.nextLong());
+			assertEquals(y, b2.nextLong());
+			different |= x != y;
+		}
+		assertTrue(different);
+	}
+
+}
@@ -0,0 +1,135 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+import ticTacToe.ReplayBuffer;
+
+public class TestReplay {
+
+	static Agent[] agents;
+
+	@BeforeClass
+	public static void train() {
+		// a tenth of the episodes of the default agent, each move replayed 8 times
+		RandomStreams.setSeed(42);
+		agents = new Agent[] { new QLearningAgent(new RandomAgent(), 0.1, 5000, 0.9, new ReplayBuffer(10000, false), 8),
+				new QLearningAgent(new RandomAgent(), 0.1, 5000, 0.9, new ReplayBuffer(10000, true), 8) };
+	}
+
+	@Test
+	public void testDefensive() {
+		for (Agent agent : agents) {
+			System.out.println("Replay Q-Learning, against Defensive Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testAggressive() {
+		for (Agent agent : agents) {
+			System.out.println("Replay Q-Learning, against Aggressive Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new AggressiveAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testRandom() {
+		for (Agent agent : agents) {
+			System.out.println("Replay Q-Learning, against Random Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testWrapAround() {
+		ReplayBuffer buffer = new ReplayBuffer(4, false);
+		for (int i = 0; i < 6; i++)
+			buffer.add(i, i % 9, -i, 100 + i, i % 2 == 0);
+
+		// the two oldest transitions were overwritten by the two newest
+		assertEquals(4, buffer.size());
+		assertEquals(4, buffer.capacity());
+		int[] expected = { 4, 5, 2, 3 };
+		for (int i = 0; i < 4; i++) {
+			assertEquals(expected[i], buffer.getState(i));
+			assertEquals(expected[i], buffer.getAction(i));
+			assertEquals(-expected[i], buffer.getReward(i), 0);
+			assertEquals(100 + expected[i], buffer.getNextState(i));
+			assertEquals(expected[i] % 2 == 0, buffer.isDone(i));
+		}
+
+		int[] indices = new int[1000];
+		buffer.sample(new SplittableRandom(1), indices);
+		for (int i : indices)
+			assertTrue(i >= 0 && i < 4);
+	}
+
+	@Test
+	public void testPrioritised() {
+		// 5 transitions, so the sum tree has 3 empty leaves that must never be sampled
+		ReplayBuffer buffer = new ReplayBuffer(5, true);
+		for (int i = 0; i < 5; i++)
+			buffer.add(i, 0, 0, 0, true);
+		double[] tdErrors = { 0, 1, 4, 0.5, 10 };
+		for (int i = 0; i < 5; i++)
+			buffer.updatePriority(i, tdErrors[i]);
+		double total = 0;
+		for (int i = 0; i < 5; i++) {
+			total += buffer.getPriority(i);
+			if (i > 0)
+				assertEquals(tdErrors[i] > tdErrors[i - 1], buffer.getPriority(i) > buffer.getPriority(i - 1));
+		}
+
+		// transitions are sampled in proportion to their priorities
+		int[] indices = new int[200000];
+		buffer.samplePrioritised(new SplittableRandom(2), indices);
+		int[] counts = new int[5];
+		for (int i : indices)
+			counts[i]++;
+		for (int i = 0; i < 5; i++) {
+			double expected = buffer.getPriority(i) / total;
+			System.out.println("Transition " + i + ": sampled " + (double) counts[i] / indices.length + ", priority "
+					+ expected);
+			assertEquals(expected, (double) counts[i] / indices.length, 0.01);
+		}
+
+		// overwriting a transition gives it the highest priority so far
+		buffer.add(5, 0, 0, 0, true);
+		assertEquals(buffer.getPriority(4), buffer.getPriority(0), 1e-12);
+
+		// the most often sampled transitions get the smallest importance-sampling weights, the largest being 1
+		int[] batch = { 0, 1, 2, 3, 4 };
+		double[] weights = new double[5];
+		buffer.weights(batch, weights);
+		double max = 0;
+		for (int i = 0; i < 5; i++) {
+			max = Math.max(max, weights[i]);
+			for (int j = 0; j < 5; j++)
+				if (buffer.getPriority(i) > buffer.getPriority(j))
+					assertTrue(weights[i] < weights[j]);
+		}
+		assertEquals(1.0, max, 0);
+
+		ReplayBuffer uniform = new ReplayBuffer(5, false);
+		uniform.add(0, 0, 0, 0, true);
+		uniform.weights(new int[] { 0, 0 }, weights);
+		assertEquals(1.0, weights[0], 0);
+	}
+
+}
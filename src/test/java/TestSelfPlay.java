@@ -0,0 +1,84 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+import ticTacToe.SelfPlayAgent;
+
+public class TestSelfPlay {
+
+	@Before
+	public void seed() {
+		RandomStreams.setSeed(42);
+	}
+	@Test
+	public void testDefensive() {
+		System.out.println("As X, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new SelfPlayAgent(), new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testAggressive() {
+		System.out.println("As X, against Aggressive Agent:");
+		
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new SelfPlayAgent(), new AggressiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+
+	
+	@Test
+	public void testRandom() {
+		System.out.println("As X, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new SelfPlayAgent(), new RandomAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testDefensiveAsO() {
+		System.out.println("As O, against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new DefensiveAgent(), new SelfPlayAgent(), 50);
+		System.out.println("Wins: " + results[1] + " Losses: " + results[0] + " Draws: " + results[2]);
+		assertEquals(0, results[0]);
+		
+
+	}
+	
+	@Test
+	public void testAggressiveAsO() {
+		System.out.println("As O, against Aggressive Agent:");
+		
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new AggressiveAgent(), new SelfPlayAgent(), 50);
+		System.out.println("Wins: " + results[1] + " Losses: " + results[0] + " Draws: " + results[2]);
+		assertEquals(0, results[0]);
+		
+
+	}
+
+	
+	@Test
+	public void testRandomAsO() {
+		System.out.println("As O, against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new RandomAgent(), new SelfPlayAgent(), 50);
+		
+		System.out.println("Wins: " + results[1] + " Losses: " + results[0] + " Draws: " + results[2]);
+		assertEquals(0, results[0]);
+		
+
+	}
+
+}
@@ -0,0 +1,174 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.AggressiveAgent;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.Move;
+import ticTacToe.Policy;
+import ticTacToe.PolicyIterationAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.SolvedModelCache;
+import ticTacToe.ValueIterationAgent;
+
+public class TestSolvedModelCache {
+
+	static Agent[] agents() {
+		Agent[] agents = { ValueIterationAgent.cached(), PolicyIterationAgent.cached() };
+		// agents with the same parameters share one solved policy
+		assertSame(agents[0].getPolicy(), ValueIterationAgent.cached().getPolicy());
+		assertSame(agents[1].getPolicy(), PolicyIterationAgent.cached().getPolicy());
+		return agents;
+	}
+
+	@Test
+	public void testDefensive() {
+		for (Agent agent : agents()) {
+			System.out.println("Cached " + agent.getClass().getSimpleName() + ", against Defensive Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testAggressive() {
+		for (Agent agent : agents()) {
+			System.out.println("Cached " + agent.getClass().getSimpleName() + ", against Aggressive Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new AggressiveAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testRandom() {
+		for (Agent agent : agents()) {
+			System.out.println("Cached " + agent.getClass().getSimpleName() + ", against Random Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	static SolvedModelCache.Key key(String algorithm) {
+		return new SolvedModelCache.Key(algorithm, 0.9, 10, -50, -1, 0, "uniform random", 3);
+	}
+
+	@Test
+	public void testSeed() {
+		SolvedModelCache.Key seeded = new SolvedModelCache.Key("test", 0.9, 10, -50, -1, 0, "uniform random", 3, 42);
+		// models trained with different seeds are cached separately
+		assertFalse(seeded.equals(key("test")));
+		assertFalse(seeded.equals(new SolvedModelCache.Key("test", 0.9, 10, -50, -1, 0, "uniform random", 3, 43)));
+		assertEquals(seeded, new SolvedModelCache.Key("test", 0.9, 10, -50, -1, 0, "uniform random", 3, 42));
+		assertEquals(seeded.hashCode(), new SolvedModelCache.Key("test", 0.9, 10, -50, -1, 0, "uniform random", 3, 42).hashCode());
+	}
+
+	@Test
+	public void testConcurrentSolve() throws Exception {
+		final SolvedModelCache cache = new SolvedModelCache(Long.MAX_VALUE);
+		final AtomicInteger solves = new AtomicInteger();
+		final Callable<SolvedModelCache.Model> solver = new Callable<SolvedModelCache.Model>() {
+			public SolvedModelCache.Model call() throws Exception {
+				solves.incrementAndGet();
+				Thread.sleep(200);
+				return new SolvedModelCache.Model(new Policy(), null);
+			}
+		};
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		List<Future<SolvedModelCache.Model>> models = new ArrayList<Future<SolvedModelCache.Model>>();
+		for (int i = 0; i < 4; i++) {
+			models.add(pool.submit(new Callable<SolvedModelCache.Model>() {
+				public SolvedModelCache.Model call() {
+					return cache.get(key("test"), solver);
+				}
+			}));
+		}
+		for (Future<SolvedModelCache.Model> model : models)
+			assertSame(models.get(0).get(), model.get());
+		pool.shutdown();
+
+		System.out.println("4 concurrent requests, solves: " + solves.get());
+		assertEquals(1, solves.get());
+	}
+
+	@Test
+	public void testEviction() {
+		final Policy policy = ValueIterationAgent.cached().getPolicy();
+		Callable<SolvedModelCache.Model> solver = new Callable<SolvedModelCache.Model>() {
+			public SolvedModelCache.Model call() {
+				return new SolvedModelCache.Model(policy, null);
+			}
+		};
+		SolvedModelCache probe = new SolvedModelCache(Long.MAX_VALUE);
+		probe.get(key("a"), solver);
+
+		// room for two models
+		SolvedModelCache cache = new SolvedModelCache(2 * probe.getBytes());
+		cache.get(key("a"), solver);
+		cache.get(key("b"), solver);
+		cache.get(key("a"), solver);
+		cache.get(key("c"), solver);
+		cache.get(key("d"), solver);
+		System.out.println("Models cached: " + cache.size() + ", bytes: " + cache.getBytes());
+		// the least recently used models were evicted to stay within the budget
+		assertEquals(2, cache.size());
+		assertEquals(2 * probe.getBytes(), cache.getBytes());
+		assertSame(policy, cache.get(key("d"), solver).policy);
+	}
+
+	/**
+	 * 
+	 * @return the moves of {@code agent} in every non-terminal game with X to move
+	 */
+	static List<Move> moves(Agent agent) {
+		List<Move> moves = new ArrayList<Move>();
+		for (Game g : Game.generateAllValidGames('X'))
+			if (!g.isTerminal())
+				moves.add(agent.getPolicy().getMove(g));
+		return moves;
+	}
+
+	@Test
+	public void testCopyOnWrite() {
+		// re-solving a cached agent for other rewards leaves the other cached agents as they were
+		ValueIterationAgent vi = ValueIterationAgent.cached();
+		ValueIterationAgent other = ValueIterationAgent.cached();
+		List<Move> moves = moves(other);
+		List<Double> values = new ArrayList<Double>();
+		for (Game g : Game.generateAllValidGames('X'))
+			if (!g.isTerminal())
+				values.add(other.getQValue(g, other.getPolicy().getMove(g)));
+		vi.resolve(0.9, 10, -10, -1, 5);
+		assertEquals(moves, moves(ValueIterationAgent.cached()));
+		assertFalse(moves.equals(moves(vi)));
+		int i = 0;
+		for (Game g : Game.generateAllValidGames('X'))
+			if (!g.isTerminal())
+				assertEquals(values.get(i++), other.getQValue(g, other.getPolicy().getMove(g)), 0.0);
+
+		PolicyIterationAgent pi = PolicyIterationAgent.cached();
+		moves = moves(PolicyIterationAgent.cached());
+		pi.resolve(0.9, 10, -10, -1, 5);
+		assertEquals(moves, moves(PolicyIterationAgent.cached()));
+		assertFalse(moves.equals(moves(pi)));
+		pi.train(Duration.ofSeconds(1));
+		assertEquals(moves, moves(PolicyIterationAgent.cached()));
+	}
+
+}
@@ -0,0 +1,43 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.Test;
+
+import ticTacToe.RandomStreams;
+import ticTacToe.SweepRunner;
+
+public class TestSweepRunner {
+
+	@Test
+	public void testGrid() {
+		RandomStreams.setSeed(42);
+		List<SweepRunner.Config> configs = SweepRunner.grid(new double[] { 0.9, 0.99 }, new double[] { -50, -100 });
+		configs.addAll(SweepRunner.qLearningGrid(new double[] { 0.1 }, new double[] { 0.1 }, new int[] { 50000 }));
+		assertEquals(9, configs.size());
+
+		PrintStream out = System.out;
+		List<SweepRunner.Result> results = new SweepRunner(2, 50).run(configs);
+		// the sweep plays quiet opponents rather than swapping out the process-wide stream
+		assertSame(out, System.out);
+		System.out.print(SweepRunner.table(results));
+
+		assertEquals(configs.size(), results.size());
+		for (int i = 0; i < results.size(); i++) {
+			SweepRunner.Result r = results.get(i);
+			// the results come back in the order of the configurations
+			assertSame(configs.get(i), r.config);
+			assertEquals(150, r.games());
+			assertTrue(r.solveNanos > 0);
+			assertTrue(r.modelBytes > 0);
+			// value and policy iteration solve exactly, so never lose
+			if (i < 8)
+				assertEquals(0, r.losses);
+		}
+		assertEquals(configs.size() + 1, SweepRunner.table(results).split("\n").length);
+	}
+
+}
@@ -11,7 +11,7 @@ public class TestValueIteration {
 	@Test
 	public void testDefensive() {
 		System.out.println("Against Defensive Agent:");
-		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new ValueIterationAgent(), new DefensiveAgent(), 50);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(ValueIterationAgent.cached(), new DefensiveAgent(), 50);
 		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
 		assertEquals(0, results[1]);
 		
@@ -22,7 +22,7 @@ public class TestValueIteration {
 	public void testAggressive() {
 		System.out.println("Against Aggressive Agent:");
 		
-		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new ValueIterationAgent(), new AggressiveAgent(), 50);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(ValueIterationAgent.cached(), new AggressiveAgent(), 50);
 		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
 		assertEquals(0, results[1]);
 		
@@ -33,7 +33,7 @@ public class TestValueIteration {
 	@Test
 	public void testRandom() {
 		System.out.println("Against Random Agent:");
-		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new ValueIterationAgent(), new RandomAgent(), 50);
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(ValueIterationAgent.cached(), new RandomAgent(), 50);
 		
 		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
 		assertEquals(0, results[1]);
@@ -0,0 +1,95 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.AggressiveAgent;
+import ticTacToe.AnytimeResult;
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.Move;
+import ticTacToe.PolicyIterationAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.ValueIterationAgent;
+
+public class TestWarmStart {
+
+	/**
+	 * Agents solved for other rewards and discount, then re-solved for the default ones
+	 */
+	static Agent[] agents() {
+		ValueIterationAgent vi = new ValueIterationAgent(0.8, 10, -20, -2, 1);
+		vi.initValues();
+		vi.train();
+		AnytimeResult result = vi.resolve(0.9, 10, -50, -1, 0);
+		System.out.println("Value iteration re-solve: " + result);
+		assertTrue(result.converged);
+
+		PolicyIterationAgent pi = new PolicyIterationAgent(0.8, 10, -20, -2, 1);
+		result = pi.resolve(0.9, 10, -50, -1, 0);
+		System.out.println("Policy iteration re-solve: " + result);
+		assertTrue(result.converged);
+
+		return new Agent[] { vi, pi };
+	}
+
+	@Test
+	public void testDefensive() {
+		for (Agent agent : agents()) {
+			System.out.println("Warm-started " + agent.getClass().getSimpleName() + ", against Defensive Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new DefensiveAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testAggressive() {
+		for (Agent agent : agents()) {
+			System.out.println("Warm-started " + agent.getClass().getSimpleName() + ", against Aggressive Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new AggressiveAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testRandom() {
+		for (Agent agent : agents()) {
+			System.out.println("Warm-started " + agent.getClass().getSimpleName() + ", against Random Agent:");
+			int[] results=TestPolicyIterationAgent.playAgainstEachOther(agent, new RandomAgent(), 50);
+			System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+			assertEquals(0, results[1]);
+		}
+	}
+
+	@Test
+	public void testSameAsCold() {
+		// a warm re-solve after a small change of the lose reward ends where the agent's own cold solves do
+		ValueIterationAgent warm = new ValueIterationAgent(0.9, 10, -50, -1, 0);
+		warm.resolve(0.9, 10, -50, -1, 0);
+		warm.resolve(0.9, 10, -45, -1, 0);
+		ValueIterationAgent cold = new ValueIterationAgent(0.9, 10, -45, -1, 0);
+		cold.initValues();
+		cold.train();
+		ValueIterationAgent anytime = new ValueIterationAgent(0.9, 10, -45, -1, 0);
+		assertTrue(anytime.train(Duration.ofSeconds(30)).converged);
+
+		for (Game state : Game.generateAllValidGames('X')) {
+			if (state.isTerminal())
+				continue;
+
+			Move move = cold.getPolicy().getMove(state);
+			assertEquals(move, warm.getPolicy().getMove(state));
+			assertEquals(move, anytime.getPolicy().getMove(state));
+			for (Move m : state.getPossibleMoves()) {
+				assertEquals(cold.getQValue(state, m), warm.getQValue(state, m), 1e-6);
+				assertEquals(cold.getQValue(state, m), anytime.getQValue(state, m), 1e-6);
+			}
+		}
+	}
+
+}